@@ -37,6 +37,8 @@ import static net.dempsy.util.Functional.uncheck;
 
 public abstract class AbstractMavenMojo extends AbstractMojo {
     private static final String JAVA_CLASS_PATH = "java.class.path";
+    private static final String CLASSPATH_INDEX_FILE = "classpath-index.ser";
+    private static final String HEADLESS = "java.awt.headless";
 
     private Messages messages;
     private Locale locale;
@@ -79,6 +81,7 @@ public abstract class AbstractMavenMojo extends AbstractMojo {
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
+        useHeadlessGraphics();
         final String originalClasspath = System.getProperty(JAVA_CLASS_PATH);
         final URL[] classes = scanClasses();
         try {
@@ -102,6 +105,22 @@ public abstract class AbstractMavenMojo extends AbstractMojo {
 
     protected abstract void executeMojo() throws MojoExecutionException, MojoFailureException;
 
+    /**
+     * Charts are only ever drawn to images, so a build never tries to connect to a display (unless told otherwise).
+     */
+    static void useHeadlessGraphics() {
+        if (System.getProperty(HEADLESS) == null)
+            System.setProperty(HEADLESS, Boolean.TRUE.toString());
+    }
+
+    /**
+     * @return Returns the file the classpath annotation index is persisted to between builds, or null if there is no
+     * build directory.
+     */
+    protected File getClasspathIndexFile() {
+        return Optional.ofNullable(buildDirectory).map(dir -> new File(dir, CLASSPATH_INDEX_FILE)).orElse(null);
+    }
+
     protected Messages getMessages(final Locale locale) {
         if (messages == null)
             messages = Messages.loadMessages(getBundleName(), locale);
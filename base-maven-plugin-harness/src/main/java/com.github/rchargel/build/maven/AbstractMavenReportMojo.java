@@ -1,5 +1,6 @@
 package com.github.rchargel.build.maven;
 
+import com.github.rchargel.build.report.ImageResolver;
 import com.github.rchargel.build.report.Messages;
 import com.github.rchargel.build.report.Report;
 import com.github.rchargel.build.report.Report.ReportBuilder;
@@ -19,6 +20,7 @@ public abstract class AbstractMavenReportMojo extends AbstractMavenReport {
 
     @Override
     protected void executeReport(final Locale locale) throws MavenReportException {
+        AbstractMavenMojo.useHeadlessGraphics();
         final ReportBuilder builder = executeReportMojo(getMessages(locale))
                 .projectVersion(project.getVersion())
                 .publishDate(LocalDate.now());
@@ -29,7 +31,11 @@ public abstract class AbstractMavenReportMojo extends AbstractMavenReport {
     protected abstract ReportBuilder executeReportMojo(Messages messages) throws MavenReportException;
 
     protected void generateFinalReport(final Report report) throws MavenReportException {
-        new ReportSiteGenerator(getSink()).generateReport(report);
+        new ReportSiteGenerator(getSink(), getImageResolver()).generateReport(report);
+    }
+
+    protected ImageResolver getImageResolver() {
+        return ImageResolver.INLINE;
     }
 
     protected Messages getMessages(final Locale locale) {
@@ -5,7 +5,10 @@ import org.apache.maven.doxia.markup.HtmlMarkup
 import org.apache.maven.doxia.sink.Sink
 import org.apache.maven.doxia.sink.impl.SinkEventAttributeSet
 
-class ReportSiteGenerator(private val sink: Sink) {
+class ReportSiteGenerator @JvmOverloads constructor(
+        private val sink: Sink,
+        private val imageResolver: ImageResolver = ImageResolver.INLINE
+) {
     fun generateReport(report: Report) {
         sink.head()
         sink.title()
@@ -38,6 +41,7 @@ class ReportSiteGenerator(private val sink: Sink) {
                 is Image -> renderImage(content)
                 is Text -> renderText(content)
                 is Table -> renderTable(content, level)
+                is LazyContent -> renderContent(content.resolve(), level)
                 else -> sink.rawText(content.toString())
             }
         }
@@ -96,9 +100,9 @@ class ReportSiteGenerator(private val sink: Sink) {
 
     private fun renderImage(content: Image) {
         if (content.thumbnail)
-            sink.figureGraphics(content.dataURL, attrs(arrayOf(CLASS, "thumbnail", TITLE, content.title.orEmpty())))
+            sink.figureGraphics(imageResolver.resolve(content), attrs(arrayOf(CLASS, "thumbnail", TITLE, content.title.orEmpty())))
         else
-            sink.figureGraphics(content.dataURL, attrs(TITLE, content.title.orEmpty()))
+            sink.figureGraphics(imageResolver.resolve(content), attrs(TITLE, content.title.orEmpty()))
     }
 
     private fun renderText(content: Text) {
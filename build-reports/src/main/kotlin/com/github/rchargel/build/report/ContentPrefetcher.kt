@@ -0,0 +1,74 @@
+package com.github.rchargel.build.report
+
+import com.github.rchargel.build.common.RuntimeUtils
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Creates expensive content (such as charts) on a bounded pool of background threads, ahead of the report writer.
+ * Content is submitted in the order it appears in the report, and handed out as [LazyContent]. When the writer reaches
+ * an item, up to [window] of the items which follow it are started in the background, so the report keeps its order
+ * and no more than a window's worth of content is held in memory at once.
+ *
+ * @property window The number of items to create ahead of the one being written
+ *
+ * @constructor Creates a new instance of [ContentPrefetcher]
+ */
+class ContentPrefetcher @JvmOverloads constructor(
+        private val window: Int = POOL_SIZE * 2
+) {
+    private val suppliers = ArrayList<() -> ReportContent>()
+    private val pending = HashMap<Int, Future<ReportContent>>()
+    private var started = 0
+
+    /**
+     * Adds the content created by the [supplier] to the end of the queue
+     * @return the content to include in the report
+     */
+    fun submit(supplier: () -> ReportContent): LazyContent {
+        val index = synchronized(this) {
+            suppliers.add(supplier)
+            suppliers.size - 1
+        }
+        return LazyContent { resolve(index) }
+    }
+
+    private fun resolve(index: Int): ReportContent {
+        val future = synchronized(this) {
+            val end = minOf(suppliers.size, index + window + 1)
+            while (started < end) {
+                val supplier = suppliers[started]
+                pending[started++] = pool.submit<ReportContent> { supplier.invoke() }
+            }
+            pending.remove(index)
+        } ?: return suppliers[index].invoke() // rendered a second time, or out of order
+
+        try {
+            return future.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    companion object {
+        private val POOL_SIZE = RuntimeUtils.getOptimizedThreads()
+
+        /**
+         * Shared by every prefetcher. The threads are daemons and time out when idle, so the pool never needs to be
+         * shut down and never keeps the JVM alive.
+         */
+        private val pool = ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS, LinkedBlockingQueue(),
+                object : ThreadFactory {
+                    private val count = AtomicInteger()
+
+                    override fun newThread(r: Runnable) = Thread(r, "report-content-${count.incrementAndGet()}").apply {
+                        isDaemon = true
+                    }
+                }).apply { allowCoreThreadTimeOut(true) }
+    }
+}
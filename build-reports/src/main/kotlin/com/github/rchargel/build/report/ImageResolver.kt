@@ -0,0 +1,78 @@
+package com.github.rchargel.build.report
+
+import java.io.File
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Determines how the images of a report are referenced from the HTML.
+ */
+interface ImageResolver {
+    /**
+     * Resolves the [image]
+     * @return the URL used as the source of the image
+     */
+    fun resolve(image: Image): String
+
+    companion object {
+        /** Includes every image in the report as a data-url */
+        @JvmField
+        val INLINE: ImageResolver = object : ImageResolver {
+            override fun resolve(image: Image) = image.dataURL
+        }
+    }
+}
+
+/**
+ * Writes every image to a separate file, named by a hash of its content, and references it by a relative URL. Each
+ * distinct image is only written once, however many times it appears, and the report no longer holds the encoded
+ * images in memory.
+ *
+ * @property directory The directory to write the images into
+ * @property relativePath The path of the directory, relative to the report
+ *
+ * @constructor Creates a new instance of [ExternalImageResolver]
+ */
+class ExternalImageResolver(
+        private val directory: File,
+        private val relativePath: String
+) : ImageResolver {
+    private val written = ConcurrentHashMap.newKeySet<String>()
+
+    override fun resolve(image: Image): String {
+        val name = "${hash(image.data)}.${extension(image.contentType)}"
+        if (written.add(name)) {
+            try {
+                write(File(directory, name), image.data)
+            } catch (e: IOException) {
+                written.remove(name)
+                throw UncheckedIOException("Could not write image $name", e)
+            }
+        }
+        return "$relativePath/$name"
+    }
+
+    private fun write(file: File, data: ByteArray) {
+        // the name is the content, so an existing file of the right size is the same image from a previous report
+        if (file.isFile && file.length() == data.size.toLong())
+            return
+        Files.createDirectories(directory.toPath())
+        val temp = Files.createTempFile(directory.toPath(), file.name, ".tmp")
+        Files.write(temp, data)
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+    }
+
+    private companion object {
+        fun hash(data: ByteArray) = MessageDigest.getInstance("SHA-256").digest(data)
+                .joinToString("") { "%02x".format(it) }
+
+        fun extension(contentType: String) = when (val subtype = contentType.substringAfter('/').substringBefore('+')) {
+            "jpeg" -> "jpg"
+            else -> subtype
+        }
+    }
+}
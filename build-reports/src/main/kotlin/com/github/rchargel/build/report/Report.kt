@@ -1,9 +1,9 @@
 package com.github.rchargel.build.report
 
 import com.github.rchargel.build.common.ClasspathUtil
-import com.github.rchargel.build.report.compressors.TextCompressor
+import com.github.rchargel.build.report.compressors.CompressedAssetCache
+import com.github.rchargel.build.report.compressors.CompressedAssetCache.AssetType
 import java.io.IOException
-import java.io.StringWriter
 import java.io.Writer
 import java.time.LocalDate
 
@@ -12,10 +12,10 @@ class Report internal constructor(
         val publishDate: LocalDate,
         val projectVersion: String?,
         val includeTOC: Boolean,
-        val tableOfContentsTitle: String
+        val tableOfContentsTitle: String,
+        val imageResolver: ImageResolver = ImageResolver.INLINE
 ) {
     private val reportGenerator = ReportGenerator()
-    private val textCompressor = TextCompressor()
 
     @Throws(IOException::class)
     fun writeReportTo(writer: Writer): Unit {
@@ -25,6 +25,7 @@ class Report internal constructor(
                 "projectVersion" to projectVersion,
                 "includeTOC" to includeTOC,
                 "tocTitle" to tableOfContentsTitle,
+                "imageResolver" to imageResolver,
                 "javascript" to readCompressed("report.js"),
                 "printCSS" to readCompressed("print.css"),
                 "customPrintCSS" to readCompressed("print-site.css"),
@@ -38,7 +39,8 @@ class Report internal constructor(
             private var publishDate: LocalDate = LocalDate.now(),
             private var includeTOC: Boolean = true,
             private var tableOfContentsTitle: String = "Table of Contents",
-            private var projectVersion: String? = null
+            private var projectVersion: String? = null,
+            private var imageResolver: ImageResolver = ImageResolver.INLINE
     ) {
         fun projectVersion(projectVersion: String) = apply { this.projectVersion = projectVersion }
         fun appendContent(content: ReportContent) = apply { this.sectionBuilder.appendContent(content) }
@@ -46,12 +48,14 @@ class Report internal constructor(
         fun publishDate(publishDate: LocalDate) = apply { this.publishDate = publishDate }
         fun includeTOC(includeTOC: Boolean) = apply { this.includeTOC = includeTOC }
         fun tableOfContentsTitle(tableOfContentsTitle: String) = apply { this.tableOfContentsTitle = tableOfContentsTitle }
+        fun imageResolver(imageResolver: ImageResolver) = apply { this.imageResolver = imageResolver }
         fun build() = Report(
                 body = sectionBuilder.build(),
                 publishDate = publishDate,
                 projectVersion = projectVersion,
                 includeTOC = includeTOC,
-                tableOfContentsTitle = tableOfContentsTitle
+                tableOfContentsTitle = tableOfContentsTitle,
+                imageResolver = imageResolver
         )
     }
 
@@ -61,15 +65,9 @@ class Report internal constructor(
 
         @JvmStatic
         @Throws(IOException::class)
-        fun readCompressed(filename: String): String {
-            val writer = StringWriter()
-            ClasspathUtil.readFromClasspath(filename).use {
-                if (filename.endsWith(".css"))
-                    TextCompressor().compressCSSTo(it, writer)
-                else
-                    TextCompressor().compressJavaScriptTo(it, writer)
-            }
-            return writer.toString()
-        }
+        fun readCompressed(filename: String): String = CompressedAssetCache.compress(
+                ClasspathUtil.readFromClasspath(filename).use { it.readText() },
+                if (filename.endsWith(".css")) AssetType.CSS else AssetType.JAVASCRIPT
+        )
     }
 }
\ No newline at end of file
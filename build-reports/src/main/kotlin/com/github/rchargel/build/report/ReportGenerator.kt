@@ -10,20 +10,7 @@ import java.io.Writer
  * Utility class used to write HTML reports
  */
 class ReportGenerator {
-    private val templateEngine: MarkupTemplateEngine
-    private val template: Template
-
-    init {
-        val config = TemplateConfiguration()
-        config.isUseDoubleQuotes = true
-        templateEngine = MarkupTemplateEngine(config)
-
-        var tmplt: Template?
-        Thread.currentThread().contextClassLoader.getResourceAsStream("report.tpl").use {
-            tmplt = templateEngine.createTemplate(InputStreamReader(it))
-        }
-        this.template = tmplt ?: throw IllegalStateException("Template not initialized")
-    }
+    internal val template: Template = sharedTemplate
 
     /**
      * Writes a report with the given [model] to the provided [output].
@@ -31,4 +18,26 @@ class ReportGenerator {
     fun writeReport(model: Map<String, Any?>, output: Writer) {
         template.make(model).writeTo(output)
     }
-}
\ No newline at end of file
+
+    companion object {
+        private const val TEMPLATE_NAME = "report.tpl"
+
+        /**
+         * The compiled template, read through the class loader which owns it (rather than the thread's context class
+         * loader, which a plugin replaces on every execution), and shared by every generator. A template only holds
+         * the compiled class, and each call to make creates a new instance of it, so it is safe to render
+         * concurrently.
+         */
+        private val sharedTemplate: Template by lazy { compileTemplate(ReportGenerator::class.java.classLoader) }
+
+        private fun compileTemplate(classLoader: ClassLoader): Template {
+            val config = TemplateConfiguration()
+            config.isUseDoubleQuotes = true
+            val templateEngine = MarkupTemplateEngine(config)
+
+            val stream = classLoader.getResourceAsStream(TEMPLATE_NAME)
+                    ?: throw IllegalStateException("Template not initialized")
+            return stream.use { templateEngine.createTemplate(InputStreamReader(it)) }
+        }
+    }
+}
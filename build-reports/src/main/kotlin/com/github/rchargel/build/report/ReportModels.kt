@@ -111,6 +111,22 @@ data class Division(
     }
 }
 
+/**
+ * Content which is only created as the report is written. The content is not retained, so large content (such as
+ * charts) can be generated, written and released one at a time, rather than holding the entire report in memory.
+ *
+ * @property supplier Creates the content each time it is rendered
+ *
+ * @constructor Creates a new instance of [LazyContent]
+ */
+class LazyContent(private val supplier: () -> ReportContent) : ReportContent {
+    /**
+     * Creates the content
+     * @return the content to render in place of this one
+     */
+    fun resolve() = supplier.invoke()
+}
+
 /**
  * An HTML paragraph, with an optional "bold" paragraph title.
  *
@@ -291,7 +307,8 @@ data class Table(
  * @property contentType The MIME type of the image
  * @property title The alt/title of the image for readability
  * @property data The binary data of the image
- * @property dataURL A generated value which is included the report, rather than an attachment
+ * @property dataURL A generated value which is included the report, rather than an attachment. SVG images are url
+ * encoded, rather than base64 encoded, since that is smaller for text
  *
  * @constructor Creates an instance of Image
  */
@@ -302,7 +319,8 @@ data class Image(
         val thumbnail: Boolean = false
 ) : ReportContent {
     val dataURL: String
-        get() = "data:$contentType;base64,${base64Encode(data)}"
+        get() = if (contentType == SVG_CONTENT_TYPE) "data:$contentType;charset=utf-8,${urlEncode(data)}"
+        else "data:$contentType;base64,${base64Encode(data)}"
 
     /**
      * Builds instances of [Image]
@@ -351,6 +369,8 @@ data class Image(
     }
 
     companion object {
+        private const val SVG_CONTENT_TYPE = "image/svg+xml"
+
         /**
          * Creates a builder for an image
          * @return an instance of [Builder]
@@ -508,5 +528,24 @@ data class Image(
 internal fun base64Encode(data: ByteArray) =
         Base64.getEncoder().encodeToString(data).replace(Regex("""\s+"""), "")
 
+/**
+ * Percent encodes text for a data-url, leaving the characters which are safe within a quoted HTML attribute as they
+ * are. For text such as SVG this is much smaller than base64.
+ */
+internal fun urlEncode(data: ByteArray): String {
+    val encoded = StringBuilder(data.size + data.size / 4)
+    for (byte in data) {
+        val c = byte.toInt() and 0xFF
+        if (c in 0x21..0x7E && URL_RESERVED.indexOf(c.toChar()) < 0)
+            encoded.append(c.toChar())
+        else
+            encoded.append('%').append(HEX_DIGITS[c shr 4]).append(HEX_DIGITS[c and 0xF])
+    }
+    return encoded.toString()
+}
+
+private const val URL_RESERVED = "\"#%&<>[]\\^`{|}"
+private const val HEX_DIGITS = "0123456789ABCDEF"
+
 internal fun base64Decode(data: String) =
         Base64.getDecoder().decode(data.replace(Regex("""\s+"""), ""))
\ No newline at end of file
@@ -12,11 +12,29 @@ import org.jfree.data.xy.XYSeriesCollection
 import java.awt.Color
 import java.io.ByteArrayOutputStream
 import java.io.IOException
+import java.nio.charset.StandardCharsets
 import javax.imageio.ImageIO
 import kotlin.math.abs
 import kotlin.math.max
 import kotlin.math.min
 
+/**
+ * The formats charts can be written in.
+ *
+ * @property contentType The MIME type of the image
+ */
+enum class ImageFormat(val contentType: String) {
+    /** A raster image */
+    GIF("image/gif"),
+
+    /** A vector image, which is usually much smaller and is drawn without rasterizing the chart */
+    SVG("image/svg+xml")
+}
+
+/**
+ * Draws a chart to an image. Charts are never shown, so applications without a display should run with
+ * `java.awt.headless=true`, which the Maven mojos set for themselves.
+ */
 abstract class ChartImageMaker<T : ChartImageMaker<T>>(
         xAxis: String,
         yAxis: String
@@ -32,14 +50,26 @@ abstract class ChartImageMaker<T : ChartImageMaker<T>>(
     abstract fun addDataset(datasetName: String, color: Color, plotId: Int, data: Any): T
 
     @Throws(IOException::class)
-    open fun toImageBuilder(width: Int, height: Int): Image.Builder {
-        val image = chart.createBufferedImage(width, height)
-        val out = ByteArrayOutputStream()
-        out.use {
-            ImageIO.write(image, "GIF", it)
+    @JvmOverloads
+    open fun toImageBuilder(width: Int, height: Int, format: ImageFormat = ImageFormat.GIF): Image.Builder {
+        val data = when (format) {
+            ImageFormat.GIF -> {
+                val image = chart.createBufferedImage(width, height)
+                val out = ByteArrayOutputStream()
+                out.use {
+                    ImageIO.write(image, "GIF", it)
+                }
+                out.toByteArray()
+            }
+            ImageFormat.SVG -> SvgGraphics2D.render(chart, width, height).toByteArray(StandardCharsets.UTF_8)
         }
-        return Image.builder().data(out.toByteArray())
-                .contentType("image/gif")
+        return Image.builder().data(data)
+                .contentType(format.contentType)
+    }
+
+    companion object {
+        /** The number of points drawn for each pixel of a line chart's width */
+        const val POINTS_PER_PIXEL = 2
     }
 }
 
@@ -58,9 +88,29 @@ abstract class XYChartImageMaker<T : XYChartImageMaker<T>>(xAxis: String, yAxis:
         xyPlot.axisOffset = RectangleInsets(0.0, 0.0, 0.0, 0.0)
     }
 
+    private val pendingDatasets = ArrayList<(Int) -> Unit>()
+
     override fun addDataset(datasetName: String, color: Color, plotId: Int, data: Any): T =
             addDataset(datasetName, color, plotId, xyPlot, data)
 
+    /**
+     * Defers adding a dataset to the plot until the size of the image is known, so that it can be reduced to no more
+     * points than can be seen. The [dataset] function is given the number of points to draw.
+     */
+    protected fun addDatasetWhenDrawn(dataset: (pointBudget: Int) -> Unit) {
+        pendingDatasets.add(dataset)
+    }
+
+    override fun toImageBuilder(width: Int, height: Int, format: ImageFormat): Image.Builder {
+        pendingDatasets.forEach { it.invoke(width * POINTS_PER_PIXEL) }
+        pendingDatasets.clear()
+
+        // draw each series as a single line, rather than a line per data point
+        for (i in 0 until xyPlot.rendererCount)
+            (xyPlot.getRenderer(i) as? XYLineAndShapeRenderer)?.drawSeriesLineAsPath = true
+        return super.toImageBuilder(width, height, format)
+    }
+
     protected abstract fun addDataset(datasetName: String, color: Color, plotId: Int, xyPlot: XYPlot, data: Any): T
 }
 
@@ -74,27 +124,27 @@ class RawDataLineChartImageMaker(xAxis: String, units: String, private val maxCo
     }
 
     private fun addDataset(datasetName: String, color: Color, plotId: Int, xyPlot: XYPlot, data: DoubleArray) = apply {
-        val series = XYSeries(datasetName)
-        val length = data.size
-        val step = maxCount / length.toDouble()
-
-        IntRange(0, length - 1).forEach { i ->
-            series.add(i * step + 1, data[i])
+        addDatasetWhenDrawn { pointBudget ->
+            val series = XYSeries(datasetName)
+            val step = maxCount / data.size.toDouble()
+
+            for (i in Downsampling.largestTriangleThreeBuckets(data, pointBudget))
+                series.add(i * step + 1, data[i], false)
+
+            val collection = XYSeriesCollection()
+            collection.addSeries(series)
+            xyPlot.setDataset(plotId, collection)
+            val range = xyPlot.rangeAxis.range
+            val minY = if (rangeSet) min(range.lowerBound, series.minY) else series.minY
+            val maxY = if (rangeSet) max(range.upperBound, series.maxY) else series.maxY
+            rangeSet = true
+
+            val tenPercentOfDiff = abs(maxY - minY) * 0.1
+            xyPlot.rangeAxis.range = Range(minY - tenPercentOfDiff, maxY + tenPercentOfDiff)
+            val renderer = XYLineAndShapeRenderer()
+            renderer.setSeriesPaint(0, color)
+            renderer.setSeriesShapesVisible(0, false)
+            xyPlot.setRenderer(plotId, renderer)
         }
-
-        val collection = XYSeriesCollection()
-        collection.addSeries(series)
-        xyPlot.setDataset(plotId, collection)
-        val range = xyPlot.rangeAxis.range
-        val minY = if (rangeSet) min(range.lowerBound, series.minY) else series.minY
-        val maxY = if (rangeSet) max(range.upperBound, series.maxY) else series.maxY
-        rangeSet = true
-
-        val tenPercentOfDiff = abs(maxY - minY) * 0.1
-        xyPlot.rangeAxis.range = Range(minY - tenPercentOfDiff, maxY + tenPercentOfDiff)
-        val renderer = XYLineAndShapeRenderer()
-        renderer.setSeriesPaint(0, color)
-        renderer.setSeriesShapesVisible(0, false)
-        xyPlot.setRenderer(plotId, renderer)
     }
 }
@@ -0,0 +1,82 @@
+package com.github.rchargel.build.report.chart
+
+import kotlin.math.abs
+import kotlin.math.min
+import kotlin.math.roundToInt
+
+/**
+ * Reduces large series to the number of points which can actually be seen on a chart.
+ */
+object Downsampling {
+
+    /**
+     * Selects the points of a line using the Largest-Triangle-Three-Buckets algorithm. The points between the first
+     * and last are split into buckets, and from each bucket the point forming the largest triangle with the point
+     * selected before it and the average of the next bucket is kept, which preserves the peaks and the shape of the
+     * line.
+     *
+     * @param y The values of the line
+     * @param threshold The number of points to keep
+     * @param x The x values of the line, or null if the values are evenly spaced
+     * @return Returns the (ascending) indices of the points to keep, or all of them if there are no more than the
+     * threshold.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun largestTriangleThreeBuckets(y: DoubleArray, threshold: Int, x: DoubleArray? = null): IntArray {
+        val size = y.size
+        if (threshold >= size || threshold < 3)
+            return IntArray(size) { it }
+
+        fun x(i: Int) = x?.get(i) ?: i.toDouble()
+
+        val selected = IntArray(threshold)
+        val bucketSize = (size - 2).toDouble() / (threshold - 2)
+        var previous = 0
+        for (bucket in 0 until threshold - 2) {
+            // the average point of the next bucket (the last point, for the last bucket)
+            val nextStart = ((bucket + 1) * bucketSize).toInt() + 1
+            val nextEnd = min(((bucket + 2) * bucketSize).toInt() + 1, size)
+            var averageX = 0.0
+            var averageY = 0.0
+            for (i in nextStart until nextEnd) {
+                averageX += x(i)
+                averageY += y[i]
+            }
+            averageX /= nextEnd - nextStart
+            averageY /= nextEnd - nextStart
+
+            val previousX = x(previous)
+            val previousY = y[previous]
+            var largestArea = -1.0
+            var largest = previous
+            for (i in (bucket * bucketSize).toInt() + 1 until nextStart) {
+                val area = abs((previousX - averageX) * (y[i] - previousY) - (previousX - x(i)) * (averageY - previousY))
+                if (area > largestArea) {
+                    largestArea = area
+                    largest = i
+                }
+            }
+            selected[bucket + 1] = largest
+            previous = largest
+        }
+        selected[threshold - 1] = size - 1
+        return selected
+    }
+
+    /**
+     * Selects evenly spaced ranks from sorted values, so an empirical cumulative distribution can be drawn from a
+     * fixed number of its quantiles.
+     *
+     * @param size The number of sorted values
+     * @param points The number of points to keep
+     * @return Returns the (ascending) indices of the points to keep, always including the first and last, or all of
+     * them if there are no more than the number of points.
+     */
+    @JvmStatic
+    fun quantileGrid(size: Int, points: Int): IntArray {
+        if (points >= size || points < 2)
+            return IntArray(size) { it }
+        return IntArray(points) { (it.toDouble() * (size - 1) / (points - 1)).roundToInt() }
+    }
+}
@@ -0,0 +1,592 @@
+package com.github.rchargel.build.report.chart
+
+import org.jfree.chart.JFreeChart
+import java.awt.AlphaComposite
+import java.awt.BasicStroke
+import java.awt.Color
+import java.awt.Composite
+import java.awt.Font
+import java.awt.FontMetrics
+import java.awt.GradientPaint
+import java.awt.Graphics
+import java.awt.Graphics2D
+import java.awt.GraphicsConfiguration
+import java.awt.Image
+import java.awt.Paint
+import java.awt.Polygon
+import java.awt.Rectangle
+import java.awt.RenderingHints
+import java.awt.Shape
+import java.awt.Stroke
+import java.awt.font.FontRenderContext
+import java.awt.font.GlyphVector
+import java.awt.geom.AffineTransform
+import java.awt.geom.Arc2D
+import java.awt.geom.Area
+import java.awt.geom.Ellipse2D
+import java.awt.geom.Line2D
+import java.awt.geom.Path2D
+import java.awt.geom.PathIterator
+import java.awt.geom.Rectangle2D
+import java.awt.geom.RoundRectangle2D
+import java.awt.image.BufferedImage
+import java.awt.image.BufferedImageOp
+import java.awt.image.ImageObserver
+import java.awt.image.RenderedImage
+import java.awt.image.renderable.RenderableImage
+import java.text.AttributedCharacterIterator
+import kotlin.math.abs
+import kotlin.math.round
+import kotlin.math.sqrt
+
+/**
+ * A minimal [Graphics2D] which writes the shapes and text drawn on it as SVG elements, so that charts can be drawn as
+ * vector images without rasterizing them. Only what is needed to draw charts is supported; anything else, such as
+ * drawing images or XOR mode, throws an [UnsupportedOperationException] rather than leaving it out of the image.
+ *
+ * Lines are simplified as they are written: of the points which fall within the same pixel column, only the lowest,
+ * highest and last are kept, which keeps dense line charts small without visibly changing them.
+ */
+internal class SvgGraphics2D private constructor(
+        private val document: Document,
+        private var transform: AffineTransform,
+        private var paint: Paint,
+        private var background: Color,
+        private var stroke: Stroke,
+        private var font: Font,
+        private var clip: Shape?,
+        private var composite: Composite,
+        private val hints: RenderingHints
+) : Graphics2D() {
+
+    constructor(width: Int, height: Int) : this(Document(width, height), AffineTransform(), Color.black, Color.white,
+            BasicStroke(1f), Font(Font.SANS_SERIF, Font.PLAIN, 12), null, AlphaComposite.SrcOver,
+            RenderingHints(null as Map<RenderingHints.Key, *>?))
+
+    /**
+     * @return the SVG document drawn so far
+     */
+    fun toSvg(): String = document.toSvg()
+
+    override fun create(): Graphics = SvgGraphics2D(document, AffineTransform(transform), paint, background, stroke,
+            font, clip, composite, hints.clone() as RenderingHints)
+
+    override fun dispose() {}
+
+    // --- shapes
+
+    override fun draw(s: Shape) {
+        val stroke = this.stroke
+        if (stroke !is BasicStroke) {
+            fill(stroke.createStrokedShape(s))
+            return
+        }
+        val path = pathData(s)
+        if (path.isEmpty())
+            return
+        document.element("path") {
+            attribute("d", path)
+            attribute("fill", "none")
+            paintAttributes("stroke", paint)
+            strokeAttributes(stroke)
+            clipAttribute()
+        }
+    }
+
+    override fun fill(s: Shape) {
+        val path = pathData(s)
+        if (path.isEmpty())
+            return
+        document.element("path") {
+            attribute("d", path)
+            paintAttributes("fill", paint)
+            clipAttribute()
+        }
+    }
+
+    override fun hit(rect: Rectangle, s: Shape, onStroke: Boolean): Boolean =
+            transform.createTransformedShape(if (onStroke) stroke.createStrokedShape(s) else s).intersects(rect)
+
+    override fun drawLine(x1: Int, y1: Int, x2: Int, y2: Int) =
+            draw(Line2D.Double(x1.toDouble(), y1.toDouble(), x2.toDouble(), y2.toDouble()))
+
+    override fun fillRect(x: Int, y: Int, width: Int, height: Int) = fill(Rectangle(x, y, width, height))
+
+    override fun clearRect(x: Int, y: Int, width: Int, height: Int) {
+        val previous = paint
+        paint = background
+        fill(Rectangle(x, y, width, height))
+        paint = previous
+    }
+
+    override fun drawRoundRect(x: Int, y: Int, width: Int, height: Int, arcWidth: Int, arcHeight: Int) =
+            draw(roundRect(x, y, width, height, arcWidth, arcHeight))
+
+    override fun fillRoundRect(x: Int, y: Int, width: Int, height: Int, arcWidth: Int, arcHeight: Int) =
+            fill(roundRect(x, y, width, height, arcWidth, arcHeight))
+
+    override fun drawOval(x: Int, y: Int, width: Int, height: Int) =
+            draw(Ellipse2D.Double(x.toDouble(), y.toDouble(), width.toDouble(), height.toDouble()))
+
+    override fun fillOval(x: Int, y: Int, width: Int, height: Int) =
+            fill(Ellipse2D.Double(x.toDouble(), y.toDouble(), width.toDouble(), height.toDouble()))
+
+    override fun drawArc(x: Int, y: Int, width: Int, height: Int, startAngle: Int, arcAngle: Int) =
+            draw(arc(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN))
+
+    override fun fillArc(x: Int, y: Int, width: Int, height: Int, startAngle: Int, arcAngle: Int) =
+            fill(arc(x, y, width, height, startAngle, arcAngle, Arc2D.PIE))
+
+    override fun drawPolyline(xPoints: IntArray, yPoints: IntArray, nPoints: Int) {
+        if (nPoints < 1)
+            return
+        val path = Path2D.Double()
+        path.moveTo(xPoints[0].toDouble(), yPoints[0].toDouble())
+        for (i in 1 until nPoints)
+            path.lineTo(xPoints[i].toDouble(), yPoints[i].toDouble())
+        draw(path)
+    }
+
+    override fun drawPolygon(xPoints: IntArray, yPoints: IntArray, nPoints: Int) = draw(Polygon(xPoints, yPoints, nPoints))
+
+    override fun fillPolygon(xPoints: IntArray, yPoints: IntArray, nPoints: Int) = fill(Polygon(xPoints, yPoints, nPoints))
+
+    override fun copyArea(x: Int, y: Int, width: Int, height: Int, dx: Int, dy: Int) = unsupported("Copying areas")
+
+    // --- text
+
+    override fun drawString(str: String, x: Int, y: Int) = drawString(str, x.toFloat(), y.toFloat())
+
+    override fun drawString(str: String, x: Float, y: Float) {
+        if (str.isEmpty())
+            return
+        document.element("text", str) {
+            if (transform.type and (AffineTransform.TYPE_TRANSLATION or AffineTransform.TYPE_IDENTITY).inv() == 0) {
+                attribute("x", number(x + transform.translateX))
+                attribute("y", number(y + transform.translateY))
+            } else {
+                attribute("x", number(x.toDouble()))
+                attribute("y", number(y.toDouble()))
+                attribute("transform", "matrix(${number(transform.scaleX)},${number(transform.shearY)}," +
+                        "${number(transform.shearX)},${number(transform.scaleY)}," +
+                        "${number(transform.translateX)},${number(transform.translateY)})")
+            }
+            attribute("font-family", fontFamily(font))
+            attribute("font-size", number(font.size2D.toDouble()))
+            if (font.isBold)
+                attribute("font-weight", "bold")
+            if (font.isItalic)
+                attribute("font-style", "italic")
+            paintAttributes("fill", paint)
+            clipAttribute()
+        }
+    }
+
+    override fun drawString(iterator: AttributedCharacterIterator, x: Int, y: Int) =
+            drawString(iterator, x.toFloat(), y.toFloat())
+
+    override fun drawString(iterator: AttributedCharacterIterator, x: Float, y: Float) {
+        val text = StringBuilder()
+        var c = iterator.first()
+        while (c != AttributedCharacterIterator.DONE) {
+            text.append(c)
+            c = iterator.next()
+        }
+        drawString(text.toString(), x, y)
+    }
+
+    override fun drawGlyphVector(g: GlyphVector, x: Float, y: Float) = fill(g.getOutline(x, y))
+
+    override fun getFont() = font
+
+    override fun setFont(font: Font?) {
+        if (font != null)
+            this.font = font
+    }
+
+    override fun getFontMetrics(f: Font): FontMetrics = document.metrics.getFontMetrics(f)
+
+    override fun getFontRenderContext(): FontRenderContext = document.metrics.fontRenderContext
+
+    override fun getDeviceConfiguration(): GraphicsConfiguration = document.metrics.deviceConfiguration
+
+    // --- images are not supported (drawing a null image draws nothing)
+
+    override fun drawImage(img: Image?, xform: AffineTransform?, obs: ImageObserver?) = img == null || unsupportedImage()
+
+    override fun drawImage(img: BufferedImage?, op: BufferedImageOp?, x: Int, y: Int) {
+        if (img != null)
+            unsupportedImage()
+    }
+
+    override fun drawImage(img: Image?, x: Int, y: Int, observer: ImageObserver?) = img == null || unsupportedImage()
+
+    override fun drawImage(img: Image?, x: Int, y: Int, width: Int, height: Int, observer: ImageObserver?) =
+            img == null || unsupportedImage()
+
+    override fun drawImage(img: Image?, x: Int, y: Int, bgcolor: Color?, observer: ImageObserver?) =
+            img == null || unsupportedImage()
+
+    override fun drawImage(img: Image?, x: Int, y: Int, width: Int, height: Int, bgcolor: Color?, observer: ImageObserver?) =
+            img == null || unsupportedImage()
+
+    override fun drawImage(img: Image?, dx1: Int, dy1: Int, dx2: Int, dy2: Int, sx1: Int, sy1: Int, sx2: Int, sy2: Int,
+                           observer: ImageObserver?) = img == null || unsupportedImage()
+
+    override fun drawImage(img: Image?, dx1: Int, dy1: Int, dx2: Int, dy2: Int, sx1: Int, sy1: Int, sx2: Int, sy2: Int,
+                           bgcolor: Color?, observer: ImageObserver?) = img == null || unsupportedImage()
+
+    override fun drawRenderedImage(img: RenderedImage?, xform: AffineTransform?) {
+        if (img != null)
+            unsupportedImage()
+    }
+
+    override fun drawRenderableImage(img: RenderableImage?, xform: AffineTransform?) {
+        if (img != null)
+            unsupportedImage()
+    }
+
+    private fun unsupportedImage(): Nothing = unsupported("Drawing images")
+
+    // --- state
+
+    override fun getColor(): Color = paint as? Color ?: Color.black
+
+    override fun setColor(c: Color?) {
+        if (c != null)
+            paint = c
+    }
+
+    override fun getPaint() = paint
+
+    override fun setPaint(paint: Paint?) {
+        if (paint != null)
+            this.paint = paint
+    }
+
+    override fun setPaintMode() {}
+
+    override fun setXORMode(c1: Color?) = unsupported("XOR mode")
+
+    override fun getBackground() = background
+
+    override fun setBackground(color: Color) {
+        background = color
+    }
+
+    override fun getStroke() = stroke
+
+    override fun setStroke(s: Stroke) {
+        stroke = s
+    }
+
+    override fun getComposite() = composite
+
+    override fun setComposite(comp: Composite) {
+        composite = comp
+    }
+
+    override fun setRenderingHint(hintKey: RenderingHints.Key, hintValue: Any?) {
+        hints[hintKey] = hintValue
+    }
+
+    override fun getRenderingHint(hintKey: RenderingHints.Key): Any? = hints[hintKey]
+
+    override fun setRenderingHints(hints: Map<*, *>) {
+        this.hints.clear()
+        this.hints.putAll(hints)
+    }
+
+    override fun addRenderingHints(hints: Map<*, *>) = this.hints.putAll(hints)
+
+    override fun getRenderingHints() = hints.clone() as RenderingHints
+
+    override fun getTransform() = AffineTransform(transform)
+
+    override fun setTransform(tx: AffineTransform) {
+        transform = AffineTransform(tx)
+    }
+
+    override fun transform(tx: AffineTransform) = transform.concatenate(tx)
+
+    override fun translate(x: Int, y: Int) = transform.translate(x.toDouble(), y.toDouble())
+
+    override fun translate(tx: Double, ty: Double) = transform.translate(tx, ty)
+
+    override fun rotate(theta: Double) = transform.rotate(theta)
+
+    override fun rotate(theta: Double, x: Double, y: Double) = transform.rotate(theta, x, y)
+
+    override fun scale(sx: Double, sy: Double) = transform.scale(sx, sy)
+
+    override fun shear(shx: Double, shy: Double) = transform.shear(shx, shy)
+
+    // --- clipping, held in device space
+
+    override fun getClip(): Shape? = clip?.let { transform.createInverse().createTransformedShape(it) }
+
+    override fun getClipBounds(): Rectangle? = getClip()?.bounds
+
+    override fun setClip(clip: Shape?) {
+        this.clip = clip?.let { transform.createTransformedShape(it) }
+    }
+
+    override fun setClip(x: Int, y: Int, width: Int, height: Int) = setClip(Rectangle(x, y, width, height))
+
+    override fun clip(s: Shape) {
+        val shape = transform.createTransformedShape(s)
+        val current = clip
+        clip = if (current == null) shape else Area(current).apply { intersect(Area(shape)) }
+    }
+
+    override fun clipRect(x: Int, y: Int, width: Int, height: Int) = clip(Rectangle(x, y, width, height))
+
+    // --- writing
+
+    private fun unsupported(operation: String): Nothing =
+            throw UnsupportedOperationException("$operation is not supported when drawing charts as SVG")
+
+    private fun Document.Element.paintAttributes(name: String, paint: Paint) {
+        val color = when (paint) {
+            is Color -> paint
+            is GradientPaint -> paint.color1
+            else -> unsupported("Painting with ${paint.javaClass.simpleName}")
+        }
+        attribute(name, "rgb(${color.red},${color.green},${color.blue})")
+        val alpha = color.alpha / 255.0 * ((composite as? AlphaComposite)?.alpha ?: 1f)
+        if (alpha < 1.0)
+            attribute("$name-opacity", number(alpha))
+    }
+
+    private fun Document.Element.strokeAttributes(stroke: BasicStroke) {
+        val scale = sqrt(abs(transform.determinant))
+        attribute("stroke-width", number(stroke.lineWidth * scale))
+        when (stroke.endCap) {
+            BasicStroke.CAP_ROUND -> attribute("stroke-linecap", "round")
+            BasicStroke.CAP_SQUARE -> attribute("stroke-linecap", "square")
+        }
+        when (stroke.lineJoin) {
+            BasicStroke.JOIN_ROUND -> attribute("stroke-linejoin", "round")
+            BasicStroke.JOIN_BEVEL -> attribute("stroke-linejoin", "bevel")
+        }
+        val dashes = stroke.dashArray
+        if (dashes != null && dashes.isNotEmpty())
+            attribute("stroke-dasharray", dashes.joinToString(",") { number(it * scale) })
+    }
+
+    private fun Document.Element.clipAttribute() {
+        val clip = this@SvgGraphics2D.clip ?: return
+        attribute("clip-path", "url(#${document.clipId(pathData(clip, AffineTransform()))})")
+    }
+
+    private fun pathData(shape: Shape, transform: AffineTransform = this.transform): String {
+        val path = StringBuilder()
+        val coordinates = DoubleArray(6)
+        val iterator = shape.getPathIterator(transform)
+        val column = Column()
+
+        fun point(command: Char, x: Double, y: Double) {
+            path.append(command).append(number(x)).append(',').append(number(y))
+            column.start(x)
+        }
+
+        // a segment with a NaN or infinite coordinate is left out, and the path resumes at the next finite point
+        var broken = false
+        while (!iterator.isDone) {
+            val segment = iterator.currentSegment(coordinates)
+            val points = when (segment) {
+                PathIterator.SEG_MOVETO, PathIterator.SEG_LINETO -> 1
+                PathIterator.SEG_QUADTO -> 2
+                PathIterator.SEG_CUBICTO -> 3
+                else -> 0
+            }
+            if ((0 until points * 2).any { !coordinates[it].isFinite() }) {
+                column.flush(path)
+                broken = true
+                iterator.next()
+                continue
+            }
+            if (broken) {
+                if (points > 0) {
+                    point('M', coordinates[points * 2 - 2], coordinates[points * 2 - 1])
+                    broken = false
+                }
+                iterator.next()
+                continue
+            }
+            if (segment == PathIterator.SEG_LINETO && column.add(coordinates[0], coordinates[1])) {
+                iterator.next()
+                continue
+            }
+            column.flush(path)
+            when (segment) {
+                PathIterator.SEG_MOVETO -> point('M', coordinates[0], coordinates[1])
+                PathIterator.SEG_LINETO -> point('L', coordinates[0], coordinates[1])
+                PathIterator.SEG_QUADTO -> {
+                    path.append('Q').append(number(coordinates[0])).append(',').append(number(coordinates[1]))
+                    point(' ', coordinates[2], coordinates[3])
+                }
+                PathIterator.SEG_CUBICTO -> {
+                    path.append('C').append(number(coordinates[0])).append(',').append(number(coordinates[1])).append(' ')
+                            .append(number(coordinates[2])).append(',').append(number(coordinates[3]))
+                    point(' ', coordinates[4], coordinates[5])
+                }
+                PathIterator.SEG_CLOSE -> path.append('Z')
+            }
+            iterator.next()
+        }
+        column.flush(path)
+        return path.toString()
+    }
+
+    /**
+     * The points of a line which fall within the same pixel column as the last point written. Only the lowest, highest
+     * and last of them are written, which draws the same line however many points there are.
+     */
+    private class Column {
+        private var x = Double.NaN
+        private var count = 0
+        private val lowest = DoubleArray(3)
+        private val highest = DoubleArray(3)
+        private val last = DoubleArray(3)
+
+        fun start(x: Double) {
+            this.x = x
+            count = 0
+        }
+
+        fun add(x: Double, y: Double): Boolean {
+            if (!(abs(x - this.x) < TOLERANCE))
+                return false
+            count++
+            if (count == 1 || y < lowest[1])
+                set(lowest, x, y)
+            if (count == 1 || y > highest[1])
+                set(highest, x, y)
+            set(last, x, y)
+            return true
+        }
+
+        fun flush(path: StringBuilder) {
+            if (count == 0)
+                return
+            val points = if (lowest[2] < highest[2]) arrayOf(lowest, highest, last) else arrayOf(highest, lowest, last)
+            var written = -1.0
+            for (point in points) {
+                if (point[2] > written) {
+                    path.append('L').append(number(point[0])).append(',').append(number(point[1]))
+                    written = point[2]
+                }
+            }
+            start(last[0])
+        }
+
+        private fun set(point: DoubleArray, x: Double, y: Double) {
+            point[0] = x
+            point[1] = y
+            point[2] = count.toDouble()
+        }
+    }
+
+    /**
+     * The SVG document shared by a graphics context and every context created from it.
+     */
+    private class Document(private val width: Int, private val height: Int) {
+        private val body = StringBuilder()
+        private val clips = HashMap<String, String>()
+
+        val metrics: Graphics2D = BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics().apply {
+            setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON)
+            setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON)
+        }
+
+        fun clipId(path: String) = clips.getOrPut(path) {
+            val id = "clip${clips.size}"
+            body.append("<clipPath id='").append(id).append("'><path d='").append(path).append("'/></clipPath>")
+            id
+        }
+
+        fun element(name: String, text: String? = null, attributes: Element.() -> Unit) {
+            // the attributes are written first, since they may add a clip path which has to precede the element
+            val element = Element().apply(attributes)
+            body.append('<').append(name).append(element.attributes)
+            if (text == null) {
+                body.append("/>")
+            } else {
+                body.append('>')
+                escape(body, text)
+                body.append("</").append(name).append('>')
+            }
+        }
+
+        // single quotes keep the document small when it is url encoded
+        fun toSvg() = "<svg xmlns='http://www.w3.org/2000/svg' width='$width' height='$height' " +
+                "viewBox='0 0 $width $height'>$body</svg>"
+
+        private fun escape(out: StringBuilder, text: String) {
+            for (c in text) {
+                when (c) {
+                    '&' -> out.append("&amp;")
+                    '<' -> out.append("&lt;")
+                    '>' -> out.append("&gt;")
+                    '"' -> out.append("&quot;")
+                    '\'' -> out.append("&apos;")
+                    else -> out.append(c)
+                }
+            }
+        }
+
+        inner class Element {
+            val attributes = StringBuilder()
+
+            fun attribute(name: String, value: String) {
+                attributes.append(' ').append(name).append("='")
+                escape(attributes, value)
+                attributes.append('\'')
+            }
+        }
+    }
+
+    companion object {
+        private const val TOLERANCE = 0.5
+
+        // infinite values are written as the largest number a renderer can be expected to handle
+        private const val MAX_NUMBER = 1e9
+
+        /**
+         * Draws the [chart] as an SVG image of the given size
+         * @return the SVG document
+         */
+        fun render(chart: JFreeChart, width: Int, height: Int): String {
+            val graphics = SvgGraphics2D(width, height)
+            chart.draw(graphics, Rectangle2D.Double(0.0, 0.0, width.toDouble(), height.toDouble()))
+            return graphics.toSvg()
+        }
+
+        private fun number(value: Float) = number(value.toDouble())
+
+        private fun number(value: Double): String {
+            if (value.isNaN())
+                return "0"
+            if (value.isInfinite())
+                return number(if (value > 0) MAX_NUMBER else -MAX_NUMBER)
+            val rounded = round(value * 100) / 100
+            return if (rounded == rounded.toLong().toDouble()) rounded.toLong().toString() else rounded.toString()
+        }
+
+        private fun fontFamily(font: Font) = when (font.family) {
+            Font.SANS_SERIF, Font.DIALOG -> "sans-serif"
+            Font.SERIF -> "serif"
+            Font.MONOSPACED, Font.DIALOG_INPUT -> "monospace"
+            else -> "${font.family}, sans-serif"
+        }
+
+        private fun roundRect(x: Int, y: Int, width: Int, height: Int, arcWidth: Int, arcHeight: Int) =
+                RoundRectangle2D.Double(x.toDouble(), y.toDouble(), width.toDouble(), height.toDouble(),
+                        arcWidth.toDouble(), arcHeight.toDouble())
+
+        private fun arc(x: Int, y: Int, width: Int, height: Int, startAngle: Int, arcAngle: Int, type: Int) =
+                Arc2D.Double(x.toDouble(), y.toDouble(), width.toDouble(), height.toDouble(),
+                        startAngle.toDouble(), arcAngle.toDouble(), type)
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.rchargel.build.report.compressors
+
+import java.nio.charset.StandardCharsets.UTF_8
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A process wide cache of compressed CSS and JavaScript. Entries are keyed by a SHA-256 hash of the uncompressed
+ * content, so each distinct asset is only run through the compressor once, however many reports are rendered, while
+ * a changed asset is never served stale.
+ */
+object CompressedAssetCache {
+    enum class AssetType { CSS, JAVASCRIPT }
+
+    private val cache = ConcurrentHashMap<String, String>()
+
+    /**
+     * Gets the compressed form of an asset, compressing it only if the same content has not been seen before.
+     *
+     * @param content The uncompressed content.
+     * @param type    The type of asset.
+     * @return Returns the compressed content.
+     */
+    @JvmStatic
+    fun compress(content: String, type: AssetType): String = cache.computeIfAbsent("$type:${hash(content)}") {
+        when (type) {
+            AssetType.CSS -> TextCompressor().compressCSS(content)
+            AssetType.JAVASCRIPT -> TextCompressor().compressJavaScript(content)
+        }
+    }
+
+    @JvmStatic
+    fun size() = cache.size
+
+    @JvmStatic
+    fun clear() = cache.clear()
+
+    private fun hash(content: String) = MessageDigest.getInstance("SHA-256").digest(content.toByteArray(UTF_8))
+            .joinToString("") { "%02x".format(it) }
+}
@@ -1,6 +1,7 @@
 def writeSection = null
 def writeTable = null
-def writeContent = { element, level ->
+def writeContent = null
+writeContent = { element, level ->
     switch (element.class) {
         case com.github.rchargel.build.report.Text:
             if (element.title) {
@@ -9,7 +10,7 @@ def writeContent = { element, level ->
             p(element.content)
             break
         case com.github.rchargel.build.report.Image:
-            img(title: element.title, src: element.dataURL, class: "${element.thumbnail ? 'thumbnail' : ''}")
+            img(title: element.title, src: imageResolver.resolve(element), class: "${element.thumbnail ? 'thumbnail' : ''}")
             break
         case com.github.rchargel.build.report.Table:
             writeTable(element, level)
@@ -20,6 +21,9 @@ def writeContent = { element, level ->
         case com.github.rchargel.build.report.Section:
             writeSection(element, level+1)
             break
+        case com.github.rchargel.build.report.LazyContent:
+            writeContent(element.resolve(), level)
+            break
         default:
             p(element.class)
             break
@@ -34,6 +38,7 @@ def writeTableValue = { element, level ->
             case com.github.rchargel.build.report.Text:
             case com.github.rchargel.build.report.Table:
             case com.github.rchargel.build.report.Division:
+            case com.github.rchargel.build.report.LazyContent:
                 writeContent(element, level)
                 break
             default:
@@ -1,10 +1,15 @@
 package com.github.rchargel.build.report
 
+import com.github.rchargel.build.report.chart.ImageFormat
 import com.github.rchargel.build.report.chart.RawDataLineChartImageMaker
+import com.github.rchargel.build.report.chart.SvgGraphics2D
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.junit.runners.Parameterized
 import java.awt.Color
+import java.awt.geom.Path2D
+import java.awt.image.BufferedImage
+import javax.xml.parsers.DocumentBuilderFactory
 
 @RunWith(Parameterized::class)
 class CanCreateRawDataImageTest(private val rawData: DoubleArray) {
@@ -29,4 +34,53 @@ class CanCreateRawDataImageTest(private val rawData: DoubleArray) {
         assert("image/gif" == image.contentType)
         assert(image.dataURL.startsWith("data:image/gif;base64,R0lGODlhkAHIAPcAAEBAQE"))
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testRawDataSvg() {
+        val image = RawDataLineChartImageMaker("Iteration #", "ms", rawData.size)
+                .addDataset("Results", Color.blue, 1, rawData)
+                .toImageBuilder(400, 200, ImageFormat.SVG)
+                .build()
+
+        assert("image/svg+xml" == image.contentType)
+        assert(image.dataURL.startsWith("data:image/svg+xml;charset=utf-8,%3Csvg"))
+
+        val svg = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(image.data.inputStream())
+        assert(svg.documentElement.tagName == "svg")
+        assert(svg.getElementsByTagName("path").length > 0)
+        assert(svg.getElementsByTagName("text").length > 0)
+    }
+
+    @Test
+    fun testSvgSimplifiesDenseLines() {
+        val dense = DoubleArray(100_000) { rawData[it % rawData.size] + it * 1e-6 }
+        val svg = RawDataLineChartImageMaker("Iteration #", "ms", dense.size)
+                .addDataset("Results", Color.blue, 1, dense)
+                .toImageBuilder(400, 200, ImageFormat.SVG)
+                .build()
+                .data
+
+        assert(svg.size < 200_000) { "SVG was ${svg.size} bytes" }
+    }
+
+    @Test
+    fun testSvgSkipsNonFiniteCoordinates() {
+        val line = Path2D.Double()
+        line.moveTo(0.0, rawData[0])
+        line.lineTo(10.0, Double.NaN)
+        line.lineTo(20.0, Double.POSITIVE_INFINITY)
+        line.lineTo(30.0, rawData[1])
+        line.lineTo(40.0, rawData[2])
+        val graphics = SvgGraphics2D(400, 200)
+        graphics.draw(line)
+        val svg = graphics.toSvg()
+
+        assert(!svg.contains("NaN") && !svg.contains("Infinity")) { svg }
+        assert(svg.contains("M30,")) { svg }
+    }
+
+    @Test(expected = UnsupportedOperationException::class)
+    fun testSvgFailsOnImages() {
+        SvgGraphics2D(400, 200).drawImage(BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), 0, 0, null)
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.rchargel.build.report
+
+import com.github.rchargel.build.report.compressors.CompressedAssetCache
+import com.github.rchargel.build.report.compressors.CompressedAssetCache.AssetType
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class CompressedAssetCacheTest {
+
+    @Test
+    fun onlyCompressesContentOnce() {
+        CompressedAssetCache.clear()
+        val first = Report.readCompressed("report.css")
+        val second = Report.readCompressed("report.css")
+
+        assertSame(first, second)
+        assertEquals(1, CompressedAssetCache.size())
+    }
+
+    @Test
+    fun changedContentIsRecompressed() {
+        CompressedAssetCache.clear()
+        assertEquals("a{color:red}", CompressedAssetCache.compress("a { color: red; }", AssetType.CSS))
+        assertEquals("a{color:blue}", CompressedAssetCache.compress("a { color: blue; }", AssetType.CSS))
+        assertEquals(2, CompressedAssetCache.size())
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.rchargel.build.report
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.ConcurrentHashMap
+
+class ContentPrefetcherTest {
+
+    @Test
+    fun resolvesInSubmissionOrder() {
+        val threads = ConcurrentHashMap.newKeySet<String>()
+        val prefetcher = ContentPrefetcher(4)
+        val contents = (0 until 20).map { i ->
+            prefetcher.submit {
+                threads.add(Thread.currentThread().name)
+                Thread.sleep(5)
+                Text("content $i")
+            }
+        }
+
+        assertEquals((0 until 20).map { Text("content $it") }, contents.map { it.resolve() })
+        assertTrue(threads.none { it == Thread.currentThread().name })
+    }
+
+    @Test
+    fun onlyCreatesContentWithinTheWindow() {
+        val created = ConcurrentHashMap.newKeySet<Int>()
+        val prefetcher = ContentPrefetcher(2)
+        val contents = (0 until 10).map { i -> prefetcher.submit { created.add(i); Text("content $i") } }
+
+        contents[0].resolve()
+        Thread.sleep(100)
+        assertTrue(created.all { it <= 2 })
+
+        assertEquals(Text("content 0"), contents[0].resolve())
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun rethrowsFailures() {
+        ContentPrefetcher().submit { throw IllegalStateException("failed") }.resolve()
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.rchargel.build.report
+
+import com.github.rchargel.build.report.chart.Downsampling
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.sin
+
+class DownsamplingTest {
+
+    @Test
+    fun keepsSmallSeries() {
+        val values = doubleArrayOf(1.0, 5.0, 2.0, 4.0)
+        assertArrayEquals(intArrayOf(0, 1, 2, 3), Downsampling.largestTriangleThreeBuckets(values, 10))
+        assertArrayEquals(intArrayOf(0, 1, 2, 3), Downsampling.quantileGrid(values.size, 10))
+    }
+
+    @Test
+    fun largestTriangleThreeBucketsKeepsPeaks() {
+        val values = DoubleArray(100_000) { sin(it / 1000.0) }
+        values[54_321] = 100.0
+        values[76_543] = -100.0
+
+        val selected = Downsampling.largestTriangleThreeBuckets(values, 500)
+
+        assertEquals(500, selected.size)
+        assertEquals(0, selected.first())
+        assertEquals(values.size - 1, selected.last())
+        assertTrue((1 until selected.size).all { selected[it] > selected[it - 1] })
+        assertTrue(54_321 in selected)
+        assertTrue(76_543 in selected)
+    }
+
+    @Test
+    fun quantileGridIsEvenlySpaced() {
+        assertArrayEquals(intArrayOf(0, 25, 50, 75, 100), Downsampling.quantileGrid(101, 5))
+    }
+}
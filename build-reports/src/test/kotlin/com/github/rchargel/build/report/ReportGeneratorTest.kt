@@ -2,10 +2,15 @@ package com.github.rchargel.build.report
 
 import org.custommonkey.xmlunit.XMLAssert
 import org.custommonkey.xmlunit.XMLUnit
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
 import org.junit.Test
 import java.io.StringWriter
+import java.net.URLClassLoader
 import java.nio.charset.StandardCharsets
+import java.nio.file.Files
 import java.time.LocalDate
+import java.util.stream.Collectors
 
 class ReportGeneratorTest {
 
@@ -68,4 +73,89 @@ class ReportGeneratorTest {
         XMLUnit.setIgnoreDiffBetweenTextAndCDATA(true)
         XMLAssert.assertXMLEqual(expected, actual)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun sharesTemplateAcrossContextClassLoaders() {
+        val thread = Thread.currentThread()
+        val original = thread.contextClassLoader
+        fun generatorUnder(loader: ClassLoader) = try {
+            thread.contextClassLoader = loader
+            ReportGenerator()
+        } finally {
+            thread.contextClassLoader = original
+        }
+        URLClassLoader(arrayOf(), original).use { first ->
+            URLClassLoader(arrayOf(), original).use { second ->
+                assertSame(generatorUnder(first).template, generatorUnder(second).template)
+            }
+        }
+    }
+
+    @Test
+    fun canRenderConcurrently() {
+        val reports = (0 until 16).toList().parallelStream().map {
+            val writer = StringWriter()
+            Report.builder("Report")
+                    .publishDate(LocalDate.of(2020, 4, 1))
+                    .appendContent(Text("Lorem ipsum"))
+                    .build()
+                    .writeReportTo(writer)
+            writer.toString()
+        }.collect(Collectors.toSet())
+
+        assertEquals(1, reports.size)
+    }
+
+    @Test
+    fun rendersLazyContentAsItIsWritten() {
+        var resolved = 0
+        fun report(lazy: Boolean) = Report.builder("Report")
+                .publishDate(LocalDate.of(2020, 4, 1))
+                .appendContent(Section.builder("Section")
+                        .appendContent(Table.builder()
+                                .headings(listOf("icon", "message"))
+                                .addRow(mapOf(
+                                        "icon" to if (lazy) LazyContent { resolved++; Image.INFO_ICON } else Image.INFO_ICON,
+                                        "message" to "Message"))
+                                .build())
+                        .build())
+                .appendContent(if (lazy) LazyContent { resolved++; Text("Lorem ipsum") } else Text("Lorem ipsum"))
+                .build()
+
+        val lazyReport = report(true)
+        assertEquals(0, resolved)
+
+        val expected = StringWriter()
+        report(false).writeReportTo(expected)
+        val actual = StringWriter()
+        lazyReport.writeReportTo(actual)
+
+        assertEquals(2, resolved)
+        assertEquals(expected.toString(), actual.toString())
+    }
+
+    @Test
+    fun canWriteImagesToFiles() {
+        val directory = Files.createTempDirectory("report-images").toFile()
+        val writer = StringWriter()
+        Report.builder("Report")
+                .publishDate(LocalDate.of(2020, 4, 1))
+                .imageResolver(ExternalImageResolver(directory, "images"))
+                .appendContent(Table.builder()
+                        .headings(listOf("icon"))
+                        .addRow(mapOf("icon" to Image.INFO_ICON))
+                        .addRow(mapOf("icon" to Image.INFO_ICON))
+                        .addRow(mapOf("icon" to Image.ERROR_ICON))
+                        .build())
+                .build()
+                .writeReportTo(writer)
+
+        val files = directory.listFiles()!!.sortedBy { it.name }
+        assertEquals(2, files.size)
+        assert(files.all { it.name.endsWith(".gif") })
+        assert(files.any { it.readBytes().contentEquals(Image.INFO_ICON.data) })
+        files.forEach { assert(writer.toString().contains("src=\"images/${it.name}\"")) }
+        assert(!writer.toString().contains("data:image/gif"))
+        directory.deleteRecursively()
+    }
+}
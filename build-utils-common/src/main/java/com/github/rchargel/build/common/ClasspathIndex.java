@@ -0,0 +1,246 @@
+package com.github.rchargel.build.common;
+
+import org.reflections.Reflections;
+import org.reflections.ReflectionsException;
+import org.reflections.Store;
+import org.reflections.scanners.MethodAnnotationsScanner;
+import org.reflections.scanners.SubTypesScanner;
+import org.reflections.scanners.TypeAnnotationsScanner;
+import org.reflections.util.ConfigurationBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An incremental index of the annotations found on a classpath. Every jar and class directory is indexed separately,
+ * and keyed by its path, size and last modified time, so only the entries which have changed since the last scan are
+ * rescanned. The index can optionally be persisted to disk, so that it survives between builds.
+ */
+class ClasspathIndex {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger scannedEntries = new AtomicInteger();
+    private final File indexFile;
+    private boolean loaded;
+
+    ClasspathIndex(final File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * @return Returns the total number of classpath entries which have been (re)scanned by this index.
+     */
+    int getScannedEntries() {
+        return scannedEntries.get();
+    }
+
+    /**
+     * Creates a {@link Reflections} instance which answers from the index, rescanning any of the given URLs which are
+     * new or have changed. The index is written back to disk if anything was rescanned.
+     *
+     * @param urls         The classpath entries to include.
+     * @param classLoaders The class loaders used to resolve the indexed types.
+     * @return Returns a reflections instance populated from the index.
+     */
+    synchronized Reflections reflectionsFor(final Collection<URL> urls, final ClassLoader... classLoaders) {
+        load();
+
+        final int previouslyScanned = scannedEntries.get();
+        final List<Entry> classpath = urls.parallelStream()
+                .map(this::findOrScan)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        if (scannedEntries.get() != previouslyScanned)
+            save();
+
+        final Reflections reflections = new Reflections(new ConfigurationBuilder()
+                .addClassLoaders(classLoaders)
+                .setScanners());
+        final Store store = reflections.getStore();
+        classpath.forEach(entry -> entry.index.forEach((index, keys) ->
+                keys.forEach((key, values) -> values.forEach(value -> store.put(index, key, value)))));
+        if (store.keySet().contains(SubTypesScanner.class.getSimpleName()))
+            reflections.expandSuperTypes();
+        return reflections;
+    }
+
+    static Set<Class<?>> getTypesAnnotatedWith(final Reflections reflections, final Class<? extends Annotation> annotation) {
+        return getIfIndexed(() -> reflections.getTypesAnnotatedWith(annotation));
+    }
+
+    static Set<Method> getMethodsAnnotatedWith(final Reflections reflections, final Class<? extends Annotation> annotation) {
+        return getIfIndexed(() -> reflections.getMethodsAnnotatedWith(annotation));
+    }
+
+    // the store does not know about an index which never received a value, which simply means nothing was found
+    private static <T> Set<T> getIfIndexed(final Supplier<Set<T>> query) {
+        try {
+            return query.get();
+        } catch (final ReflectionsException e) {
+            return Collections.emptySet();
+        }
+    }
+
+    private Entry findOrScan(final URL url) {
+        final Fingerprint fingerprint = Fingerprint.of(url);
+        if (fingerprint == null)
+            return null;
+
+        final Entry existing = entries.get(fingerprint.path);
+        if (existing != null && existing.fingerprint.equals(fingerprint))
+            return existing;
+
+        final Entry entry = new Entry(fingerprint, scan(url));
+        scannedEntries.incrementAndGet();
+        entries.put(fingerprint.path, entry);
+        return entry;
+    }
+
+    private static HashMap<String, HashMap<String, HashSet<String>>> scan(final URL url) {
+        final Reflections reflections = new Reflections(new ConfigurationBuilder()
+                .setUrls(url)
+                .setExpandSuperTypes(false)
+                .setScanners(new TypeAnnotationsScanner(), new SubTypesScanner(), new MethodAnnotationsScanner()));
+
+        final Store store = reflections.getStore();
+        final HashMap<String, HashMap<String, HashSet<String>>> index = new HashMap<>();
+        for (final String name : store.keySet()) {
+            final HashMap<String, HashSet<String>> keys = new HashMap<>();
+            store.keys(name).forEach(key -> keys.put(key, new HashSet<>(store.get(name, key))));
+            index.put(name, keys);
+        }
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        if (loaded || indexFile == null || !indexFile.isFile())
+            return;
+        loaded = true;
+
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+            ((Map<String, Entry>) in.readObject()).forEach(entries::putIfAbsent);
+        } catch (final IOException | ClassNotFoundException | ClassCastException e) {
+            // a corrupt or incompatible index is simply rebuilt
+        }
+    }
+
+    private void save() {
+        if (indexFile == null)
+            return;
+
+        try {
+            final File parent = indexFile.getAbsoluteFile().getParentFile();
+            if (!parent.exists() && !parent.mkdirs())
+                return;
+
+            final Path temp = Files.createTempFile(parent.toPath(), indexFile.getName(), ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeObject(new HashMap<>(entries));
+            }
+            Files.move(temp, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException e) {
+            // the index is only a cache, failing to write it only costs a rescan on the next build
+        }
+    }
+
+    private static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Fingerprint fingerprint;
+        private final HashMap<String, HashMap<String, HashSet<String>>> index;
+
+        private Entry(final Fingerprint fingerprint, final HashMap<String, HashMap<String, HashSet<String>>> index) {
+            this.fingerprint = fingerprint;
+            this.index = index;
+        }
+    }
+
+    private static class Fingerprint implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+        private final long size;
+        private final long lastModified;
+
+        private Fingerprint(final String path, final long size, final long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Creates the fingerprint of a classpath entry. Directories are fingerprinted by the total size and the latest
+         * modification time of the files they contain, since a directory's own timestamp does not change when a file
+         * within it is recompiled.
+         *
+         * @param url The classpath entry.
+         * @return Returns the fingerprint, or null if the entry is not a file or directory.
+         */
+        static Fingerprint of(final URL url) {
+            final File file;
+            try {
+                if (!"file".equalsIgnoreCase(url.getProtocol()))
+                    return null;
+                file = new File(url.toURI());
+            } catch (final URISyntaxException | IllegalArgumentException e) {
+                return null;
+            }
+            if (file.isFile())
+                return new Fingerprint(file.getAbsolutePath(), file.length(), file.lastModified());
+            if (!file.isDirectory())
+                return null;
+
+            long size = 0;
+            long lastModified = file.lastModified();
+            try (Stream<Path> files = Files.walk(file.toPath())) {
+                for (final File child : (Iterable<File>) files.map(Path::toFile)::iterator) {
+                    size += child.length();
+                    lastModified = Math.max(lastModified, child.lastModified());
+                }
+            } catch (final IOException | UncheckedIOException e) {
+                return null;
+            }
+            return new Fingerprint(file.getAbsolutePath(), size, lastModified);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Fingerprint that = (Fingerprint) o;
+            return size == that.size && lastModified == that.lastModified && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified);
+        }
+    }
+}
@@ -1,27 +1,32 @@
 package com.github.rchargel.build.common;
 
 import org.reflections.Reflections;
-import org.reflections.scanners.MethodAnnotationsScanner;
-import org.reflections.scanners.TypeAnnotationsScanner;
 import org.reflections.util.ClasspathHelper;
-import org.reflections.util.ConfigurationBuilder;
 
 import java.io.File;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URL;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Optional;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
 
 public class ClasspathUtil {
+    // the index kept in memory only, for scans without an index file (persisted indexes are read from their file for
+    // each scan, and dropped once it's done), and the last scan, which is reused while neither the context class
+    // loader nor the index file changes; all of which are guarded by the class
+    private static final ClasspathIndex memoryIndex = new ClasspathIndex(null);
+    private static WeakReference<ClassLoader> indexedClassLoader = new WeakReference<>(null);
+    private static File reflectionsIndexFile;
+    private static Reflections reflections;
+
     /**
      * Reads a file out of the classpath.
      *
@@ -40,13 +45,25 @@ public class ClasspathUtil {
      * @return Returns a stream of methods.
      */
     public static Stream<Class<?>> findClassesAnnotatedWith(final Class<? extends Annotation> annotation) {
+        return findClassesAnnotatedWith(annotation, null);
+    }
+
+    /**
+     * Finds all of the classes annotated with the given annotation, using the classpath annotation index persisted to
+     * the given file. Only the jars and class directories which have changed since the index was written are rescanned.
+     *
+     * @param annotation The annotation to scan for.
+     * @param indexFile  The index file, or null to keep the index in memory only.
+     * @return Returns a stream of methods.
+     */
+    public static Stream<Class<?>> findClassesAnnotatedWith(final Class<? extends Annotation> annotation, final File indexFile) {
         requireNonNull(annotation);
 
-        return getClassesAnnotatedInPackage(annotation);
+        return getClassesAnnotatedInPackage(annotation, indexFile);
     }
 
-    private static Stream<Class<?>> getClassesAnnotatedInPackage(final Class<? extends Annotation> annotation) {
-        return Optional.ofNullable(LazyReflections.reflections.getTypesAnnotatedWith(annotation)).orElse(new HashSet<>()).stream();
+    private static Stream<Class<?>> getClassesAnnotatedInPackage(final Class<? extends Annotation> annotation, final File indexFile) {
+        return ClasspathIndex.getTypesAnnotatedWith(getReflections(indexFile), annotation).stream();
     }
 
     /**
@@ -57,15 +74,29 @@ public class ClasspathUtil {
      * @return Returns a stream of methods.
      */
     public static <T extends Object> Stream<Class<?>> findClassesContainingAnnotation(final Class<? extends Annotation> annotation) {
+        return findClassesContainingAnnotation(annotation, null);
+    }
+
+    /**
+     * Finds all of the classes which have either been annotated with, or have a method annotated with, the given
+     * annotation, using the classpath annotation index persisted to the given file. Only the jars and class directories
+     * which have changed since the index was written are rescanned.
+     *
+     * @param annotation The annotation to scan for.
+     * @param indexFile  The index file, or null to keep the index in memory only.
+     * @param <T>        Any {@link Object} type.
+     * @return Returns a stream of methods.
+     */
+    public static <T extends Object> Stream<Class<?>> findClassesContainingAnnotation(final Class<? extends Annotation> annotation, final File indexFile) {
         requireNonNull(annotation);
 
-        return Stream.concat(getClassesAnnotatedInPackage(annotation),
-                getMethodsAnnotatedInPackage(annotation)
+        return Stream.concat(getClassesAnnotatedInPackage(annotation, indexFile),
+                getMethodsAnnotatedInPackage(annotation, indexFile)
                         .map(m -> (Class<T>) m.getDeclaringClass()));
     }
 
-    private static Stream<Method> getMethodsAnnotatedInPackage(final Class<? extends Annotation> annotation) {
-        return Optional.ofNullable(LazyReflections.reflections.getMethodsAnnotatedWith(annotation)).orElse(new HashSet<>()).stream();
+    private static Stream<Method> getMethodsAnnotatedInPackage(final Class<? extends Annotation> annotation, final File indexFile) {
+        return ClasspathIndex.getMethodsAnnotatedWith(getReflections(indexFile), annotation).stream();
     }
 
     /**
@@ -76,8 +107,21 @@ public class ClasspathUtil {
      * @return Returns a stream of methods.
      */
     public static <T extends Object> Stream<Class<?>> findClassesWithMethodAnnotation(final Class<? extends Annotation> annotation) {
+        return findClassesWithMethodAnnotation(annotation, null);
+    }
+
+    /**
+     * Finds all of the classes where there is a method with the given annotation, using the classpath annotation index
+     * persisted to the given file.
+     *
+     * @param annotation The annotation to scan for.
+     * @param indexFile  The index file, or null to keep the index in memory only.
+     * @param <T>        Any {@link Object} type.
+     * @return Returns a stream of methods.
+     */
+    public static <T extends Object> Stream<Class<?>> findClassesWithMethodAnnotation(final Class<? extends Annotation> annotation, final File indexFile) {
         requireNonNull(annotation);
-        return getMethodsAnnotatedInPackage(annotation).map(m -> (Class<T>) m.getDeclaringClass());
+        return getMethodsAnnotatedInPackage(annotation, indexFile).map(m -> (Class<T>) m.getDeclaringClass());
     }
 
     /**
@@ -87,9 +131,21 @@ public class ClasspathUtil {
      * @return Returns a stream of methods.
      */
     public static Stream<Method> findMethodsAnnotatedWith(final Class<? extends Annotation> annotation) {
+        return findMethodsAnnotatedWith(annotation, null);
+    }
+
+    /**
+     * Finds all of the methods annotated with the given class, using the classpath annotation index persisted to the
+     * given file.
+     *
+     * @param annotation The annotation to scan for.
+     * @param indexFile  The index file, or null to keep the index in memory only.
+     * @return Returns a stream of methods.
+     */
+    public static Stream<Method> findMethodsAnnotatedWith(final Class<? extends Annotation> annotation, final File indexFile) {
         requireNonNull(annotation);
 
-        return getMethodsAnnotatedInPackage(annotation);
+        return getMethodsAnnotatedInPackage(annotation, indexFile);
     }
 
     /**
@@ -116,18 +172,17 @@ public class ClasspathUtil {
         throw new RuntimeException("Unable to find resource " + resourceName);
     }
 
-    private static class LazyReflections {
-        public static final Reflections reflections;
-
-        static {
-            reflections = new Reflections(new ConfigurationBuilder()
-                    .setUrls(Stream.concat(ClasspathHelper.forClassLoader().stream(),
-                            ClasspathHelper.forClassLoader(ClassLoader.getSystemClassLoader(),
-                                    Thread.currentThread().getContextClassLoader()).stream())
-                            .collect(Collectors.toSet()))
-                    .addClassLoaders(ClassLoader.getSystemClassLoader(), Thread.currentThread().getContextClassLoader())
-                    .addScanners(new TypeAnnotationsScanner(), new MethodAnnotationsScanner()));
+    private static synchronized Reflections getReflections(final File indexFile) {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        if (reflections == null || indexedClassLoader.get() != contextClassLoader || !Objects.equals(indexFile, reflectionsIndexFile)) {
+            final ClasspathIndex index = indexFile == null ? memoryIndex : new ClasspathIndex(indexFile);
+            reflections = index.reflectionsFor(Stream.concat(ClasspathHelper.forClassLoader().stream(),
+                    ClasspathHelper.forClassLoader(ClassLoader.getSystemClassLoader(), contextClassLoader).stream())
+                            .collect(Collectors.toSet()),
+                    ClassLoader.getSystemClassLoader(), contextClassLoader);
+            indexedClassLoader = new WeakReference<>(contextClassLoader);
+            reflectionsIndexFile = indexFile;
         }
-
+        return reflections;
     }
 }
@@ -18,9 +18,14 @@ data class DistributionStatistics(
         val minimum: Double = Double.POSITIVE_INFINITY,
         val maximum: Double = Double.NEGATIVE_INFINITY
 ) : Serializable {
-    private var m2: Double = 0.0
-    private var m3: Double = 0.0
-    private var m4: Double = 0.0
+    // the central moments are not serialized to JSON, so those of a deserialized instance are derived from its
+    // variance, skewness and kurtosis
+    private var m2: Double = Double.NaN
+        get() = if (!field.isNaN()) field else if (count < 2) 0.0 else variance * (count - 1)
+    private var m3: Double = Double.NaN
+        get() = if (!field.isNaN()) field else if (m2 == 0.0) 0.0 else skewness * m2.pow(THREE_OVER_TWO) / sqrt(count.toDouble())
+    private var m4: Double = Double.NaN
+        get() = if (!field.isNaN()) field else if (m2 == 0.0) 0.0 else kurtosis * m2 * m2 / count
 
     @get:JsonIgnore
     val standardDeviation: Double
@@ -29,6 +34,23 @@ data class DistributionStatistics(
     companion object {
         private const val THREE_OVER_TWO: Double = 3.0 / 2.0
 
+        internal fun fromMoments(count: Long, sum: Double, sumOfSquares: Double, m2: Double, m3: Double, m4: Double,
+                                 min: Double, max: Double): DistributionStatistics {
+            if (count == 0L)
+                return DistributionStatistics()
+
+            val mean = sum / count
+            val variance = (count * sumOfSquares - sum * sum) / (count * (count - 1))
+            val skewness = sqrt(count.toDouble()) * m3 / m2.pow(THREE_OVER_TWO)
+            val kurtosis = count * m4 / (m2 * m2)
+
+            val stats = DistributionStatistics(count, sum, sumOfSquares, mean, variance, skewness, kurtosis, min, max)
+            stats.m2 = m2
+            stats.m3 = m3
+            stats.m4 = m4
+            return stats
+        }
+
         @JvmStatic
         fun aggregate(moments: DistributionStatistics, x: Double): DistributionStatistics {
             val count = moments.count + 1
@@ -0,0 +1,114 @@
+package com.github.rchargel.build.common
+
+import java.util.function.DoubleConsumer
+import java.util.stream.DoubleStream
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * A mutable counterpart to [DistributionStatistics], which accumulates the same moments without allocating anything
+ * per sample. Accumulators can be combined, so they can be used to collect parallel streams, and are frozen into an
+ * immutable [DistributionStatistics] once all of the samples have been seen.
+ */
+class DistributionStatisticsAccumulator : DoubleConsumer {
+    private var count: Long = 0
+    private var sum: Double = 0.0
+    private var sumOfSquares: Double = 0.0
+    private var mean: Double = 0.0
+    private var m2: Double = 0.0
+    private var m3: Double = 0.0
+    private var m4: Double = 0.0
+    private var minimum: Double = Double.POSITIVE_INFINITY
+    private var maximum: Double = Double.NEGATIVE_INFINITY
+
+    override fun accept(x: Double) {
+        val previousCount = count
+        count++
+        sum += x
+        sumOfSquares += x * x
+        minimum = min(minimum, x)
+        maximum = max(maximum, x)
+
+        val delta = x - mean
+        val deltaOverCount = delta / count
+        val deltaOverCountSquared = deltaOverCount * deltaOverCount
+        val deltaSquaredOverCountTimesCountMinusOne = delta * deltaOverCount * previousCount
+
+        mean = sum / count
+        m4 = m4 + deltaSquaredOverCountTimesCountMinusOne * deltaOverCountSquared * (count * count - 3 * count + 3) +
+                6 * deltaOverCountSquared * m2 - 4 * deltaOverCount * m3
+        m3 = m3 + deltaSquaredOverCountTimesCountMinusOne * deltaOverCount * (count - 2) - 3 * deltaOverCount * m2
+        m2 = m2 + deltaSquaredOverCountTimesCountMinusOne
+    }
+
+    /**
+     * Accepts a range of samples.
+     *
+     * @param values The array of samples.
+     * @param from   The first index to accept (inclusive).
+     * @param to     The last index to accept (exclusive).
+     * @return Returns this accumulator.
+     */
+    @JvmOverloads
+    fun acceptAll(values: DoubleArray, from: Int = 0, to: Int = values.size) = apply {
+        for (i in from until to)
+            accept(values[i])
+    }
+
+    /**
+     * Combines the samples seen by another accumulator into this one.
+     *
+     * @param other The other accumulator, which is left unchanged.
+     * @return Returns this accumulator.
+     */
+    fun combine(other: DistributionStatisticsAccumulator) = apply {
+        val total = count + other.count
+        if (other.count == 0L)
+            return@apply
+
+        val delta = other.mean - mean
+        val delta2 = delta * delta
+        val delta3 = delta * delta2
+        val delta4 = delta2 * delta2
+
+        val combinedM2 = m2 + other.m2 + delta2 * count * other.count / total
+        val combinedM3 = m3 + other.m3 + delta3 * count * other.count * (count - other.count) / (total * total) +
+                3.0 * delta * (count * other.m2 - other.count * m2) / total
+        val combinedM4 = m4 + other.m4 + delta4 * count * other.count * (count * count - count * other.count + other.count * other.count) /
+                (total * total * total) + (6.0 * delta2 * (count * count * other.m2 + other.count * other.count * m2) /
+                (total * total) + 4.0 * delta * (count * other.m3 - other.count * m3) / total)
+
+        count = total
+        sum += other.sum
+        sumOfSquares += other.sumOfSquares
+        mean = sum / count
+        m2 = combinedM2
+        m3 = combinedM3
+        m4 = combinedM4
+        minimum = min(minimum, other.minimum)
+        maximum = max(maximum, other.maximum)
+    }
+
+    /**
+     * @return Returns an immutable snapshot of the statistics accumulated so far.
+     */
+    fun toStatistics() = DistributionStatistics.fromMoments(count, sum, sumOfSquares, m2, m3, m4, minimum, maximum)
+
+    companion object {
+        /**
+         * Computes the statistics of a stream of samples, which may be parallel.
+         */
+        @JvmStatic
+        fun collect(stream: DoubleStream): DistributionStatistics = stream.collect(
+                ::DistributionStatisticsAccumulator,
+                DistributionStatisticsAccumulator::accept,
+                { a, b -> a.combine(b) }
+        ).toStatistics()
+
+        /**
+         * Computes the statistics of an array of samples in a single pass.
+         */
+        @JvmStatic
+        fun of(values: DoubleArray): DistributionStatistics = DistributionStatisticsAccumulator().acceptAll(values).toStatistics()
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.rchargel.build.common
+
+import com.fasterxml.jackson.annotation.JsonIgnore
+import java.io.Serializable
+import kotlin.math.PI
+import kotlin.math.asin
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * A mergeable quantile sketch (a merging t-digest). Samples are summarized into weighted centroids which are small
+ * near the tails of the distribution and larger near the median, so the sketch stays at a fixed size however many
+ * samples it summarizes, and two sketches can be merged in time proportional to their size.
+ *
+ * The error of an estimated quantile, expressed as a rank (a fraction of the sample count), is bounded by
+ * approximately `π·√(q(1 - q)) / compression`. With the default compression of 200, that is about 0.8% at the median,
+ * 0.15% at p99 and 0.05% at p99.9. Sketches of fewer than `compression / 2` samples hold every sample and are exact,
+ * using the same estimator as JMH's percentiles.
+ */
+data class QuantileSketch(
+        val compression: Double = DEFAULT_COMPRESSION,
+        val means: DoubleArray = DoubleArray(0),
+        val weights: DoubleArray = DoubleArray(0),
+        val minimum: Double = Double.POSITIVE_INFINITY,
+        val maximum: Double = Double.NEGATIVE_INFINITY
+) : Serializable {
+
+    @get:JsonIgnore
+    val count: Long
+        get() = weights.sum().toLong()
+
+    /**
+     * Estimates the value at the given quantile.
+     *
+     * @param quantile The quantile, between 0 and 1.
+     * @return Returns the estimated value, or NaN if the sketch is empty.
+     */
+    fun quantile(quantile: Double): Double {
+        require(quantile in 0.0..1.0) { "Quantile must be between 0 and 1: $quantile" }
+        if (means.isEmpty())
+            return Double.NaN
+
+        val total = weights.sum()
+        val rank = quantile * (total + 1)
+        if (rank <= 1)
+            return minimum
+        if (rank >= total)
+            return maximum
+
+        // the (one based) rank at the center of each centroid
+        var previousCenter = 1.0
+        var previousMean = minimum
+        var cumulative = 0.0
+        for (i in means.indices) {
+            val center = cumulative + (weights[i] + 1) / 2
+            if (rank < center)
+                return interpolate(previousCenter, previousMean, center, means[i], rank)
+            previousCenter = center
+            previousMean = means[i]
+            cumulative += weights[i]
+        }
+        return interpolate(previousCenter, previousMean, total, maximum, rank)
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (javaClass != other?.javaClass) return false
+
+        other as QuantileSketch
+
+        return compression == other.compression &&
+                means.contentEquals(other.means) &&
+                weights.contentEquals(other.weights) &&
+                minimum == other.minimum &&
+                maximum == other.maximum
+    }
+
+    override fun hashCode(): Int {
+        var result = compression.hashCode()
+        result = 31 * result + means.contentHashCode()
+        result = 31 * result + weights.contentHashCode()
+        result = 31 * result + minimum.hashCode()
+        result = 31 * result + maximum.hashCode()
+        return result
+    }
+
+    companion object {
+        const val DEFAULT_COMPRESSION: Double = 200.0
+
+        /**
+         * Creates a sketch summarizing the given samples.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun of(values: DoubleArray, compression: Double = DEFAULT_COMPRESSION): QuantileSketch {
+            if (values.isEmpty())
+                return QuantileSketch(compression)
+
+            val sorted = values.copyOf()
+            sorted.sort()
+            return compress(sorted, DoubleArray(sorted.size) { 1.0 }, compression, sorted.first(), sorted.last())
+        }
+
+        /**
+         * Merges two sketches into one, using the smaller of their compressions.
+         */
+        @JvmStatic
+        fun merge(s1: QuantileSketch, s2: QuantileSketch): QuantileSketch {
+            val compression = min(s1.compression, s2.compression)
+            if (s1.means.isEmpty() && s2.means.isEmpty())
+                return QuantileSketch(compression)
+            if (s2.means.isEmpty())
+                return if (s1.compression == compression) s1 else compress(s1.means, s1.weights, compression, s1.minimum, s1.maximum)
+            if (s1.means.isEmpty())
+                return if (s2.compression == compression) s2 else compress(s2.means, s2.weights, compression, s2.minimum, s2.maximum)
+
+            // both sets of centroids are already sorted, so a single merge pass keeps them in order
+            val size = s1.means.size + s2.means.size
+            val means = DoubleArray(size)
+            val weights = DoubleArray(size)
+            var i = 0
+            var j = 0
+            for (k in 0 until size) {
+                if (j >= s2.means.size || (i < s1.means.size && s1.means[i] <= s2.means[j])) {
+                    means[k] = s1.means[i]
+                    weights[k] = s1.weights[i++]
+                } else {
+                    means[k] = s2.means[j]
+                    weights[k] = s2.weights[j++]
+                }
+            }
+            return compress(means, weights, compression, min(s1.minimum, s2.minimum), max(s1.maximum, s2.maximum))
+        }
+
+        private fun interpolate(x1: Double, y1: Double, x2: Double, y2: Double, x: Double) =
+                if (x2 <= x1) y2 else y1 + (y2 - y1) * (x - x1) / (x2 - x1)
+
+        // the scale function which limits the size of a centroid at a given quantile
+        private fun scale(quantile: Double, compression: Double) = compression / (2 * PI) * asin(2 * min(1.0, quantile) - 1)
+
+        private fun compress(means: DoubleArray, weights: DoubleArray, compression: Double, minimum: Double, maximum: Double): QuantileSketch {
+            val total = weights.sum()
+            val mergedMeans = DoubleArray(means.size)
+            val mergedWeights = DoubleArray(means.size)
+
+            var centroids = 0
+            var weightBefore = 0.0
+            var mean = means[0]
+            var weight = weights[0]
+            for (i in 1 until means.size) {
+                val proposed = weight + weights[i]
+                if (scale((weightBefore + proposed) / total, compression) - scale(weightBefore / total, compression) <= 1) {
+                    mean += (means[i] - mean) * weights[i] / proposed
+                    weight = proposed
+                } else {
+                    mergedMeans[centroids] = mean
+                    mergedWeights[centroids++] = weight
+                    weightBefore += weight
+                    mean = means[i]
+                    weight = weights[i]
+                }
+            }
+            mergedMeans[centroids] = mean
+            mergedWeights[centroids++] = weight
+
+            return QuantileSketch(compression, mergedMeans.copyOf(centroids), mergedWeights.copyOf(centroids), minimum, maximum)
+        }
+    }
+}
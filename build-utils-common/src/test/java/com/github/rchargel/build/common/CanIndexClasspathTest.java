@@ -0,0 +1,74 @@
+package com.github.rchargel.build.common;
+
+import com.fake.classes.classes.FakeAnnotation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reflections.Reflections;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CanIndexClasspathTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<URL> classpath = Collections.singletonList(
+            CanIndexClasspathTest.class.getProtectionDomain().getCodeSource().getLocation());
+
+    @Test
+    public void onlyScansOnceInMemory() {
+        final ClasspathIndex index = new ClasspathIndex(null);
+        index.reflectionsFor(classpath, getClass().getClassLoader());
+        index.reflectionsFor(classpath, getClass().getClassLoader());
+
+        assertEquals(1, index.getScannedEntries());
+    }
+
+    @Test
+    public void canReadPersistedIndex() throws Exception {
+        final File indexFile = new File(folder.getRoot(), "classpath-index.ser");
+
+        final ClasspathIndex first = new ClasspathIndex(indexFile);
+        first.reflectionsFor(classpath, getClass().getClassLoader());
+        assertEquals(1, first.getScannedEntries());
+        assertTrue(indexFile.isFile());
+
+        final ClasspathIndex second = new ClasspathIndex(indexFile);
+        final Reflections reflections = second.reflectionsFor(classpath, getClass().getClassLoader());
+        assertEquals(0, second.getScannedEntries());
+
+        final String[] methods = ClasspathIndex.getMethodsAnnotatedWith(reflections, FakeAnnotation.class).stream()
+                .map(Method::getName)
+                .toArray(String[]::new);
+        assertArrayEquals(new String[]{"add"}, methods);
+        final String[] classes = ClasspathIndex.getTypesAnnotatedWith(reflections, FakeAnnotation.class).stream()
+                .map(Class::getSimpleName)
+                .toArray(String[]::new);
+        assertArrayEquals(new String[]{"ClassWithAnnotation"}, classes);
+    }
+
+    @Test
+    public void rescansChangedEntries() throws Exception {
+        final File classes = folder.newFolder("classes");
+        final File indexFile = new File(folder.getRoot(), "classpath-index.ser");
+        final List<URL> directory = Collections.singletonList(classes.toURI().toURL());
+
+        new ClasspathIndex(indexFile).reflectionsFor(directory, getClass().getClassLoader());
+
+        final File classFile = new File(classes, "Changed.class");
+        assertTrue(classFile.createNewFile());
+        assertTrue(classFile.setLastModified(System.currentTimeMillis() + 10_000));
+
+        final ClasspathIndex index = new ClasspathIndex(indexFile);
+        index.reflectionsFor(directory, getClass().getClassLoader());
+        assertEquals(1, index.getScannedEntries());
+    }
+}
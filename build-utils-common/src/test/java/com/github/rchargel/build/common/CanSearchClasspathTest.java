@@ -2,15 +2,22 @@ package com.github.rchargel.build.common;
 
 import com.fake.classes.classes.FakeAnnotation;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
 
 public class CanSearchClasspathTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @BeforeClass
     public static void setup() {
         final ClassLoader classLoader = URLClassLoader.newInstance(new URL[]{
@@ -52,4 +59,22 @@ public class CanSearchClasspathTest {
                 .toArray(String[]::new);
         assertArrayEquals(new String[]{"ClassWithAnnotation", "ClassWithMethodAnnotation"}, methods);
     }
+
+    @Test
+    public void testAnyAnnotationWithIndexFile() throws Exception {
+        final File indexFile = new File(folder.getRoot(), "classpath-index.ser");
+        final String[] methods = ClasspathUtil.findClassesContainingAnnotation(FakeAnnotation.class, indexFile)
+                .map(Class::getSimpleName)
+                .sorted()
+                .toArray(String[]::new);
+        assertArrayEquals(new String[]{"ClassWithAnnotation", "ClassWithMethodAnnotation"}, methods);
+        assertTrue(indexFile.isFile());
+
+        assertArrayEquals(new String[]{"add"}, ClasspathUtil.findMethodsAnnotatedWith(FakeAnnotation.class, indexFile)
+                .map(Method::getName)
+                .toArray(String[]::new));
+        assertArrayEquals(new String[]{"ClassWithMethodAnnotation"}, ClasspathUtil.findClassesWithMethodAnnotation(FakeAnnotation.class, indexFile)
+                .map(Class::getSimpleName)
+                .toArray(String[]::new));
+    }
 }
@@ -39,6 +39,29 @@ class CanComputeDistributionStatisticsTest(
     @Test
     fun testKurtosisParallel() = assertEquals(expectedKurtosis, toParallelStats().kurtosis, EPSILON)
 
+    @Test
+    fun testMergeRecreated() {
+        // recreating the statistics from their properties, as deserializing them does, loses the central moments
+        val half = values.size / 2
+        val first = values.subList(0, half).fold(DistributionStatistics()) { r, x -> DistributionStatistics.aggregate(r, x) }
+        val second = values.subList(half, values.size).fold(DistributionStatistics()) { r, x -> DistributionStatistics.aggregate(r, x) }
+        val stats = DistributionStatistics.merge(first.copy(), second.copy())
+        assertEquals(expectedVariance, stats.variance, EPSILON)
+        assertEquals(expectedSkewness, stats.skewness, EPSILON)
+        assertEquals(expectedKurtosis, stats.kurtosis, EPSILON)
+    }
+
+    @Test
+    fun testAccumulator() = assertEquals(toStats(), DistributionStatisticsAccumulator.of(values.toDoubleArray()))
+
+    @Test
+    fun testAccumulatorParallel() {
+        val stats = DistributionStatisticsAccumulator.collect(values.stream().mapToDouble { it }.parallel())
+        assertEquals(expectedMean, stats.mean, EPSILON)
+        assertEquals(expectedVariance, stats.variance, EPSILON)
+        assertEquals(expectedSkewness, stats.skewness, EPSILON)
+        assertEquals(expectedKurtosis, stats.kurtosis, EPSILON)
+    }
 
     private fun toStats() = values.stream().reduce(DistributionStatistics(),
             { r, x -> DistributionStatistics.aggregate(r, x) },
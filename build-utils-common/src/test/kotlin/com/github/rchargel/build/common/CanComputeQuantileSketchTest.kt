@@ -0,0 +1,48 @@
+package com.github.rchargel.build.common
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.sqrt
+
+class CanComputeQuantileSketchTest {
+
+    @Test
+    fun smallSketchesAreExact() {
+        val sketch = QuantileSketch.of(doubleArrayOf(3.0, 4.0, 3.0, 4.0, 3.0, 4.0, 3.0, 4.0))
+
+        assertEquals(8, sketch.count)
+        assertEquals(3.0, sketch.quantile(0.25), 0.0)
+        assertEquals(3.5, sketch.quantile(0.5), 0.0)
+        assertEquals(4.0, sketch.quantile(0.75), 0.0)
+        assertEquals(3.0, sketch.quantile(0.0), 0.0)
+        assertEquals(4.0, sketch.quantile(1.0), 0.0)
+    }
+
+    @Test
+    fun emptySketchHasNoQuantiles() {
+        assertTrue(QuantileSketch().quantile(0.5).isNaN())
+        assertEquals(QuantileSketch(), QuantileSketch.merge(QuantileSketch(), QuantileSketch()))
+    }
+
+    @Test
+    fun mergedSketchIsWithinErrorBound() {
+        val random = Random(42)
+        val parts = (0 until 20).map { DoubleArray(10_000) { random.nextGaussian() * 10 + 100 } }
+        val all = parts.reduce { a, b -> a + b }.sortedArray()
+
+        val sketch = parts.map { QuantileSketch.of(it) }.reduce { a, b -> QuantileSketch.merge(a, b) }
+
+        assertEquals(all.size.toLong(), sketch.count)
+        assertTrue(sketch.means.size < 1000)
+        listOf(0.01, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999).forEach { q ->
+            val estimate = sketch.quantile(q)
+            val rank = all.count { it < estimate }.toDouble() / all.size
+            val bound = PI * sqrt(q * (1 - q)) / QuantileSketch.DEFAULT_COMPRESSION
+            assertTrue("rank error at $q was ${abs(rank - q)}", abs(rank - q) <= bound)
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.rchargel.build.benchmark;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The most a benchmark may allocate per operation, as measured by JMH's GC profiler (<code>gc.alloc.rate.norm</code>),
+ * which the executor enables for any benchmark with a budget. Placed on a class, the budget applies to each of its
+ * benchmark methods which doesn't have its own.
+ * <p>
+ * Half a byte per operation is allowed for measurement noise, so a budget of zero fails any benchmark which allocates at
+ * all on its hot path.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface AllocationBudget {
+    /**
+     * @return The maximum number of bytes allocated per operation.
+     */
+    double bytesPerOp() default 0;
+}
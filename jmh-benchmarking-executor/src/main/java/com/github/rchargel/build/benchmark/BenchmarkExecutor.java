@@ -2,6 +2,7 @@ package com.github.rchargel.build.benchmark;
 
 import com.github.rchargel.build.benchmark.results.BenchmarkResults;
 import com.github.rchargel.build.benchmark.results.BenchmarkTestResult;
+import com.github.rchargel.build.benchmark.results.CheckpointJournal;
 
 import org.apache.commons.collections4.MapUtils;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -9,20 +10,55 @@ import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.runner.BenchmarkList;
+import org.openjdk.jmh.runner.BenchmarkListEntry;
 import org.openjdk.jmh.runner.CompilerHints;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.format.OutputFormat;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.openjdk.jmh.util.Utils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -35,11 +71,20 @@ import static net.dempsy.util.Functional.recheck;
 import static net.dempsy.util.Functional.uncheck;
 
 public class BenchmarkExecutor {
+    private static final String JMH_IGNORE_LOCK = "jmh.ignoreLock";
 
     static {
         initCompilerHints();
     }
 
+    private int maxConcurrentRunners = 1;
+    private DiscoveryMode discoveryMode = DiscoveryMode.BENCHMARK_LIST;
+    private File classpathIndexFile;
+    private boolean batchClasses = false;
+    private CheckpointJournal journal;
+    private List<String> profilers = Collections.emptyList();
+    private List<JvmProfile> jvmProfiles = Collections.singletonList(JvmProfile.DEFAULT);
+
     private static void initCompilerHints() {
         wrap(RuntimeException.class, () -> {
             final String compilerHintsFile = getResourceAsFile("/META-INF/CompilerHints");
@@ -49,6 +94,128 @@ public class BenchmarkExecutor {
         });
     }
 
+    /**
+     * JMH guards every {@link Runner} with a file lock, which prevents runners from executing concurrently within a
+     * single JVM. When running concurrently, the executor takes the same lock once for all of its runners instead
+     * (unless the user has asked for it to be ignored), and the runners skip it. Sequential runs leave the lock to JMH.
+     */
+    private static FileChannel acquireJmhLock() throws RunnerException {
+        if (Boolean.getBoolean(JMH_IGNORE_LOCK))
+            return null;
+        try {
+            final FileChannel channel = FileChannel.open(Paths.get(System.getProperty("java.io.tmpdir"), "jmh.lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            final FileLock lock = tryLock(channel);
+            if (lock == null) {
+                channel.close();
+                throw new RunnerException("Unable to acquire the JMH lock: already taken by another JMH instance");
+            }
+            return channel;
+        } catch (final IOException e) {
+            throw new RunnerException("Unable to acquire the JMH lock", e);
+        }
+    }
+
+    private static FileLock tryLock(final FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (final OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private static void releaseJmhLock(final FileChannel channel) {
+        if (channel != null)
+            wrap(RuntimeException.class, channel::close);
+    }
+
+    /**
+     * Sets the maximum number of benchmark runners executed at the same time. When greater than one, each runner is
+     * pinned to its own disjoint set of cores (where the platform supports it).
+     *
+     * @param maxConcurrentRunners The maximum number of concurrent runners, defaults to 1.
+     * @return Returns this executor.
+     */
+    public BenchmarkExecutor maxConcurrentRunners(final int maxConcurrentRunners) {
+        this.maxConcurrentRunners = Math.max(1, maxConcurrentRunners);
+        return this;
+    }
+
+    /**
+     * Sets how the benchmark classes are discovered when they are not given explicitly.
+     *
+     * @param discoveryMode The discovery mode, defaults to {@link DiscoveryMode#BENCHMARK_LIST}.
+     * @return Returns this executor.
+     */
+    public BenchmarkExecutor discoveryMode(final DiscoveryMode discoveryMode) {
+        this.discoveryMode = Optional.ofNullable(discoveryMode).orElse(DiscoveryMode.BENCHMARK_LIST);
+        return this;
+    }
+
+    /**
+     * Sets the file the classpath annotation index is persisted to when scanning the classpath for benchmark classes,
+     * so that only the jars and class directories which have changed since the last scan are rescanned.
+     *
+     * @param classpathIndexFile The index file, defaults to null, which keeps the index in memory only.
+     * @return Returns this executor.
+     */
+    public BenchmarkExecutor classpathIndexFile(final File classpathIndexFile) {
+        this.classpathIndexFile = classpathIndexFile;
+        return this;
+    }
+
+    /**
+     * Sets whether benchmark classes with the same {@link Fork} and {@link Threads} settings are run together, by a
+     * single runner, rather than each by its own. This saves the cost of starting a runner for every class, which
+     * adds up for suites of many small classes; the results are the same either way.
+     *
+     * @param batchClasses Whether to batch classes, defaults to false.
+     * @return Returns this executor.
+     */
+    public BenchmarkExecutor batchClasses(final boolean batchClasses) {
+        this.batchClasses = batchClasses;
+        return this;
+    }
+
+    /**
+     * Sets the journal each result is written to as soon as it completes. A journal opened with
+     * {@link CheckpointJournal#resume(java.io.File)} also supplies the results an earlier, interrupted, attempt at the
+     * same benchmarks completed, which are not run again.
+     *
+     * @param journal The checkpoint journal, or null for none (the default).
+     * @return Returns this executor.
+     */
+    public BenchmarkExecutor checkpointJournal(final CheckpointJournal journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Sets the JMH profilers to run with each benchmark, such as <code>gc</code> for the allocation rate per operation,
+     * or <code>stack</code>, <code>comp</code> and <code>cl</code>. Options can follow the name of a profiler after a
+     * colon, as on the JMH command line (<code>stack:lines=5</code>). The results of the profilers are kept as the
+     * secondary results of each benchmark.
+     *
+     * @param profilers The profilers, defaults to none.
+     * @return Returns this executor.
+     */
+    public BenchmarkExecutor profilers(final Collection<String> profilers) {
+        this.profilers = profilers == null ? Collections.emptyList() : new ArrayList<>(profilers);
+        return this;
+    }
+
+    /**
+     * Sets the JVM profiles to run each benchmark with. Every benchmark is run once for each profile, with the
+     * profile's arguments appended to those of the forked JVMs, and the results are keyed by the name of the profile.
+     *
+     * @param jvmProfiles The profiles, defaults to none (running each benchmark once, without extra arguments).
+     * @return Returns this executor.
+     */
+    public BenchmarkExecutor jvmProfiles(final Collection<JvmProfile> jvmProfiles) {
+        this.jvmProfiles = jvmProfiles == null || jvmProfiles.isEmpty() ? Collections.singletonList(JvmProfile.DEFAULT) : new ArrayList<>(jvmProfiles);
+        return this;
+    }
+
     static Map<String, BenchmarkTestResult> merge(final Map<String, BenchmarkTestResult> mapA, final Map<String, BenchmarkTestResult> mapB) {
         return Stream.of(mapA.entrySet(), mapB.entrySet())
                 .flatMap(Collection::stream)
@@ -68,36 +235,374 @@ public class BenchmarkExecutor {
     }
 
     BenchmarkResults executeBenchmarks(final double maxAbsZScore, final int numberOfTestRepetitions, final Stream<Class<?>> classesToTest) throws RunnerException {
-        final Map<String, BenchmarkTestResult> testResultMap = recheck(() -> classesToTest
-                .map(this::createOptions)
-                .map(this::createRunner)
-                .flatMap(r -> IntStream.range(0, numberOfTestRepetitions).mapToObj(i -> uncheck(() -> executeRunner(r))))
-                .flatMap(r -> r.stream().map(BenchmarkTestResult::fromRunResult))
-                .reduce(null, BenchmarkExecutor::addResultToSet, BenchmarkExecutor::merge), RunnerException.class);
+        return executeBenchmarks(maxAbsZScore, RepetitionPolicy.fixed(numberOfTestRepetitions), classesToTest);
+    }
+
+    BenchmarkResults executeBenchmarks(final double maxAbsZScore, final RepetitionPolicy repetitionPolicy, final Stream<Class<?>> classesToTest) throws RunnerException {
+        final List<List<Class<?>>> batches = batch(classesToTest);
+        final FileChannel lock = maxConcurrentRunners > 1 ? acquireJmhLock() : null;
+        final Map<String, BenchmarkTestResult> testResultMap;
+        try {
+            if (repetitionPolicy.isAdaptive())
+                testResultMap = maxConcurrentRunners > 1
+                        ? executeAdaptivelyConcurrently(repetitionPolicy, batches)
+                        : executeAdaptivelySequentially(repetitionPolicy, batches);
+            else
+                testResultMap = maxConcurrentRunners > 1
+                        ? executeConcurrently(repetitionPolicy.getMaxRepetitions(), batches)
+                        : executeSequentially(repetitionPolicy.getMaxRepetitions(), batches);
+        } finally {
+            releaseJmhLock(lock);
+        }
 
         if (MapUtils.isEmpty(testResultMap))
             throw new RunnerException("No test results were produced");
 
-        return BenchmarkResults.buildFromResults(testResultMap.values(), maxAbsZScore);
+        final List<Class<?>> classes = batches.stream().flatMap(List::stream).collect(Collectors.toList());
+        final Map<String, Double> allocationBudgets = allocationBudgets(classes);
+        final Map<String, PerformanceBudget> performanceBudgets = benchmarkAnnotations(classes, PerformanceBudget.class);
+        final List<String> profileNames = jvmProfiles.stream().map(JvmProfile::getName).collect(Collectors.toList());
+        // the results are kept in the order of their profiles, which the report compares to the first
+        return BenchmarkResults.buildFromResults(testResultMap.values().stream()
+                .sorted(Comparator.comparingInt(r -> profileNames.indexOf(r.getJvmProfile())))
+                .map(r -> r.withAllocationBudget(allocationBudgets.get(r.getBenchmark())))
+                .map(r -> checkPerformanceBudget(r, performanceBudgets.get(r.getBenchmark())))
+                .collect(Collectors.toList()), maxAbsZScore);
+    }
+
+    private static BenchmarkTestResult checkPerformanceBudget(final BenchmarkTestResult result, final PerformanceBudget budget) {
+        return budget == null ? result : result.withPerformanceBudget(budget.maxMean(), budget.maxP99(), budget.minThroughput(), budget.timeUnit());
     }
 
     public BenchmarkResults executeBenchmarks(final double maxAbsZScore, final int numberOfTestRepetitions) throws RunnerException {
-        final Stream<Class<?>> annotatedClasses = findClassesContainingAnnotation(Benchmark.class);
-        return executeBenchmarks(maxAbsZScore, numberOfTestRepetitions, annotatedClasses);
+        return executeBenchmarks(maxAbsZScore, numberOfTestRepetitions, findBenchmarkClasses());
     }
 
+    /**
+     * Executes the benchmarks, repeating each of them as the policy decides.
+     *
+     * @param maxAbsZScore     The maximum absolute z-score of a result compared to its baseline.
+     * @param repetitionPolicy The policy deciding how many times each benchmark is repeated.
+     * @return Returns the merged results of every repetition.
+     * @throws RunnerException Thrown if the benchmarks could not be run.
+     */
+    public BenchmarkResults executeBenchmarks(final double maxAbsZScore, final RepetitionPolicy repetitionPolicy) throws RunnerException {
+        return executeBenchmarks(maxAbsZScore, repetitionPolicy, findBenchmarkClasses());
+    }
+
+    /**
+     * Groups the classes which can share a runner, keeping them in the order they were found. Without batching, each
+     * class is in a group of its own.
+     */
+    List<List<Class<?>>> batch(final Stream<Class<?>> classesToTest) {
+        if (!batchClasses)
+            return classesToTest.map(Collections::<Class<?>>singletonList).collect(Collectors.toList());
+        return new ArrayList<>(classesToTest.collect(Collectors.groupingBy(
+                c -> Arrays.asList(getForks(c), getWarmupForks(c), getThreads(c), getJvmArgsAppend(c)), LinkedHashMap::new, Collectors.toList())).values());
+    }
+
+    /**
+     * Reads the {@link AllocationBudget} of each benchmark method of the classes.
+     *
+     * @return Returns the budgets in bytes per operation, by the full name of the benchmark.
+     */
+    static Map<String, Double> allocationBudgets(final Collection<Class<?>> classes) {
+        return benchmarkAnnotations(classes, AllocationBudget.class).entrySet().stream()
+                .collect(Collectors.toMap(Entry::getKey, e -> e.getValue().bytesPerOp()));
+    }
+
+    /**
+     * Reads an annotation of each benchmark method of the classes, from the method or else its class.
+     *
+     * @return Returns the annotations, by the full name of the benchmark.
+     */
+    static <A extends Annotation> Map<String, A> benchmarkAnnotations(final Collection<Class<?>> classes, final Class<A> annotationType) {
+        final Map<String, A> annotations = new HashMap<>();
+        for (final Class<?> benchmarkClass : classes) {
+            final A classAnnotation = benchmarkClass.getAnnotation(annotationType);
+            for (final Method method : benchmarkClass.getMethods()) {
+                final A annotation = Optional.ofNullable(method.getAnnotation(annotationType)).orElse(classAnnotation);
+                if (annotation != null && method.isAnnotationPresent(Benchmark.class))
+                    annotations.put(benchmarkClass.getCanonicalName() + "." + method.getName(), annotation);
+            }
+        }
+        return annotations;
+    }
+
+    Stream<Class<?>> findBenchmarkClasses() {
+        if (discoveryMode == DiscoveryMode.BENCHMARK_LIST) {
+            final Collection<Class<?>> listedClasses = readBenchmarkListClasses();
+            if (!listedClasses.isEmpty())
+                return listedClasses.stream();
+        }
+        return findClassesContainingAnnotation(Benchmark.class, classpathIndexFile).distinct();
+    }
+
+    /**
+     * Reads the benchmark classes from the benchmark lists found in class directories (see
+     * {@link #readBenchmarkListEntries()}).
+     *
+     * @return Returns the listed benchmark classes, or an empty collection if any of them could not be read.
+     */
+    private static Collection<Class<?>> readBenchmarkListClasses() {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final Set<Class<?>> classes = new LinkedHashSet<>();
+        try {
+            for (final BenchmarkListEntry entry : readBenchmarkListEntries()) {
+                classes.add(loadClass(entry.getUserClassQName(), loader));
+            }
+        } catch (final IOException | ClassNotFoundException e) {
+            return Collections.emptySet();
+        }
+        return classes;
+    }
+
+    /**
+     * Reads the entries of all of the benchmark lists found in class directories, as each output directory (such as
+     * the main and test classes) has a list of its own. Those packaged in jars are ignored, as they belong to third
+     * party dependencies.
+     *
+     * @return Returns the listed benchmarks.
+     */
+    private static Set<BenchmarkListEntry> readBenchmarkListEntries() throws IOException {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final Set<BenchmarkListEntry> entries = new LinkedHashSet<>();
+        final Enumeration<URL> urls = loader.getResources(BenchmarkList.BENCHMARK_LIST.substring(1));
+        while (urls.hasMoreElements()) {
+            final URL url = urls.nextElement();
+            if (url.getProtocol().toLowerCase().startsWith("jar"))
+                continue;
+            try (final InputStream inputStream = url.openStream()) {
+                entries.addAll(BenchmarkList.readBenchmarkList(inputStream));
+            }
+        }
+        return entries;
+    }
+
+    // nested benchmark classes are listed by their canonical name
+    private static Class<?> loadClass(final String className, final ClassLoader loader) throws ClassNotFoundException {
+        try {
+            return Class.forName(className, false, loader);
+        } catch (final ClassNotFoundException e) {
+            final int lastDot = className.lastIndexOf('.');
+            if (lastDot < 0)
+                throw e;
+            return loadClass(className.substring(0, lastDot) + '$' + className.substring(lastDot + 1), loader);
+        }
+    }
+
+    private Map<String, BenchmarkTestResult> executeSequentially(final int numberOfTestRepetitions, final List<List<Class<?>>> batches) throws RunnerException {
+        return recheck(() -> batches.stream()
+                .flatMap(b -> jvmProfiles.stream().flatMap(p -> IntStream.range(0, numberOfTestRepetitions)
+                        .mapToObj(i -> uncheck(() -> executeRepetition(b, p, i, Collections.emptySet(), null)))))
+                .flatMap(Collection::stream)
+                .reduce(null, BenchmarkExecutor::addResultToSet, BenchmarkExecutor::merge), RunnerException.class);
+    }
+
+    private Map<String, BenchmarkTestResult> executeConcurrently(final int numberOfTestRepetitions, final List<List<Class<?>>> batches) throws RunnerException {
+        final List<CpuSet> cpuSets = CpuSet.partitionAllowed(maxConcurrentRunners);
+        final BlockingQueue<CpuSet> availableCpuSets = new LinkedBlockingQueue<>(cpuSets);
+        final ExecutorService executorService = Executors.newFixedThreadPool(cpuSets.size());
+        try {
+            final List<Future<Collection<BenchmarkTestResult>>> futures = batches.stream()
+                    .flatMap(b -> jvmProfiles.stream().flatMap(p -> IntStream.range(0, numberOfTestRepetitions)
+                            .mapToObj(i -> executorService.submit(() -> executeRepetition(b, p, i, Collections.emptySet(), availableCpuSets)))))
+                    .collect(Collectors.toList());
+
+            // reduce in submission order so the merged raw measurements are deterministic
+            Map<String, BenchmarkTestResult> resultMap = null;
+            for (final Future<Collection<BenchmarkTestResult>> future : futures) {
+                for (final BenchmarkTestResult result : getResults(future)) {
+                    resultMap = addResultToSet(resultMap, result);
+                }
+            }
+            return resultMap;
+        } finally {
+            executorService.shutdownNow();
+            cpuSets.forEach(CpuSet::deletePinnedJvms);
+        }
+    }
+
+    private Map<String, BenchmarkTestResult> executeAdaptivelySequentially(final RepetitionPolicy repetitionPolicy, final List<List<Class<?>>> batches) throws RunnerException {
+        return recheck(() -> batches.stream()
+                .flatMap(b -> jvmProfiles.stream().map(p -> uncheck(() -> executeAdaptively(b, p, repetitionPolicy, null))))
+                .reduce(new HashMap<>(), BenchmarkExecutor::merge), RunnerException.class);
+    }
+
+    private Map<String, BenchmarkTestResult> executeAdaptivelyConcurrently(final RepetitionPolicy repetitionPolicy, final List<List<Class<?>>> batches) throws RunnerException {
+        final List<CpuSet> cpuSets = CpuSet.partitionAllowed(maxConcurrentRunners);
+        final BlockingQueue<CpuSet> availableCpuSets = new LinkedBlockingQueue<>(cpuSets);
+        final ExecutorService executorService = Executors.newFixedThreadPool(cpuSets.size());
+        try {
+            // whether a batch needs another repetition depends on the previous one, so only the batches (and profiles) run concurrently
+            final List<Future<Collection<BenchmarkTestResult>>> futures = batches.stream()
+                    .flatMap(b -> jvmProfiles.stream().map(p -> executorService.submit(() -> executeAdaptively(b, p, repetitionPolicy, availableCpuSets).values())))
+                    .collect(Collectors.toList());
+
+            Map<String, BenchmarkTestResult> resultMap = null;
+            for (final Future<Collection<BenchmarkTestResult>> future : futures) {
+                for (final BenchmarkTestResult result : getResults(future)) {
+                    resultMap = addResultToSet(resultMap, result);
+                }
+            }
+            return resultMap;
+        } finally {
+            executorService.shutdownNow();
+            cpuSets.forEach(CpuSet::deletePinnedJvms);
+        }
+    }
+
+    /**
+     * Repeats the benchmarks of a batch of classes until each of them has converged, or the policy's maximum number of
+     * repetitions is reached. After the first repetition, only the benchmarks which have not yet converged are run again.
+     *
+     * @param batch            The classes to run.
+     * @param jvmProfile       The JVM profile to run them with.
+     * @param repetitionPolicy The policy deciding whether a benchmark has converged.
+     * @param availableCpuSets The CPU sets to pin each repetition to, or null to run unpinned.
+     * @return Returns the results merged across the repetitions.
+     */
+    private Map<String, BenchmarkTestResult> executeAdaptively(final List<Class<?>> batch, final JvmProfile jvmProfile, final RepetitionPolicy repetitionPolicy,
+                                                               final BlockingQueue<CpuSet> availableCpuSets) throws RunnerException, InterruptedException {
+        final Map<String, BenchmarkTestResult> resultMap = new HashMap<>();
+        Set<String> benchmarks = Collections.emptySet();
+        for (int repetition = 0; repetition < repetitionPolicy.getMaxRepetitions(); repetition++) {
+            final Set<String> unconverged = new LinkedHashSet<>();
+            for (final BenchmarkTestResult result : executeRepetition(batch, jvmProfile, repetition, benchmarks, availableCpuSets)) {
+                addResultToSet(resultMap, result);
+                if (!repetitionPolicy.isConverged(resultMap.get(result.getKey())))
+                    unconverged.add(result.getBenchmark());
+            }
+            if (unconverged.isEmpty())
+                break;
+            benchmarks = unconverged;
+        }
+        return resultMap;
+    }
+
+    /**
+     * Runs one repetition of a batch of classes. With a checkpoint journal, each result is journaled as it completes,
+     * and whatever an earlier attempt at the same repetition completed is taken from the journal rather than run again.
+     *
+     * @param batch            The classes to run.
+     * @param jvmProfile       The JVM profile to run them with.
+     * @param repetition       The repetition.
+     * @param benchmarks       The full names of the benchmarks of the classes to run, or empty to run all of them.
+     * @param availableCpuSets The CPU sets to pin the runner to, or null to run unpinned.
+     * @return Returns the results of the repetition.
+     */
+    private Collection<BenchmarkTestResult> executeRepetition(final List<Class<?>> batch, final JvmProfile jvmProfile, final int repetition,
+                                                              final Collection<String> benchmarks, final BlockingQueue<CpuSet> availableCpuSets)
+            throws RunnerException, InterruptedException {
+        final String run = jvmProfile.getName() == null ? include(batch) : include(batch) + " [" + jvmProfile.getName() + "]";
+        final CheckpointJournal.Progress progress = journal == null ? new CheckpointJournal.Progress() : journal.progress(run, repetition);
+        final List<BenchmarkTestResult> results = progress.getResults().stream()
+                .filter(r -> benchmarks.isEmpty() || benchmarks.contains(r.getBenchmark()))
+                .collect(Collectors.toCollection(ArrayList::new));
+        final Set<String> remaining = new LinkedHashSet<>(benchmarks);
+        remaining.removeAll(progress.getCompletedBenchmarks());
+        if (progress.getComplete() || (!benchmarks.isEmpty() && remaining.isEmpty()))
+            return results;
+
+        final CpuSet cpuSet = availableCpuSets == null ? null : availableCpuSets.take();
+        try {
+            final String cpuSetName = cpuSet == null ? null : cpuSet.toString();
+            final Options options = createOptions(batch, jvmProfile, remaining, benchmarks.isEmpty() ? progress.getCompletedBenchmarks() : Collections.emptySet(), cpuSet);
+            final OutputFormat outputFormat = OutputFormatFactory.createFormatInstance(System.out, options.verbosity().orElse(VerboseMode.NORMAL));
+            final Runner runner = createRunner(options, journal == null ? outputFormat
+                    : new JournalingOutputFormat(outputFormat, journal, run, repetition, cpuSetName, jvmProfile.getName()));
+            for (final RunResult runResult : executeRunner(runner)) {
+                results.add(BenchmarkTestResult.fromRunResult(runResult, cpuSetName, jvmProfile.getName()));
+            }
+            return results;
+        } finally {
+            if (cpuSet != null)
+                availableCpuSets.put(cpuSet);
+        }
+    }
+
+    private static Collection<BenchmarkTestResult> getResults(final Future<Collection<BenchmarkTestResult>> future) throws RunnerException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RunnerException("Interrupted while waiting for benchmarks", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RunnerException)
+                throw (RunnerException) e.getCause();
+            throw new RunnerException(e.getCause());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     private Collection<RunResult> executeRunner(final Runner runner) throws RunnerException {
-        return runner.run();
+        if (maxConcurrentRunners == 1)
+            return runner.run();
+        // the executor holds JMH's lock on behalf of the concurrent runners, see acquireJmhLock
+        try {
+            final Method internalRun = Runner.class.getDeclaredMethod("internalRun");
+            internalRun.setAccessible(true);
+            return (Collection<RunResult>) internalRun.invoke(runner);
+        } catch (final InvocationTargetException e) {
+            if (e.getCause() instanceof RunnerException)
+                throw (RunnerException) e.getCause();
+            throw new RunnerException(e.getCause());
+        } catch (final ReflectiveOperationException e) {
+            throw new RunnerException("Unable to run benchmarks concurrently", e);
+        }
     }
 
-    private Options createOptions(final Class<?> benchmarkClass) {
-        return new OptionsBuilder()
+    /**
+     * @param batch      The classes to run, which share the same fork and thread settings.
+     * @param jvmProfile The JVM profile whose arguments are appended to those of the forked JVMs (after the batch's own).
+     * @param benchmarks The full names of the benchmarks of the classes to run, or empty to run all of them.
+     * @param excluded   The full names of the benchmarks of the classes not to run.
+     * @param cpuSet     The CPU set to pin the forked JVMs to, or null to run unpinned.
+     */
+    private Options createOptions(final List<Class<?>> batch, final JvmProfile jvmProfile, final Collection<String> benchmarks, final Collection<String> excluded,
+                                  final CpuSet cpuSet) {
+        final Class<?> benchmarkClass = batch.get(0);
+        final ChainedOptionsBuilder builder = new OptionsBuilder()
                 .forks(getForks(benchmarkClass))
                 .warmupForks(getWarmupForks(benchmarkClass))
                 .threads(getThreads(benchmarkClass))
-                .include(benchmarkClass.getCanonicalName())
-                .jvmArgs("-server", "-disablesystemassertions", "-XX:-TieredCompilation")
-                .build();
+                .jvmArgs("-server", "-disablesystemassertions", "-XX:-TieredCompilation");
+        if (!jvmProfile.getJvmArgs().isEmpty())
+            builder.jvmArgsAppend(jvmArgsAppend(benchmarkClass, jvmProfile).toArray(new String[0]));
+        if (benchmarks.isEmpty())
+            builder.include(include(batch));
+        else
+            benchmarks.forEach(benchmark -> builder.include("^" + Pattern.quote(benchmark) + "$"));
+        excluded.forEach(benchmark -> builder.exclude("^" + Pattern.quote(benchmark) + "$"));
+        // allocation budgets are checked against the GC profiler's allocation per operation
+        final boolean needsGcProfiler = !allocationBudgets(batch).isEmpty()
+                && profilers.stream().noneMatch(p -> p.trim().equals("gc") || p.trim().startsWith("gc:"));
+        if (needsGcProfiler)
+            builder.addProfiler("gc");
+        for (final String profiler : profilers) {
+            final int colon = profiler.indexOf(':');
+            if (colon < 0)
+                builder.addProfiler(profiler.trim());
+            else
+                builder.addProfiler(profiler.substring(0, colon).trim(), profiler.substring(colon + 1));
+        }
+        if (jvmProfile.getJvm() != null)
+            builder.jvm(jvmProfile.getJvm());
+        if (cpuSet != null)
+            cpuSet.createPinnedJvm(Optional.ofNullable(jvmProfile.getJvm()).orElseGet(Utils::getCurrentJvm)).ifPresent(builder::jvm);
+        return builder.build();
+    }
+
+    /**
+     * @return Returns the include pattern matching the benchmarks of the classes: the class name itself for a single
+     * class (as JMH matches it anywhere in the benchmark name), or the benchmark methods of each class for a batch.
+     */
+    static String include(final List<Class<?>> batch) {
+        if (batch.size() == 1)
+            return batch.get(0).getCanonicalName();
+        return batch.stream()
+                .map(c -> Pattern.quote(c.getCanonicalName()))
+                .collect(Collectors.joining("|", "^(?:", ")\\.[^.]+$"));
     }
 
     private <T extends Annotation> int getAnnotationValue(final Class<?> benchmarkClass, final Class<T> type, final Function<T, Integer> transform, final int min) {
@@ -118,14 +623,33 @@ public class BenchmarkExecutor {
         return getAnnotationValue(benchmarkClass, Threads.class, Threads::value, 1);
     }
 
-    private Runner createRunner(final Options opts) {
-        final Runner runner = new Runner(opts);
+    private static List<String> getJvmArgsAppend(final Class<?> benchmarkClass) {
+        return Optional.ofNullable(benchmarkClass.getAnnotation(Fork.class))
+                .map(fork -> Stream.of(fork.jvmArgsAppend()).filter(arg -> !Fork.BLANK_ARGS.equals(arg)).collect(Collectors.toList()))
+                .orElse(Collections.emptyList());
+    }
+
+    /**
+     * The arguments set on the options replace those of the {@link Fork} annotation, so the profile's arguments are
+     * appended to the class's own {@link Fork#jvmArgsAppend()} rather than in place of them.
+     *
+     * @return Returns the arguments to append to those of the forked JVMs of the class.
+     */
+    static List<String> jvmArgsAppend(final Class<?> benchmarkClass, final JvmProfile jvmProfile) {
+        final List<String> jvmArgs = new ArrayList<>(getJvmArgsAppend(benchmarkClass));
+        jvmArgs.addAll(jvmProfile.getJvmArgs());
+        return jvmArgs;
+    }
+
+    private Runner createRunner(final Options opts, final OutputFormat outputFormat) {
+        final Runner runner = new Runner(opts, outputFormat);
         wrap(RuntimeException.class, () -> {
-            final String benchmarkListFile = getResourceAsFile("/META-INF/BenchmarkList");
+            final ByteArrayOutputStream benchmarkList = new ByteArrayOutputStream();
+            BenchmarkList.writeBenchmarkList(benchmarkList, readBenchmarkListEntries());
 
             final Field field = Runner.class.getDeclaredField("list");
             field.setAccessible(true);
-            field.set(runner, BenchmarkList.fromFile(benchmarkListFile));
+            field.set(runner, BenchmarkList.fromString(new String(benchmarkList.toByteArray(), StandardCharsets.UTF_8)));
         });
         return runner;
     }
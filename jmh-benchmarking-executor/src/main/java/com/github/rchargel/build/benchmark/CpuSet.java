@@ -0,0 +1,191 @@
+package com.github.rchargel.build.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A disjoint set of logical processors that a forked benchmark JVM is pinned to.
+ */
+public class CpuSet {
+    private static final String TASKSET = "taskset";
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+    private static final String CPUS_ALLOWED_LIST = "Cpus_allowed_list:";
+
+    private final List<Integer> cpus;
+    private final Map<String, File> pinnedJvms = new HashMap<>();
+
+    CpuSet(final List<Integer> cpus) {
+        this.cpus = Collections.unmodifiableList(new ArrayList<>(cpus));
+    }
+
+    /**
+     * Splits the processors this process is allowed to run on (which, in a container or under an affinity mask, may
+     * not start at zero) into (at most) the requested number of disjoint sets.
+     *
+     * @param sets The number of sets requested.
+     * @return Returns the list of CPU sets, never more than the number of allowed processors.
+     */
+    public static List<CpuSet> partitionAllowed(final int sets) {
+        return partition(allowedCpus(), sets);
+    }
+
+    /**
+     * Splits the processors <code>0</code> to <code>processors - 1</code> into (at most) the requested number of
+     * disjoint sets.
+     *
+     * @param processors The number of logical processors available.
+     * @param sets       The number of sets requested.
+     * @return Returns the list of CPU sets, never more than the number of processors.
+     */
+    public static List<CpuSet> partition(final int processors, final int sets) {
+        return partition(IntStream.range(0, Math.max(1, processors)).boxed().collect(Collectors.toList()), sets);
+    }
+
+    /**
+     * Splits the processors into (at most) the requested number of disjoint sets, as equally sized as possible; the
+     * earlier sets take one more processor each when they don't divide evenly.
+     *
+     * @param cpus The ids of the logical processors available.
+     * @param sets The number of sets requested.
+     * @return Returns the list of CPU sets, never more than the number of processors.
+     */
+    static List<CpuSet> partition(final List<Integer> cpus, final int sets) {
+        final int count = Math.max(1, Math.min(cpus.size(), sets));
+        final int coresPerSet = cpus.size() / count;
+        final int remainder = cpus.size() % count;
+        final List<CpuSet> cpuSets = new ArrayList<>(count);
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            final int end = start + coresPerSet + (i < remainder ? 1 : 0);
+            cpuSets.add(new CpuSet(cpus.subList(start, end)));
+            start = end;
+        }
+        return Collections.unmodifiableList(cpuSets);
+    }
+
+    /**
+     * @return Returns the ids of the processors this process may run on, read from <code>/proc/self/status</code>
+     * where it exists (Linux), which reflects both the affinity mask and any cgroup cpuset, or else the processors
+     * <code>0</code> to <code>availableProcessors - 1</code>.
+     */
+    static List<Integer> allowedCpus() {
+        try {
+            if (Files.isReadable(PROC_STATUS)) {
+                final Optional<List<Integer>> allowed = Files.readAllLines(PROC_STATUS, StandardCharsets.UTF_8).stream()
+                        .filter(line -> line.startsWith(CPUS_ALLOWED_LIST))
+                        .map(line -> parseCpuList(line.substring(CPUS_ALLOWED_LIST.length())))
+                        .filter(list -> !list.isEmpty())
+                        .findFirst();
+                if (allowed.isPresent())
+                    return allowed.get();
+            }
+        } catch (final IOException | IllegalArgumentException e) {
+            // fall back to the number of processors
+        }
+        return IntStream.range(0, Runtime.getRuntime().availableProcessors()).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * Parses a list of processor ids in the format used by the kernel and <code>taskset</code>, such as
+     * <code>0-3,8,10-11</code>.
+     */
+    static List<Integer> parseCpuList(final String cpuList) {
+        final List<Integer> cpus = new ArrayList<>();
+        for (final String part : cpuList.trim().split(",")) {
+            if (part.trim().isEmpty())
+                continue;
+            final String[] range = part.trim().split("-");
+            final int first = Integer.parseInt(range[0].trim());
+            final int last = range.length > 1 ? Integer.parseInt(range[1].trim()) : first;
+            IntStream.rangeClosed(first, last).forEach(cpus::add);
+        }
+        return cpus;
+    }
+
+    public int getSize() {
+        return cpus.size();
+    }
+
+    /**
+     * Creates an executable wrapper around the given JVM which pins it (and any process it spawns) to this CPU set.
+     * Pinning relies on <code>taskset</code>, and is therefore only available on Linux. The wrapper for each JVM is
+     * created once, and reused until {@link #deletePinnedJvms()} is called.
+     *
+     * @param javaExecutable The absolute path to the java executable to pin.
+     * @return Returns the path to the wrapper, or empty if the JVM cannot be pinned on this platform.
+     */
+    public synchronized Optional<String> createPinnedJvm(final String javaExecutable) {
+        final File existing = pinnedJvms.get(javaExecutable);
+        if (existing != null && existing.isFile())
+            return Optional.of(existing.getAbsolutePath());
+        return findTaskset().map(taskset -> {
+            try {
+                final Path wrapper = Files.createTempFile("jmh-cpuset-" + this.toString().replace(',', '_') + "-", ".sh");
+                Files.write(wrapper, ("#!/bin/sh\nexec \"" + taskset + "\" -c " + this + " \"" + javaExecutable + "\" \"$@\"\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                final File wrapperFile = wrapper.toFile();
+                wrapperFile.deleteOnExit();
+                if (!wrapperFile.setExecutable(true))
+                    return null;
+                pinnedJvms.put(javaExecutable, wrapperFile);
+                return wrapperFile.getAbsolutePath();
+            } catch (final IOException e) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Deletes the wrappers created by {@link #createPinnedJvm(String)}, once no more JVMs will be forked with them.
+     */
+    public synchronized void deletePinnedJvms() {
+        pinnedJvms.values().forEach(File::delete);
+        pinnedJvms.clear();
+    }
+
+    private static Optional<String> findTaskset() {
+        return Optional.ofNullable(System.getenv("PATH"))
+                .map(path -> path.split(File.pathSeparator))
+                .map(Stream::of)
+                .orElseGet(Stream::empty)
+                .map(dir -> new File(dir, TASKSET))
+                .filter(File::canExecute)
+                .map(File::getAbsolutePath)
+                .findFirst();
+    }
+
+    /**
+     * @return Returns the processors in the format used by <code>taskset</code>, with consecutive ids as ranges, such
+     * as <code>4-7</code> or <code>0-1,4</code>.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        int i = 0;
+        while (i < cpus.size()) {
+            int j = i;
+            while (j + 1 < cpus.size() && cpus.get(j + 1) == cpus.get(j) + 1)
+                j++;
+            if (builder.length() > 0)
+                builder.append(',');
+            builder.append(cpus.get(i));
+            if (j > i)
+                builder.append('-').append(cpus.get(j));
+            i = j + 1;
+        }
+        return builder.toString();
+    }
+}
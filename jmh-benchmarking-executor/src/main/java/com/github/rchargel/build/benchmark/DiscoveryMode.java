@@ -0,0 +1,16 @@
+package com.github.rchargel.build.benchmark;
+
+/**
+ * How the executor finds the benchmark classes to run.
+ */
+public enum DiscoveryMode {
+    /**
+     * Reads the benchmark classes from the <code>META-INF/BenchmarkList</code> files generated by the JMH annotation
+     * processor into the project's own class directories, falling back to a classpath scan if none are found.
+     */
+    BENCHMARK_LIST,
+    /**
+     * Scans the entire classpath for classes containing {@link org.openjdk.jmh.annotations.Benchmark} methods.
+     */
+    CLASSPATH_SCAN
+}
@@ -0,0 +1,140 @@
+package com.github.rchargel.build.benchmark;
+
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult;
+import com.github.rchargel.build.benchmark.results.CheckpointJournal;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.format.OutputFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.github.rchargel.build.common.ExceptionWrapper.wrap;
+
+/**
+ * Passes the runner's progress through to another output format, journaling the result of each benchmark as soon as
+ * it completes, rather than when the whole runner does.
+ */
+class JournalingOutputFormat implements OutputFormat {
+    private final OutputFormat delegate;
+    private final CheckpointJournal journal;
+    private final String run;
+    private final int repetition;
+    private final String cpuSet;
+    private final String jvmProfile;
+    private String currentBenchmark;
+
+    JournalingOutputFormat(final OutputFormat delegate, final CheckpointJournal journal, final String run, final int repetition, final String cpuSet,
+                           final String jvmProfile) {
+        this.delegate = delegate;
+        this.journal = journal;
+        this.run = run;
+        this.repetition = repetition;
+        this.cpuSet = cpuSet;
+        this.jvmProfile = jvmProfile;
+    }
+
+    /**
+     * JMH only reports the result of a benchmark with the iterations of every fork combined, in fork order, so the
+     * forks are split back out to match the results returned by the runner.
+     */
+    static RunResult toRunResult(final BenchmarkResult aggregatedResult) {
+        final BenchmarkParams params = aggregatedResult.getParams();
+        final int iterations = Math.max(1, params.getMeasurement().getCount());
+        final List<BenchmarkResult> forks = new ArrayList<>();
+        List<IterationResult> fork = new ArrayList<>(iterations);
+        for (final IterationResult iterationResult : aggregatedResult.getIterationResults()) {
+            fork.add(iterationResult);
+            if (fork.size() == iterations) {
+                forks.add(new BenchmarkResult(params, fork));
+                fork = new ArrayList<>(iterations);
+            }
+        }
+        if (!fork.isEmpty())
+            forks.add(new BenchmarkResult(params, fork));
+        // results of the benchmark as a whole, rather than of an iteration, such as those of external profilers
+        if (!forks.isEmpty())
+            aggregatedResult.getBenchmarkResults().values().forEach(forks.get(0)::addBenchmarkResult);
+        return new RunResult(params, forks);
+    }
+
+    @Override
+    public void iteration(final BenchmarkParams benchParams, final IterationParams params, final int iteration) {
+        delegate.iteration(benchParams, params, iteration);
+    }
+
+    @Override
+    public void iterationResult(final BenchmarkParams benchParams, final IterationParams params, final int iteration, final IterationResult data) {
+        delegate.iterationResult(benchParams, params, iteration, data);
+    }
+
+    @Override
+    public void startBenchmark(final BenchmarkParams benchParams) {
+        // the parameter combinations of a benchmark method are run one after another
+        if (currentBenchmark != null && !currentBenchmark.equals(benchParams.getBenchmark())) {
+            final String completedBenchmark = currentBenchmark;
+            wrap(RuntimeException.class, () -> journal.completeBenchmark(run, repetition, completedBenchmark));
+        }
+        currentBenchmark = benchParams.getBenchmark();
+        delegate.startBenchmark(benchParams);
+    }
+
+    @Override
+    public void endBenchmark(final BenchmarkResult result) {
+        delegate.endBenchmark(result);
+        if (result != null && !result.getIterationResults().isEmpty())
+            wrap(RuntimeException.class, () -> journal.appendResult(run, repetition, BenchmarkTestResult.fromRunResult(toRunResult(result), cpuSet, jvmProfile)));
+    }
+
+    @Override
+    public void startRun() {
+        delegate.startRun();
+    }
+
+    @Override
+    public void endRun(final Collection<RunResult> result) {
+        wrap(RuntimeException.class, () -> journal.completeRun(run, repetition, currentBenchmark));
+        delegate.endRun(result);
+    }
+
+    @Override
+    public void print(final String s) {
+        delegate.print(s);
+    }
+
+    @Override
+    public void println(final String s) {
+        delegate.println(s);
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public void verbosePrintln(final String s) {
+        delegate.verbosePrintln(s);
+    }
+
+    @Override
+    public void write(final int b) {
+        delegate.write(b);
+    }
+
+    @Override
+    public void write(final byte[] b) throws IOException {
+        delegate.write(b);
+    }
+}
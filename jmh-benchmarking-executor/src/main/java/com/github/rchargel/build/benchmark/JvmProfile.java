@@ -0,0 +1,110 @@
+package com.github.rchargel.build.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * A named set of JVM arguments, such as a garbage collector and heap size, appended to the arguments of the forked
+ * JVMs which run the benchmarks, optionally with the java executable of another JDK to fork. The executor runs every
+ * benchmark once for each of its profiles, and the results of each profile are kept apart.
+ */
+public class JvmProfile {
+    /**
+     * The profile of a run without profiles, which adds no arguments and leaves the results unnamed.
+     */
+    public static final JvmProfile DEFAULT = new JvmProfile(null, Collections.emptyList());
+
+    private final String name;
+    private final List<String> jvmArgs;
+    private final String jvm;
+
+    /**
+     * @param name    The name of the profile, which the results are keyed by.
+     * @param jvmArgs The JVM arguments.
+     */
+    public JvmProfile(final String name, final List<String> jvmArgs) {
+        this(name, jvmArgs, null);
+    }
+
+    /**
+     * @param name    The name of the profile, which the results are keyed by.
+     * @param jvmArgs The JVM arguments.
+     * @param jvm     The absolute path to the java executable to fork, or null for that of the current JVM.
+     */
+    public JvmProfile(final String name, final List<String> jvmArgs, final String jvm) {
+        this.name = name;
+        this.jvmArgs = jvmArgs == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(jvmArgs));
+        this.jvm = jvm;
+    }
+
+    /**
+     * @param name    The name of the profile.
+     * @param jvmArgs The JVM arguments, separated by whitespace, such as <code>-XX:+UseG1GC -Xmx2g</code>.
+     * @return Returns the profile.
+     */
+    public static JvmProfile parse(final String name, final String jvmArgs) {
+        return new JvmProfile(name, jvmArgs == null ? Collections.emptyList() : Arrays.stream(jvmArgs.trim().split("\\s+"))
+                .filter(arg -> !arg.isEmpty())
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Crosses the profiles with several JDKs: each profile is run with the java executable of each JDK, named after
+     * the JDK and then the profile, such as <code>jdk-17 g1</code>, in the order of the JDKs and then the profiles.
+     * Without profiles, there is one (named <code>jdk-17</code>, say) for each JDK.
+     *
+     * @param jvmsByJdkVersion The java executable of each JDK, by its version, in the order to run them.
+     * @param profiles         The profiles to run with each JDK.
+     * @return Returns the profiles for each JDK, or the profiles themselves if there are no JDKs.
+     */
+    public static List<JvmProfile> forEachJdk(final Map<String, String> jvmsByJdkVersion, final List<JvmProfile> profiles) {
+        if (jvmsByJdkVersion.isEmpty())
+            return profiles;
+        final List<JvmProfile> jdkProfiles = new ArrayList<>();
+        jvmsByJdkVersion.forEach((jdkVersion, jvm) -> {
+            for (final JvmProfile profile : profiles.isEmpty() ? Collections.singletonList(DEFAULT) : profiles) {
+                final String name = profile.getName() == null ? "jdk-" + jdkVersion : "jdk-" + jdkVersion + " " + profile.getName();
+                jdkProfiles.add(new JvmProfile(name, profile.getJvmArgs(), jvm));
+            }
+        });
+        return jdkProfiles;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getJvmArgs() {
+        return jvmArgs;
+    }
+
+    public String getJvm() {
+        return jvm;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        final JvmProfile that = (JvmProfile) o;
+        return Objects.equals(name, that.name) && jvmArgs.equals(that.jvmArgs) && Objects.equals(jvm, that.jvm);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, jvmArgs, jvm);
+    }
+
+    @Override
+    public String toString() {
+        final String command = (jvm == null ? "" : jvm + " ") + String.join(" ", jvmArgs);
+        return name == null ? command : name + ": " + command;
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.rchargel.build.benchmark;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Absolute limits on the performance of a benchmark, checked against each result regardless of any baseline. Placed on
+ * a class, the budget applies to each of its benchmark methods which doesn't have its own.
+ * <p>
+ * The limits are given in the {@link #timeUnit()}, and converted to the units JMH reports the score in, so a time
+ * limit can be checked against a throughput benchmark (using the reciprocal of its score) and the other way around.
+ * Limits of zero or less aren't checked.
+ * <p>
+ * The limits are checked against the score of each measurement iteration, which is itself an average over the
+ * operations of the iteration, not against the time of individual operations: even in
+ * {@link org.openjdk.jmh.annotations.Mode#SampleTime} mode, a time per operation is the average of the samples of an
+ * iteration.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface PerformanceBudget {
+    /**
+     * @return The maximum mean time per operation: the mean of the iteration scores of a time per operation benchmark,
+     * or the reciprocal of the mean throughput of a throughput benchmark.
+     */
+    double maxMean() default 0;
+
+    /**
+     * @return The maximum 99th percentile of the iteration scores, as a time per operation: for a throughput benchmark,
+     * the reciprocal of the 1st percentile of its throughput. This is not the 99th percentile of single operations.
+     */
+    double maxP99() default 0;
+
+    /**
+     * @return The minimum number of operations per time unit: the mean throughput of a throughput benchmark, or the
+     * reciprocal of the mean time per operation of a time per operation benchmark.
+     */
+    double minThroughput() default 0;
+
+    /**
+     * @return The time unit of the limits.
+     */
+    TimeUnit timeUnit() default TimeUnit.MILLISECONDS;
+}
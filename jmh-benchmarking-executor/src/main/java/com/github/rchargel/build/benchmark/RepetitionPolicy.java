@@ -0,0 +1,116 @@
+package com.github.rchargel.build.benchmark;
+
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult;
+import com.github.rchargel.build.common.DistributionStatistics;
+
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.distribution.TDistribution;
+
+/**
+ * Decides how many times each benchmark is repeated. A fixed policy always runs the requested number of repetitions;
+ * an adaptive policy stops repeating a benchmark once the confidence interval of its mean (or median), computed from
+ * the statistics merged across the repetitions so far, is narrower than a relative precision.
+ */
+public class RepetitionPolicy {
+    public static final double DEFAULT_CONFIDENCE = 0.99;
+
+    /**
+     * The statistic whose confidence interval must converge.
+     */
+    public enum Statistic {
+        /**
+         * The mean, using Student's t distribution over the merged distribution statistics.
+         */
+        MEAN,
+        /**
+         * The median, using the order statistics bounding it, read from the merged quantile sketch. Less sensitive to
+         * outliers than the mean.
+         */
+        MEDIAN
+    }
+
+    private final int maxRepetitions;
+    private final double relativePrecision;
+    private final Statistic statistic;
+    private final double confidence;
+
+    private RepetitionPolicy(final int maxRepetitions, final double relativePrecision, final Statistic statistic, final double confidence) {
+        if (confidence <= 0 || confidence >= 1)
+            throw new IllegalArgumentException("The confidence must be between 0 and 1: " + confidence);
+        this.maxRepetitions = Math.max(1, maxRepetitions);
+        this.relativePrecision = relativePrecision;
+        this.statistic = statistic == null ? Statistic.MEAN : statistic;
+        this.confidence = confidence;
+    }
+
+    /**
+     * @param repetitions The number of repetitions of each benchmark.
+     * @return Returns a policy which always runs the given number of repetitions.
+     */
+    public static RepetitionPolicy fixed(final int repetitions) {
+        return new RepetitionPolicy(repetitions, 0.0, Statistic.MEAN, DEFAULT_CONFIDENCE);
+    }
+
+    /**
+     * @param maxRepetitions    The maximum number of repetitions of each benchmark.
+     * @param relativePrecision The largest acceptable half width of the confidence interval, relative to the statistic
+     *                          (0.01 is 1%); zero or less always runs the maximum.
+     * @param statistic         The statistic whose confidence interval must converge.
+     * @param confidence        The confidence level of the interval, such as 0.99.
+     * @return Returns a policy which stops repeating a benchmark once its statistic has converged.
+     */
+    public static RepetitionPolicy adaptive(final int maxRepetitions, final double relativePrecision, final Statistic statistic, final double confidence) {
+        return new RepetitionPolicy(maxRepetitions, relativePrecision, statistic, confidence);
+    }
+
+    public int getMaxRepetitions() {
+        return maxRepetitions;
+    }
+
+    public boolean isAdaptive() {
+        return relativePrecision > 0 && maxRepetitions > 1;
+    }
+
+    /**
+     * @param result The result merged from the repetitions so far.
+     * @return Returns whether the result is precise enough to stop repeating its benchmark.
+     */
+    public boolean isConverged(final BenchmarkTestResult result) {
+        return isAdaptive() && relativeError(result) <= relativePrecision;
+    }
+
+    /**
+     * @param result The result merged from the repetitions so far.
+     * @return Returns the half width of the confidence interval of the statistic, relative to the statistic, or
+     * infinity if there are too few measurements to tell.
+     */
+    public double relativeError(final BenchmarkTestResult result) {
+        final DistributionStatistics stats = result.getDistributionStatistics();
+        if (stats.getCount() <= 2)
+            return Double.POSITIVE_INFINITY;
+        final double center;
+        final double halfWidth;
+        if (statistic == Statistic.MEDIAN) {
+            // the ranks of the order statistics bounding the median, from the normal approximation to the binomial
+            final double z = new NormalDistribution().inverseCumulativeProbability(1 - (1 - confidence) / 2);
+            final double offset = Math.min(0.5, z * 0.5 / Math.sqrt(stats.getCount()));
+            center = result.getQuantiles().quantile(0.5);
+            halfWidth = (result.getQuantiles().quantile(0.5 + offset) - result.getQuantiles().quantile(0.5 - offset)) / 2;
+        } else {
+            center = stats.getMean();
+            halfWidth = new TDistribution(stats.getCount() - 1.0).inverseCumulativeProbability(1 - (1 - confidence) / 2) *
+                    stats.getStandardDeviation() / Math.sqrt(stats.getCount());
+        }
+        if (halfWidth == 0)
+            return 0.0;
+        return center == 0 || Double.isNaN(halfWidth) ? Double.POSITIVE_INFINITY : halfWidth / Math.abs(center);
+    }
+
+    @Override
+    public String toString() {
+        return isAdaptive()
+                ? String.format("up to %d repetitions, until the %s is within %.2f%% at %.1f%% confidence",
+                maxRepetitions, statistic.name().toLowerCase(), relativePrecision * 100, confidence * 100)
+                : maxRepetitions == 1 ? "a single repetition" : String.format("%d repetitions", maxRepetitions);
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.rchargel.build.benchmark.history
+
+import kotlin.math.abs
+import kotlin.math.sqrt
+
+/**
+ * Finds the points at which the level of a series shifts, such as the run in which a test became slower.
+ */
+object ChangePoints {
+    /** The default number of standard errors two segments must differ by before a change is reported */
+    const val DEFAULT_THRESHOLD = 4.0
+
+    /** The default minimum number of values on either side of a change */
+    const val DEFAULT_MINIMUM_SEGMENT = 3
+
+    /**
+     * Detects changes in the mean of a series by binary segmentation. The split which best separates the means of the
+     * two sides (measured by Welch's t statistic) is kept if it exceeds the threshold, and each side is then searched
+     * in turn.
+     *
+     * @param values The series, in order
+     * @param threshold The t statistic a split must exceed
+     * @param minimumSegment The minimum number of values on either side of a split
+     * @return Returns the (ascending) indices at which a new level starts.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun detect(values: DoubleArray, threshold: Double = DEFAULT_THRESHOLD, minimumSegment: Int = DEFAULT_MINIMUM_SEGMENT): IntArray {
+        val changes = ArrayList<Int>()
+        val segments = ArrayDeque<IntRange>()
+        segments.add(values.indices)
+        while (segments.isNotEmpty()) {
+            val segment = segments.removeFirst()
+            val split = bestSplit(values, segment, threshold, minimumSegment) ?: continue
+            changes.add(split)
+            segments.add(segment.first until split)
+            segments.add(split..segment.last)
+        }
+        return changes.sorted().toIntArray()
+    }
+
+    /**
+     * @return Returns the mean of each value's segment, as divided by the change points.
+     */
+    @JvmStatic
+    fun segmentMeans(values: DoubleArray, changePoints: IntArray): DoubleArray {
+        val means = DoubleArray(values.size)
+        val bounds = listOf(0) + changePoints.toList() + values.size
+        for (i in 0 until bounds.size - 1) {
+            val from = bounds[i]
+            val to = bounds[i + 1]
+            val mean = (from until to).sumByDouble { values[it] } / (to - from)
+            means.fill(mean, from, to)
+        }
+        return means
+    }
+
+    private fun bestSplit(values: DoubleArray, segment: IntRange, threshold: Double, minimumSegment: Int): Int? {
+        val size = segment.last - segment.first + 1
+        if (size < minimumSegment * 2)
+            return null
+
+        // running sums make each candidate split constant time
+        val sums = DoubleArray(size + 1)
+        val squares = DoubleArray(size + 1)
+        for (i in 0 until size) {
+            val value = values[segment.first + i]
+            sums[i + 1] = sums[i] + value
+            squares[i + 1] = squares[i] + value * value
+        }
+
+        var best: Int? = null
+        var bestStatistic = threshold
+        for (split in minimumSegment..size - minimumSegment) {
+            val left = split.toDouble()
+            val right = (size - split).toDouble()
+            val leftMean = sums[split] / left
+            val rightMean = (sums[size] - sums[split]) / right
+            val leftVariance = variance(squares[split], sums[split], left)
+            val rightVariance = variance(squares[size] - squares[split], sums[size] - sums[split], right)
+            val error = sqrt(leftVariance / left + rightVariance / right)
+            val difference = abs(leftMean - rightMean)
+            val statistic = if (error > 0) difference / error
+            else if (difference > 0) Double.POSITIVE_INFINITY
+            else 0.0
+            if (statistic > bestStatistic) {
+                bestStatistic = statistic
+                best = segment.first + split
+            }
+        }
+        return best
+    }
+
+    private fun variance(sumOfSquares: Double, sum: Double, count: Double) = if (count < 2) 0.0
+    else ((sumOfSquares - sum * sum / count) / (count - 1)).coerceAtLeast(0.0)
+}
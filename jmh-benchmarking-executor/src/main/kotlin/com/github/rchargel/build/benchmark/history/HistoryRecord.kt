@@ -0,0 +1,83 @@
+package com.github.rchargel.build.benchmark.history
+
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult
+import com.github.rchargel.build.common.DistributionStatistics
+import java.nio.ByteBuffer
+
+/**
+ * The summary of a single test from a single run, as kept in a [HistoryStore]. Only the values needed to rebuild the
+ * statistics of the run are stored, never its raw measurements.
+ *
+ * @property timestamp The time of the run, in milliseconds since the epoch
+ */
+data class HistoryRecord(
+        val timestamp: Long = 0,
+        val count: Long = 0,
+        val sum: Double = 0.0,
+        val sumOfSquares: Double = 0.0,
+        val minimum: Double = 0.0,
+        val maximum: Double = 0.0,
+        val firstQuarter: Double = 0.0,
+        val median: Double = 0.0,
+        val thirdQuarter: Double = 0.0
+) {
+    val mean: Double
+        get() = if (count == 0L) Double.NaN else sum / count
+
+    /**
+     * @return Returns the statistics of the run. Only the count, sum, sum of squares, mean, variance and range are
+     * kept, which is enough to merge them with other runs.
+     */
+    fun statistics() = if (count == 0L) DistributionStatistics()
+    else DistributionStatistics(
+            count = count,
+            sum = sum,
+            sumOfSquares = sumOfSquares,
+            mean = mean,
+            variance = if (count < 2) 0.0 else (count * sumOfSquares - sum * sum) / (count * (count - 1)),
+            minimum = minimum,
+            maximum = maximum
+    )
+
+    internal fun writeTo(buffer: ByteBuffer) {
+        buffer.putLong(timestamp)
+        buffer.putLong(count)
+        buffer.putDouble(sum)
+        buffer.putDouble(sumOfSquares)
+        buffer.putDouble(minimum)
+        buffer.putDouble(maximum)
+        buffer.putDouble(firstQuarter)
+        buffer.putDouble(median)
+        buffer.putDouble(thirdQuarter)
+    }
+
+    companion object {
+        /** The number of bytes a record takes in a segment file */
+        internal const val SIZE_BYTES = 9 * 8
+
+        @JvmStatic
+        fun of(result: BenchmarkTestResult, timestamp: Long) = HistoryRecord(
+                timestamp = timestamp,
+                count = result.distributionStatistics.count,
+                sum = result.distributionStatistics.sum,
+                sumOfSquares = result.distributionStatistics.sumOfSquares,
+                minimum = result.min,
+                maximum = result.max,
+                firstQuarter = result.firstQuarter,
+                median = result.median,
+                thirdQuarter = result.thirdQuarter
+        )
+
+        internal fun readFrom(buffer: ByteBuffer) = HistoryRecord(
+                timestamp = buffer.long,
+                count = buffer.long,
+                sum = buffer.double,
+                sumOfSquares = buffer.double,
+                minimum = buffer.double,
+                maximum = buffer.double,
+                firstQuarter = buffer.double,
+                median = buffer.double,
+                thirdQuarter = buffer.double
+        )
+    }
+}
@@ -0,0 +1,413 @@
+package com.github.rchargel.build.benchmark.history
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.rchargel.build.benchmark.results.BaselineStore
+import com.github.rchargel.build.benchmark.results.BenchmarkResults
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult
+import com.github.rchargel.build.benchmark.results.MeasurementStore
+import com.github.rchargel.build.common.DistributionStatistics
+import com.github.rchargel.build.common.QuantileSketch
+import java.io.File
+import java.io.IOException
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+
+/**
+ * A local, append-only store of the summaries of past benchmark runs, used to compare a run against the runs before it
+ * rather than against a single baseline file.
+ *
+ * Each test of each run is stored as a fixed size [HistoryRecord], tagged with the id of its series: the
+ * [BenchmarkResults.hardwareFingerprint] of the machine it ran on together with its [BenchmarkTestResult.key]. Records
+ * are appended to segment files, and a small index file holds the series and the number of committed records in each
+ * segment; anything written after the last committed record (by an interrupted run) is ignored and overwritten.
+ * Segments are memory mapped and scanned from the newest record back, so reading the last few runs of a test never
+ * reads the rest of the history. [compact] removes the oldest runs, rewriting the segments.
+ *
+ * Appends and compactions hold a lock on the store's directory, and start from the latest index, so several processes
+ * can write to the same store. Reads use the index as of when the store was opened or last written by this instance,
+ * and a single instance is not safe for use by several threads at once.
+ *
+ * @constructor Opens the store in the given directory, which is created on the first append
+ */
+class HistoryStore @JvmOverloads constructor(
+        private val directory: File,
+        private val segmentRecords: Int = SEGMENT_RECORDS
+) {
+    private var index = Index()
+    private var seriesIds = emptyMap<SeriesKey, Int>()
+
+    init {
+        load(readIndex())
+    }
+
+    /**
+     * The number of series (tests on a particular machine) in the store.
+     */
+    val seriesCount: Int
+        get() = index.series.size
+
+    /**
+     * The total number of records in the store.
+     */
+    val recordCount: Long
+        get() = index.segments.map { it.records.toLong() }.sum()
+
+    /**
+     * Appends a run to the history.
+     *
+     * @param results The results of the run.
+     * @param timestamp The time of the run.
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun append(results: BenchmarkResults, timestamp: Long = System.currentTimeMillis()) = locked {
+        val fingerprint = results.hardwareFingerprint
+        val series = index.series.toMutableList()
+        // the ids of new series are only published with the index, once their records are written
+        val newIds = HashMap<SeriesKey, Int>()
+        var pending = results.results.orEmpty().map { result ->
+            val key = SeriesKey(fingerprint, result.key)
+            val id = seriesIds[key] ?: newIds.getOrPut(key) {
+                series.add(key)
+                series.size - 1
+            }
+            id to HistoryRecord.of(result, timestamp)
+        }
+
+        val segments = index.segments.toMutableList()
+        var nextSegment = index.nextSegment
+        while (pending.isNotEmpty()) {
+            if (segments.isEmpty() || segments.last().records >= segmentRecords)
+                segments.add(Segment(segmentName(nextSegment++), 0))
+            val segment = segments.last()
+            val count = minOf(segmentRecords - segment.records, pending.size)
+            writeRecords(File(directory, segment.name), segment.records, pending.subList(0, count))
+            segments[segments.size - 1] = segment.copy(records = segment.records + count)
+            pending = pending.drop(count)
+        }
+        writeIndex(Index(series, segments, nextSegment))
+    }
+
+    /**
+     * Reads the most recent runs of a test.
+     *
+     * @param fingerprint The hardware fingerprint of the machine the test ran on.
+     * @param key The key of the test.
+     * @param runs The maximum number of runs to read.
+     * @return Returns the records of the runs, oldest first.
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun lastRuns(fingerprint: String, key: String, runs: Int = Int.MAX_VALUE): List<HistoryRecord> {
+        val id = seriesIds[SeriesKey(fingerprint, key)] ?: return emptyList()
+        val records = ArrayList<HistoryRecord>()
+        for (segment in index.segments.asReversed()) {
+            val buffer = map(segment)
+            for (record in segment.records - 1 downTo 0) {
+                if (records.size >= runs)
+                    return records.asReversed()
+                (buffer as Buffer).position(record * RECORD_SIZE)
+                if (buffer.int == id)
+                    records.add(HistoryRecord.readFrom(buffer))
+            }
+        }
+        return records.asReversed()
+    }
+
+    /**
+     * Reads the most recent runs of each of the tests in the results, on the same hardware, in a single pass over the
+     * history (which stops once every test has enough runs).
+     *
+     * @param results The results whose tests to read.
+     * @param runs The maximum number of runs to read for each test.
+     * @return Returns the records of the runs of each test with any history, oldest first, by key.
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun lastRuns(results: BenchmarkResults, runs: Int = Int.MAX_VALUE): Map<String, List<HistoryRecord>> {
+        val fingerprint = results.hardwareFingerprint
+        val keys = HashMap<Int, String>()
+        results.results.orEmpty().forEach { result -> seriesIds[SeriesKey(fingerprint, result.key)]?.let { keys[it] = result.key } }
+        val records = keys.values.associateWith { ArrayList<HistoryRecord>() }
+        var incomplete = if (runs > 0) records.size else 0
+        scan@ for (segment in index.segments.asReversed()) {
+            val buffer = map(segment)
+            for (record in segment.records - 1 downTo 0) {
+                if (incomplete == 0)
+                    break@scan
+                (buffer as Buffer).position(record * RECORD_SIZE)
+                val seriesRecords = keys[buffer.int]?.let { records[it] } ?: continue
+                if (seriesRecords.size < runs) {
+                    seriesRecords.add(HistoryRecord.readFrom(buffer))
+                    if (seriesRecords.size == runs)
+                        incomplete--
+                }
+            }
+        }
+        return records.filterValues { it.isNotEmpty() }.mapValues { it.value.asReversed() }
+    }
+
+    /**
+     * @return Returns the trend of a test over its most recent runs.
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun trend(fingerprint: String, key: String, runs: Int = Int.MAX_VALUE) = BenchmarkTrend(lastRuns(fingerprint, key, runs))
+
+    /**
+     * @return Returns the trends of each of the tests in the results, on the same hardware, by key.
+     */
+    @Throws(IOException::class)
+    fun trends(results: BenchmarkResults, runs: Int): Map<String, BenchmarkTrend> = trends(results, lastRuns(results, runs))
+
+    /**
+     * Builds a baseline for the results from the most recent runs of each of its tests on the same hardware (see
+     * [rollingBaseline] of the runs read by [lastRuns]).
+     *
+     * @param results The results to build the baseline for.
+     * @param runs The maximum number of runs to use for each test.
+     * @return Returns the baseline.
+     */
+    @Throws(IOException::class)
+    fun rollingBaseline(results: BenchmarkResults, runs: Int): BaselineStore = rollingBaseline(results, lastRuns(results, runs))
+
+    /**
+     * Removes all but the most recent runs of each test, once there are enough to remove to be worth rewriting the
+     * segments. The new segments are written, and then the index, before the old segments are deleted.
+     *
+     * @param retainedRuns The number of runs of each test to keep.
+     * @return Returns whether the store was compacted.
+     */
+    @Throws(IOException::class)
+    fun compact(retainedRuns: Int): Boolean = locked {
+        val counts = IntArray(index.series.size)
+        forEachRecord { id, _ -> counts[id]++ }
+        val removed = counts.map { (it - retainedRuns).coerceAtLeast(0).toLong() }.sum()
+        if (removed == 0L || removed < segmentRecords)
+            return@locked false
+
+        val skipped = IntArray(counts.size) { (counts[it] - retainedRuns).coerceAtLeast(0) }
+        val segments = ArrayList<Segment>()
+        var nextSegment = index.nextSegment
+        val pending = ArrayList<Pair<Int, HistoryRecord>>(segmentRecords)
+        fun flush() {
+            val segment = Segment(segmentName(nextSegment++), pending.size)
+            writeRecords(File(directory, segment.name), 0, pending)
+            segments.add(segment)
+            pending.clear()
+        }
+        forEachRecord { id, buffer ->
+            if (skipped[id] > 0) {
+                skipped[id]--
+            } else {
+                pending.add(id to HistoryRecord.readFrom(buffer))
+                if (pending.size == segmentRecords)
+                    flush()
+            }
+        }
+        if (pending.isNotEmpty())
+            flush()
+
+        val obsolete = index.segments
+        writeIndex(index.copy(segments = segments, nextSegment = nextSegment))
+        obsolete.forEach { Files.deleteIfExists(File(directory, it.name).toPath()) }
+        true
+    }
+
+    /**
+     * Runs a change to the store while holding the lock on its directory, starting from the latest index.
+     */
+    private fun <T> locked(action: () -> T): T {
+        Files.createDirectories(directory.toPath())
+        return FileChannel.open(File(directory, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE).use { channel ->
+            val lock = channel.lock()
+            try {
+                load(readIndex())
+                action()
+            } finally {
+                lock.release()
+            }
+        }
+    }
+
+    private fun forEachRecord(action: (Int, ByteBuffer) -> Unit) {
+        for (segment in index.segments) {
+            val buffer = map(segment)
+            for (record in 0 until segment.records) {
+                (buffer as Buffer).position(record * RECORD_SIZE)
+                action(buffer.int, buffer)
+            }
+        }
+    }
+
+    private fun map(segment: Segment): ByteBuffer =
+            FileChannel.open(File(directory, segment.name).toPath(), StandardOpenOption.READ).use { channel ->
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.records.toLong() * RECORD_SIZE)
+            }
+
+    private fun writeRecords(file: File, position: Int, records: List<Pair<Int, HistoryRecord>>) {
+        val buffer = ByteBuffer.allocate(records.size * RECORD_SIZE)
+        records.forEach { (id, record) ->
+            buffer.putInt(id)
+            record.writeTo(buffer)
+        }
+        (buffer as Buffer).flip()
+        FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE).use { channel ->
+            val offset = position.toLong() * RECORD_SIZE
+            channel.truncate(offset)
+            while (buffer.hasRemaining())
+                channel.write(buffer, offset + buffer.position())
+            channel.force(false)
+        }
+    }
+
+    private fun readIndex(): Index {
+        val file = File(directory, INDEX_FILE_NAME)
+        return if (file.isFile) mapper.readValue(file, Index::class.java) else Index()
+    }
+
+    private fun writeIndex(index: Index) {
+        val file = File(directory, INDEX_FILE_NAME)
+        val temp = File(directory, "$INDEX_FILE_NAME.tmp")
+        mapper.writeValue(temp, index)
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } catch (e: AtomicMoveNotSupportedException) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        }
+        load(index)
+    }
+
+    private fun load(index: Index) {
+        this.index = index
+        this.seriesIds = index.series.withIndex().associate { it.value to it.index }
+    }
+
+    internal data class SeriesKey(val fingerprint: String = "", val key: String = "")
+
+    internal data class Segment(val name: String = "", val records: Int = 0)
+
+    internal data class Index(
+            val series: List<SeriesKey> = emptyList(),
+            val segments: List<Segment> = emptyList(),
+            val nextSegment: Int = 0
+    )
+
+    companion object {
+        /** The default maximum number of records in a segment file */
+        const val SEGMENT_RECORDS = 1 shl 14
+
+        private const val INDEX_FILE_NAME = "index.json"
+        private const val LOCK_FILE_NAME = "index.lock"
+        private const val RECORD_SIZE = Int.SIZE_BYTES + HistoryRecord.SIZE_BYTES
+
+        private val mapper = ObjectMapper()
+
+        private fun segmentName(segment: Int) = "segment-%06d.dat".format(segment)
+
+        /**
+         * @param results The results whose tests to build the trends of.
+         * @param lastRuns The runs of each test, as read by [lastRuns].
+         * @return Returns the trends of each of the tests in the results, by key.
+         */
+        @JvmStatic
+        fun trends(results: BenchmarkResults, lastRuns: Map<String, List<HistoryRecord>>): Map<String, BenchmarkTrend> =
+                results.results.orEmpty().associate { it.key to BenchmarkTrend(lastRuns[it.key].orEmpty()) }
+
+        /**
+         * Builds a baseline for the results from the most recent runs of each of its tests. Only the runs since the
+         * last change in level (if there are enough of them) are used, so a change which has already been accepted
+         * isn't reported again. Tests without any history are left out of the baseline.
+         *
+         * @param results The results to build the baseline for.
+         * @param lastRuns The runs of each test, as read by [lastRuns].
+         * @return Returns the baseline.
+         */
+        @JvmStatic
+        fun rollingBaseline(results: BenchmarkResults, lastRuns: Map<String, List<HistoryRecord>>): BaselineStore {
+            val baselines = results.results.orEmpty().mapNotNull { result ->
+                lastRuns[result.key]?.let { rollingBaseline(result, BenchmarkTrend(it).currentLevel) }
+            }
+            return BaselineStore.of(results.copy(results = baselines))
+        }
+
+        /**
+         * Adds a run to runs read by [lastRuns], as if it had been appended to the history before they were read.
+         *
+         * @param lastRuns The runs of each test.
+         * @param results The results of the run.
+         * @param timestamp The time of the run.
+         * @param runs The maximum number of runs to keep for each test.
+         * @return Returns the runs of each test, including the new run.
+         */
+        @JvmStatic
+        fun withRun(lastRuns: Map<String, List<HistoryRecord>>, results: BenchmarkResults, timestamp: Long, runs: Int): Map<String, List<HistoryRecord>> {
+            val records = LinkedHashMap(lastRuns)
+            results.results.orEmpty().forEach { result ->
+                records[result.key] = (records[result.key].orEmpty() + HistoryRecord.of(result, timestamp)).takeLast(runs)
+            }
+            return records
+        }
+
+        private fun median(values: List<Double>) = values.sorted().let {
+            if (it.size % 2 == 1) it[it.size / 2] else (it[it.size / 2 - 1] + it[it.size / 2]) / 2
+        }
+
+        private fun rollingBaseline(result: BenchmarkTestResult, records: List<HistoryRecord>): BenchmarkTestResult {
+            val statistics = records.map { it.statistics() }.reduce { a, b -> DistributionStatistics.merge(a, b) }
+            return result.copy(
+                    distributionStatistics = statistics,
+                    mean = statistics.mean,
+                    median = median(records.map { it.median }),
+                    firstQuarter = median(records.map { it.firstQuarter }),
+                    thirdQuarter = median(records.map { it.thirdQuarter }),
+                    min = statistics.minimum,
+                    max = statistics.maximum,
+                    rawMeasurements = MeasurementStore.EMPTY,
+                    quantiles = QuantileSketch(),
+                    baselineDistributionStatistics = null,
+                    baselineMedian = null,
+                    baselineMean = null,
+                    baselineMin = null,
+                    baselineMax = null,
+                    baselineFirstQuarter = null,
+                    baselineThirdQuarter = null,
+                    baselineMeasurements = null,
+                    baselineQuantiles = null,
+                    secondaryResults = emptyMap()
+            )
+        }
+    }
+}
+
+/**
+ * The runs of a test, and the changes in its level.
+ *
+ * @property records The runs, oldest first
+ */
+class BenchmarkTrend(val records: List<HistoryRecord>) {
+    /**
+     * The mean of each run.
+     */
+    val means: DoubleArray = records.map { it.mean }.toDoubleArray()
+
+    /**
+     * The indices of the runs at which the mean changed level.
+     */
+    val changePoints: IntArray by lazy { ChangePoints.detect(means) }
+
+    /**
+     * The runs since the last change in level, or all of them if there are too few.
+     */
+    val currentLevel: List<HistoryRecord>
+        get() {
+            val start = changePoints.lastOrNull() ?: 0
+            return if (records.size - start >= ChangePoints.DEFAULT_MINIMUM_SEGMENT) records.subList(start, records.size)
+            else records
+        }
+}
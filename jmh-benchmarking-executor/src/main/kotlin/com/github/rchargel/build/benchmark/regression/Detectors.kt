@@ -0,0 +1,175 @@
+package com.github.rchargel.build.benchmark.regression
+
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult
+import org.apache.commons.math3.stat.inference.MannWhitneyUTest
+import kotlin.math.abs
+import kotlin.math.ceil
+import kotlin.math.floor
+
+/**
+ * The original test: the difference of the means, in baseline standard deviations.
+ */
+class ZScoreDetector(private val maxAbsoluteZScore: Double) : RegressionDetector {
+    override fun evaluate(result: BenchmarkTestResult): RegressionVerdict? {
+        val zScore = result.zScore ?: return null
+        return RegressionVerdict(
+                method = RegressionMethod.Z_SCORE,
+                changed = result.failsZScore(maxAbsoluteZScore),
+                statistic = zScore,
+                medianRatio = result.baselineMedian?.let { result.median / it }
+        )
+    }
+}
+
+/**
+ * A detector which compares the raw measurements of a result to those of its baseline, falling back to another
+ * detector when the baseline has none.
+ */
+abstract class SampleDetector(private val fallback: RegressionDetector) : RegressionDetector {
+    override fun evaluate(result: BenchmarkTestResult): RegressionVerdict? {
+        val baseline = result.baselineMeasurements
+        if (baseline == null || baseline.sampleCount < 2 || result.rawMeasurements.sampleCount < 2)
+            return fallback.evaluate(result)
+        return evaluate(result.rawMeasurements.toDoubleArray(), baseline.toDoubleArray())
+    }
+
+    /**
+     * Compares the measurements.
+     *
+     * @param current The measurements of the result
+     * @param baseline The measurements of the baseline
+     * @return Returns the verdict.
+     */
+    protected abstract fun evaluate(current: DoubleArray, baseline: DoubleArray): RegressionVerdict
+
+    protected companion object {
+        fun medianRatio(current: DoubleArray, baseline: DoubleArray) =
+                Resampling.median(current.copyOf()) / Resampling.median(baseline.copyOf())
+
+        fun exceeds(ratio: Double, minimumEffect: Double) = abs(ratio - 1) >= minimumEffect
+    }
+}
+
+/**
+ * A Mann-Whitney U test: whether a measurement of the result is as likely to be above as below one of the baseline.
+ * Being based on ranks, it isn't thrown by outliers, heavy tails or several modes. A change is reported when the test
+ * is significant and the medians differ by at least the minimum effect.
+ */
+class MannWhitneyDetector(
+        private val significance: Double,
+        private val minimumEffect: Double,
+        fallback: RegressionDetector
+) : SampleDetector(fallback) {
+    override fun evaluate(current: DoubleArray, baseline: DoubleArray): RegressionVerdict {
+        val test = MannWhitneyUTest()
+        val pValue = test.mannWhitneyUTest(current, baseline)
+        val ratio = medianRatio(current, baseline)
+        return RegressionVerdict(
+                method = RegressionMethod.MANN_WHITNEY,
+                changed = pValue < significance && exceeds(ratio, minimumEffect),
+                statistic = test.mannWhitneyU(current, baseline),
+                pValue = pValue,
+                medianRatio = ratio
+        )
+    }
+}
+
+/**
+ * A percentile bootstrap confidence interval of the ratio of the medians: both sets of measurements are resampled (in
+ * parallel) and the ratio of the medians of each resample computed. A change is reported when the interval excludes
+ * one and the ratio differs from one by at least the minimum effect.
+ */
+class BootstrapDetector @JvmOverloads constructor(
+        private val significance: Double,
+        private val minimumEffect: Double,
+        fallback: RegressionDetector,
+        private val resamples: Int = DEFAULT_RESAMPLES,
+        private val seed: Long = DEFAULT_SEED
+) : SampleDetector(fallback) {
+    override fun evaluate(current: DoubleArray, baseline: DoubleArray): RegressionVerdict {
+        val ratios = Resampling.parallelTrials(resamples, seed) { random ->
+            val a = DoubleArray(current.size)
+            val b = DoubleArray(baseline.size)
+            val trial = {
+                for (i in a.indices) a[i] = current[random.nextInt(current.size)]
+                for (i in b.indices) b[i] = baseline[random.nextInt(baseline.size)]
+                Resampling.median(a) / Resampling.median(b)
+            }
+            trial
+        }
+        ratios.sort()
+        val lower = ratios[floor(significance / 2 * (resamples - 1)).toInt()]
+        val upper = ratios[ceil((1 - significance / 2) * (resamples - 1)).toInt()]
+        val ratio = medianRatio(current, baseline)
+        return RegressionVerdict(
+                method = RegressionMethod.BOOTSTRAP,
+                changed = (lower > 1 || upper < 1) && exceeds(ratio, minimumEffect),
+                statistic = ratio,
+                medianRatio = ratio,
+                lowerBound = lower,
+                upperBound = upper
+        )
+    }
+
+    companion object {
+        const val DEFAULT_RESAMPLES = 2000
+        const val DEFAULT_SEED = 0x5DEECE66DL
+    }
+}
+
+/**
+ * E-divisive change point detection (Matteson and James) on the baseline's measurements followed by the result's. The
+ * split of the series which maximizes the energy distance between the two sides is found, and its significance
+ * estimated by permuting the series (in parallel) and searching again. Only splits at or after the start of the result
+ * are searched, as a shift within the baseline is not a change of the result. A change is reported when the split is
+ * significant and the medians on either side of it differ by at least the minimum effect.
+ */
+class EDivisiveDetector @JvmOverloads constructor(
+        private val significance: Double,
+        private val minimumEffect: Double,
+        fallback: RegressionDetector,
+        private val permutations: Int = DEFAULT_PERMUTATIONS,
+        private val seed: Long = BootstrapDetector.DEFAULT_SEED
+) : SampleDetector(fallback) {
+    override fun evaluate(current: DoubleArray, baseline: DoubleArray): RegressionVerdict {
+        val series = baseline + current
+        val minimumSegment = (series.size / 10).coerceIn(2, MAXIMUM_MINIMUM_SEGMENT)
+        val ranks = EnergyStatistics.ranks(series)
+        val firstSplit = baseline.size.coerceIn(minimumSegment, series.size - minimumSegment)
+        val (split, statistic) = EnergyStatistics.bestSplit(series, ranks, minimumSegment, firstSplit)
+
+        val permuted = Resampling.parallelTrials(permutations, seed) { random ->
+            val values = series.copyOf()
+            val valueRanks = ranks.copyOf()
+            val trial = {
+                for (i in values.size - 1 downTo 1) {
+                    val j = random.nextInt(i + 1)
+                    val value = values[i]
+                    values[i] = values[j]
+                    values[j] = value
+                    val rank = valueRanks[i]
+                    valueRanks[i] = valueRanks[j]
+                    valueRanks[j] = rank
+                }
+                EnergyStatistics.bestSplit(values, valueRanks, minimumSegment, firstSplit).second
+            }
+            trial
+        }
+        val pValue = (1 + permuted.count { it >= statistic }) / (1.0 + permutations)
+        val ratio = medianRatio(series.copyOfRange(split, series.size), series.copyOf(split))
+        // with fewer results than the minimum segment, the split can still fall before the start of the result
+        return RegressionVerdict(
+                method = RegressionMethod.E_DIVISIVE,
+                changed = split >= baseline.size && pValue < significance && exceeds(ratio, minimumEffect),
+                statistic = statistic,
+                pValue = pValue,
+                medianRatio = ratio,
+                changePoint = split - baseline.size
+        )
+    }
+
+    companion object {
+        const val DEFAULT_PERMUTATIONS = 199
+        private const val MAXIMUM_MINIMUM_SEGMENT = 30
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.rchargel.build.benchmark.regression
+
+/**
+ * The energy statistic (with an exponent of one) used by E-divisive, for one dimensional series. The distances
+ * between each side of a split and within each side are updated as the split moves along the series, using Fenwick
+ * trees over the ranks of the values, so every split of a series is tried in O(n log n) rather than O(n²).
+ */
+internal object EnergyStatistics {
+
+    /**
+     * @return Returns the rank of each value in the series; equal values are given distinct ranks.
+     */
+    fun ranks(values: DoubleArray): IntArray {
+        val ranks = IntArray(values.size)
+        values.indices.sortedBy { values[it] }.forEachIndexed { rank, i -> ranks[i] = rank }
+        return ranks
+    }
+
+    /**
+     * Finds the split of the series with the largest scaled energy distance between its two sides.
+     *
+     * @param values The series
+     * @param ranks The ranks of the values (see [ranks])
+     * @param minimumSegment The minimum number of values on either side (at least two)
+     * @param firstSplit The earliest split to consider, given as the index of the first value after it
+     * @return Returns the index of the first value after the split, and the statistic of the split.
+     */
+    fun bestSplit(values: DoubleArray, ranks: IntArray, minimumSegment: Int, firstSplit: Int = minimumSegment): Pair<Int, Double> {
+        val size = values.size
+        val left = Fenwick(size)
+        val right = Fenwick(size)
+        val sorted = DoubleArray(size)
+        for (i in values.indices) {
+            right.add(ranks[i], values[i])
+            sorted[ranks[i]] = values[i]
+        }
+
+        var withinLeft = 0.0
+        var withinRight = 0.0
+        for (k in sorted.indices)
+            withinRight += sorted[k] * (2 * k - size + 1)
+        var between = 0.0
+
+        val first = maxOf(minimumSegment, firstSplit)
+        var best = first
+        var bestStatistic = Double.NEGATIVE_INFINITY
+        for (t in 0 until size - minimumSegment) {
+            val value = values[t]
+            val rank = ranks[t]
+            right.add(rank, -value, -1)
+            val toRight = right.distance(rank, value)
+            val toLeft = left.distance(rank, value)
+            withinRight -= toRight
+            withinLeft += toLeft
+            between += toRight - toLeft
+            left.add(rank, value)
+
+            val leftSize = (t + 1).toDouble()
+            val rightSize = (size - t - 1).toDouble()
+            if (leftSize < first)
+                continue
+            val energy = 2 * between / (leftSize * rightSize) -
+                    withinLeft / (leftSize * (leftSize - 1) / 2) -
+                    withinRight / (rightSize * (rightSize - 1) / 2)
+            val statistic = leftSize * rightSize / size * energy
+            if (statistic > bestStatistic) {
+                bestStatistic = statistic
+                best = t + 1
+            }
+        }
+        return best to bestStatistic
+    }
+
+    /**
+     * Counts and sums of the values in a set, by rank.
+     */
+    private class Fenwick(size: Int) {
+        private val counts = IntArray(size + 1)
+        private val sums = DoubleArray(size + 1)
+        private var count = 0
+        private var sum = 0.0
+
+        fun add(rank: Int, value: Double, count: Int = 1) {
+            this.count += count
+            sum += value
+            var i = rank + 1
+            while (i < counts.size) {
+                counts[i] += count
+                sums[i] += value
+                i += i and -i
+            }
+        }
+
+        /**
+         * @return Returns the sum of the distances from the value, of the given rank, to every value in the set.
+         */
+        fun distance(rank: Int, value: Double): Double {
+            var belowCount = 0
+            var belowSum = 0.0
+            var i = rank
+            while (i > 0) {
+                belowCount += counts[i]
+                belowSum += sums[i]
+                i -= i and -i
+            }
+            val aboveCount = count - belowCount
+            val aboveSum = sum - belowSum
+            return value * belowCount - belowSum + aboveSum - value * aboveCount
+        }
+    }
+}
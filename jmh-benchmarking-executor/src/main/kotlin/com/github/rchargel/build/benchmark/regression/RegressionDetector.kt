@@ -0,0 +1,99 @@
+package com.github.rchargel.build.benchmark.regression
+
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult
+
+/**
+ * Decides whether a result has changed from its baseline.
+ */
+interface RegressionDetector {
+    /**
+     * @return Returns the verdict for the result, or null if it has no baseline to compare against.
+     */
+    fun evaluate(result: BenchmarkTestResult): RegressionVerdict?
+}
+
+/**
+ * The ways a result can be compared to its baseline.
+ */
+enum class RegressionMethod {
+    /**
+     * The difference of the means, in baseline standard deviations, must not exceed the maximum absolute z-score.
+     * Only needs the baseline statistics, but assumes both runs are normally distributed.
+     */
+    Z_SCORE,
+
+    /** A Mann-Whitney U test of the raw measurements, which makes no assumption about their distribution */
+    MANN_WHITNEY,
+
+    /** A bootstrap confidence interval of the ratio of the medians */
+    BOOTSTRAP,
+
+    /** An E-divisive (energy statistic) search for a change point in the baseline followed by the results */
+    E_DIVISIVE;
+
+    /**
+     * Creates the detector for this method. The methods which need the raw measurements fall back to the z-score for
+     * results whose baseline has none (such as a rolling baseline built from the history).
+     *
+     * @param maxAbsoluteZScore The maximum absolute z-score of an unchanged result
+     * @param significance The probability of reporting a change when there is none
+     * @param minimumEffect The smallest relative change in the median worth reporting
+     * @return Returns the detector.
+     */
+    @JvmOverloads
+    fun detector(
+            maxAbsoluteZScore: Double,
+            significance: Double = DEFAULT_SIGNIFICANCE,
+            minimumEffect: Double = DEFAULT_MINIMUM_EFFECT
+    ): RegressionDetector {
+        val zScore = ZScoreDetector(maxAbsoluteZScore)
+        return when (this) {
+            Z_SCORE -> zScore
+            MANN_WHITNEY -> MannWhitneyDetector(significance, minimumEffect, zScore)
+            BOOTSTRAP -> BootstrapDetector(significance, minimumEffect, zScore)
+            E_DIVISIVE -> EDivisiveDetector(significance, minimumEffect, zScore)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_SIGNIFICANCE = 0.01
+        const val DEFAULT_MINIMUM_EFFECT = 0.05
+    }
+}
+
+/**
+ * The outcome of comparing a result to its baseline.
+ *
+ * @property method The method used
+ * @property changed Whether the result has changed from its baseline, in either direction
+ * @property statistic The statistic of the method: the z-score, the U statistic, the ratio of the medians or the
+ * energy statistic
+ * @property pValue The probability of a statistic at least as extreme if nothing changed, if the method has one
+ * @property medianRatio The ratio of the result's median to the baseline's
+ * @property lowerBound The lower bound of the confidence interval of the median ratio, if the method has one
+ * @property upperBound The upper bound of the confidence interval of the median ratio, if the method has one
+ * @property changePoint The index of the first measurement after the change point, relative to the first measurement
+ * of the result (so negative if it fell in the baseline), if the method has one
+ */
+data class RegressionVerdict(
+        val method: RegressionMethod = RegressionMethod.Z_SCORE,
+        val changed: Boolean = false,
+        val statistic: Double = Double.NaN,
+        val pValue: Double? = null,
+        val medianRatio: Double? = null,
+        val lowerBound: Double? = null,
+        val upperBound: Double? = null,
+        val changePoint: Int? = null
+) {
+    /**
+     * @return Returns a short description of the verdict.
+     */
+    fun describe() = listOfNotNull(
+            method.name,
+            "%.4f".format(statistic),
+            pValue?.let { "p = %.4f".format(it) },
+            medianRatio?.let { "median × %.3f".format(it) },
+            if (lowerBound != null && upperBound != null) "[%.3f, %.3f]".format(lowerBound, upperBound) else null,
+            changePoint?.let { "at $it" }
+    ).joinToString(", ")
+}
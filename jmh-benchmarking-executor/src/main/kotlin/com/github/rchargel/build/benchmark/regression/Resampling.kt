@@ -0,0 +1,73 @@
+package com.github.rchargel.build.benchmark.regression
+
+import java.util.SplittableRandom
+import java.util.stream.IntStream
+import kotlin.math.min
+
+/**
+ * Helpers shared by the resampling based detectors.
+ */
+internal object Resampling {
+    private val CHUNKS = Runtime.getRuntime().availableProcessors() * 4
+
+    /**
+     * Computes a statistic for each of a number of random trials, in parallel. The trials are split into chunks, each
+     * with its own random number generator seeded from the seed and the chunk, so the results don't depend on the
+     * number of threads or how they are scheduled.
+     *
+     * @param trials The number of trials
+     * @param seed The seed of the random number generators
+     * @param chunk Creates the function which runs a trial, given the generator of its chunk; called once per chunk,
+     * so it can allocate its working space up front
+     * @return Returns the statistic of each trial.
+     */
+    fun parallelTrials(trials: Int, seed: Long, chunk: (SplittableRandom) -> () -> Double): DoubleArray {
+        val results = DoubleArray(trials)
+        val chunks = min(trials, CHUNKS)
+        IntStream.range(0, chunks).parallel().forEach { c ->
+            val trial = chunk(SplittableRandom(seed + c))
+            for (i in (c.toLong() * trials / chunks).toInt() until ((c + 1L) * trials / chunks).toInt())
+                results[i] = trial()
+        }
+        return results
+    }
+
+    /**
+     * @return Returns the median of the first [length] values, reordering them.
+     */
+    fun median(values: DoubleArray, length: Int = values.size): Double {
+        if (length == 0)
+            return Double.NaN
+        val upper = select(values, length, length / 2)
+        return if (length % 2 == 1) upper
+        else (upper + (0 until length / 2).maxOf { values[it] }) / 2
+    }
+
+    /**
+     * Finds the k-th smallest of the first [length] values, leaving the smaller values before it.
+     */
+    private fun select(values: DoubleArray, length: Int, k: Int): Double {
+        var left = 0
+        var right = length - 1
+        while (left < right) {
+            val pivot = values[(left + right) ushr 1]
+            var i = left
+            var j = right
+            while (i <= j) {
+                while (values[i] < pivot) i++
+                while (values[j] > pivot) j--
+                if (i <= j) {
+                    val swap = values[i]
+                    values[i++] = values[j]
+                    values[j--] = swap
+                }
+            }
+            when {
+                k <= j -> right = j
+                k >= i -> left = i
+                else -> return values[k]
+            }
+        }
+        return values[k]
+    }
+}
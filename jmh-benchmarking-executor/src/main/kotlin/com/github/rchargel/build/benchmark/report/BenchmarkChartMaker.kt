@@ -2,8 +2,11 @@ package com.github.rchargel.build.benchmark.report
 
 import com.github.rchargel.build.benchmark.results.BenchmarkTestResult
 import com.github.rchargel.build.common.DistributionStatistics
+import com.github.rchargel.build.common.DistributionStatisticsAccumulator
 import com.github.rchargel.build.report.Image
 import com.github.rchargel.build.report.chart.ChartImageMaker
+import com.github.rchargel.build.report.chart.Downsampling
+import com.github.rchargel.build.report.chart.ImageFormat
 import com.github.rchargel.build.report.chart.XYChartImageMaker
 import org.jfree.chart.JFreeChart
 import org.jfree.chart.axis.CategoryAxis
@@ -30,28 +33,29 @@ class ECDFChartMaker(scoreUnits: String, cumulativeText: String) : XYChartImageM
     override fun addDataset(datasetName: String, color: Color, plotId: Int, xyPlot: XYPlot, data: Any) = when (data) {
         is DoubleArray -> addDataset(datasetName, color, plotId, xyPlot, data)
         is List<*> -> addDataset(datasetName, color, plotId, xyPlot, data.filterIsInstance(Number::class.java).map { it.toDouble() }.toDoubleArray())
-        is BenchmarkTestResult -> addDataset(datasetName, color, plotId, xyPlot, data.stripOutliers.toDoubleArray())
+        is BenchmarkTestResult -> addDataset(datasetName, color, plotId, xyPlot, data.stripOutliers)
         else -> throw IllegalArgumentException("Unable to process data type ${data.javaClass}")
     }
 
     private fun addDataset(datasetName: String, color: Color, plotId: Int, xyPlot: XYPlot, data: DoubleArray) = apply {
-        val series = XYSeries(datasetName)
-        val length = data.size
-        val sortedValues = data.sorted()
-
-        IntRange(0, length - 1).forEach { i ->
-            val expectedCumulativeProbability = (i + 1).toDouble() / length;
-            series.add(sortedValues[i], expectedCumulativeProbability);
-        };
-
-        val dataset = XYSeriesCollection();
-        dataset.addSeries(series);
-        xyPlot.setDataset(plotId, dataset);
-        val renderer = XYLineAndShapeRenderer();
-        renderer.setSeriesPaint(0, color);
-        renderer.setSeriesShapesVisible(0, false);
-        xyPlot.setRenderer(plotId, renderer);
-
+        addDatasetWhenDrawn { pointBudget ->
+            val series = XYSeries(datasetName)
+            val length = data.size
+            val sortedValues = data.copyOf().apply { sort() }
+
+            for (i in Downsampling.quantileGrid(length, pointBudget)) {
+                val expectedCumulativeProbability = (i + 1).toDouble() / length
+                series.add(sortedValues[i], expectedCumulativeProbability, false)
+            }
+
+            val dataset = XYSeriesCollection()
+            dataset.addSeries(series)
+            xyPlot.setDataset(plotId, dataset)
+            val renderer = XYLineAndShapeRenderer()
+            renderer.setSeriesPaint(0, color)
+            renderer.setSeriesShapesVisible(0, false)
+            xyPlot.setRenderer(plotId, renderer)
+        }
     }
 }
 
@@ -70,19 +74,20 @@ class NormalDistributionChartMaker(
     }
 
     private fun addDataset(datasetName: String, color: Color, plotId: Int, xyPlot: XYPlot, data: DoubleArray) =
-            addDataset(datasetName, color, plotId, xyPlot, data.toList().stream().reduce(DistributionStatistics(),
-                    { r, x -> DistributionStatistics.aggregate(r, x) },
-                    { a, b -> DistributionStatistics.merge(a, b) }))
+            addDataset(datasetName, color, plotId, xyPlot, DistributionStatisticsAccumulator.of(data))
 
     private fun addDataset(datasetName: String, color: Color, plotId: Int, xyPlot: XYPlot, data: DistributionStatistics) = apply {
-        val function = NormalDistributionFunction2D(data.mean, data.standardDeviation)
-        val sampleFunction = DatasetUtils.sampleFunction2D(function, min, max, data.count.toInt(), datasetName)
-        xyPlot.setDataset(plotId, sampleFunction)
-
-        val renderer = XYLineAndShapeRenderer()
-        renderer.setSeriesPaint(0, color)
-        renderer.setSeriesShapesVisible(0, false)
-        xyPlot.setRenderer(plotId, renderer)
+        addDatasetWhenDrawn { pointBudget ->
+            val function = NormalDistributionFunction2D(data.mean, data.standardDeviation)
+            val samples = data.count.coerceAtMost(pointBudget.toLong()).coerceAtLeast(2L).toInt()
+            val sampleFunction = DatasetUtils.sampleFunction2D(function, min, max, samples, datasetName)
+            xyPlot.setDataset(plotId, sampleFunction)
+
+            val renderer = XYLineAndShapeRenderer()
+            renderer.setSeriesPaint(0, color)
+            renderer.setSeriesShapesVisible(0, false)
+            xyPlot.setRenderer(plotId, renderer)
+        }
     }
 }
 
@@ -127,7 +132,7 @@ class BoxPlotChartImageMaker(private val name: String, units: String) : ChartIma
         max = max(max, data.maxOutlier.toDouble())
     }
 
-    override fun toImageBuilder(width: Int, height: Int): Image.Builder {
+    override fun toImageBuilder(width: Int, height: Int, format: ImageFormat): Image.Builder {
         plotMap.entries.sortedBy { it.key }.forEachIndexed { i, e ->
             val color = e.value
             renderer.setSeriesPaint(i, color)
@@ -136,7 +141,7 @@ class BoxPlotChartImageMaker(private val name: String, units: String) : ChartIma
         }
         val mult = abs(max - min) * 0.1
         numberAxis.range = Range(min - mult, max + mult)
-        return super.toImageBuilder(width, height)
+        return super.toImageBuilder(width, height, format)
     }
 
     override fun createChart(xAxisName: String, yAxisName: String) = JFreeChart(
@@ -1,5 +1,7 @@
 package com.github.rchargel.build.benchmark.report
 
+import com.github.rchargel.build.benchmark.history.BenchmarkTrend
+import com.github.rchargel.build.benchmark.history.ChangePoints
 import com.github.rchargel.build.benchmark.results.BenchmarkResults
 import com.github.rchargel.build.benchmark.results.BenchmarkTestResult
 import com.github.rchargel.build.common.StringUtils.Companion.normalizeMemoryString
@@ -7,6 +9,7 @@ import com.github.rchargel.build.common.StringUtils.Companion.normalizeMetricStr
 import com.github.rchargel.build.common.firstOr
 import com.github.rchargel.build.common.lastOr
 import com.github.rchargel.build.report.*
+import com.github.rchargel.build.report.chart.ImageFormat
 import com.github.rchargel.build.report.chart.RawDataLineChartImageMaker
 import org.jfree.data.statistics.BoxAndWhiskerItem
 import java.awt.Color
@@ -40,6 +43,22 @@ class BenchmarkReport {
         private const val TEST_TITLE = "test.title"
         private const val ZSCORE_TITLE = "zscore.title"
         private const val MAX_ZSCORE_TITLE = "max.zscore.title"
+        private const val VERDICT_TITLE = "verdict.title"
+        private const val SECONDARY_SECTION_TITLE = "secondary.section.title"
+        private const val SECONDARY_METRIC_TITLE = "secondary.metric.title"
+        private const val SECONDARY_SCORE_TITLE = "secondary.score.title"
+        private const val SECONDARY_BASELINE_TITLE = "secondary.baseline.title"
+        private const val SECONDARY_CHANGE_TITLE = "secondary.change.title"
+        private const val ALLOCATION_SECTION_TITLE = "allocation.section.title"
+        private const val ALLOCATION_ALLOCATED_TITLE = "allocation.allocated.title"
+        private const val ALLOCATION_BUDGET_TITLE = "allocation.budget.title"
+        private const val BUDGET_SECTION_TITLE = "budget.section.title"
+        private const val BUDGET_LIMIT_TITLE = "budget.limit.title"
+        private const val BUDGET_ACTUAL_TITLE = "budget.actual.title"
+        private const val BUDGET_UNAVAILABLE = "budget.unavailable"
+        private const val PROFILE_SECTION_TITLE = "profile.section.title"
+        private const val PROFILE_NAME_TITLE = "profile.name.title"
+        private const val PROFILE_JVM_TITLE = "profile.jvm.title"
         private const val SUMMARY_SECTION_TITLE = "summary.section.title"
         private const val SUMMARY_SECTION_MODE_HEADING = "summary.section.mode.heading"
         private const val SUMMARY_SECTION_CLASS_HEADING = "summary.section.class.heading"
@@ -53,9 +72,19 @@ class BenchmarkReport {
         private const val MESSAGE_CHART_NAME = "message.chart.name"
         private const val MESSAGE_CHART_ECDF_AXIS = "message.chart.ecdf.axis"
         private const val MESSAGE_CHART_RAW_AXIS = "message.chart.raw.axis"
+        private const val MESSAGE_CHART_TREND = "message.chart.trend"
+        private const val MESSAGE_CHART_TREND_AXIS = "message.chart.trend.axis"
+        private const val MESSAGE_CHART_TREND_LEVEL = "message.chart.trend.level"
+        private val PROFILE_COLORS = listOf(Color.blue, Color.red, Color.green.darker(), Color.orange, Color.magenta, Color.cyan.darker())
 
         @JvmStatic
-        fun buildReport(testResults: BenchmarkResults, bundle: Messages) = Report.builder(bundle.text(REPORT_TITLE))
+        @JvmOverloads
+        fun buildReport(
+                testResults: BenchmarkResults,
+                bundle: Messages,
+                chartFormat: ImageFormat = ImageFormat.GIF,
+                trends: Map<String, BenchmarkTrend> = emptyMap()
+        ) = Report.builder(bundle.text(REPORT_TITLE))
                 .includeTOC(true)
                 .tableOfContentsTitle(bundle.text(TABLE_OF_CONTENTS))
                 .appendContent(Text(bundle.text(REPORT_DESCRIPTION)))
@@ -102,7 +131,11 @@ class BenchmarkReport {
                                 })
                                 .build())
                         .build())
-                .appendContent(createEvaluations(testResults, bundle))
+                .apply { createPerformanceBudgets(testResults, bundle)?.let { appendContent(it) } }
+                .apply { createAllocationBudgets(testResults, bundle)?.let { appendContent(it) } }
+                .apply { createSecondaryResults(testResults, bundle)?.let { appendContent(it) } }
+                .apply { createJvmProfiles(testResults, bundle, chartFormat)?.let { appendContent(it) } }
+                .appendContent(createEvaluations(testResults, bundle, chartFormat, trends))
 
         private fun createInfoTable(bundle: Messages, testResults: BenchmarkResults): Table {
             val iconTitle = bundle.text(ICON_TITLE)
@@ -111,38 +144,128 @@ class BenchmarkReport {
             val hasZScore = testResults.hasZScore
             val zScoreTitle = bundle.text(ZSCORE_TITLE)
             val maxZScoreTitle = bundle.text(MAX_ZSCORE_TITLE)
+            val hasVerdict = testResults.hasVerdict
+            val verdictTitle = bundle.text(VERDICT_TITLE)
 
-            val builder = Table.builder().headings(
-                    if (hasZScore) listOf(iconTitle, modeTitle, testTitle, zScoreTitle, maxZScoreTitle)
-                    else listOf(iconTitle, modeTitle, testTitle)
-            )
+            val headings = if (hasZScore) mutableListOf(iconTitle, modeTitle, testTitle, zScoreTitle, maxZScoreTitle)
+            else mutableListOf(iconTitle, modeTitle, testTitle)
+            if (hasVerdict)
+                headings.add(verdictTitle)
+            val builder = Table.builder().headings(headings)
             groupByMode(testResults.results) { mode, results ->
                 groupByClass(results) { className, classResults ->
                     classResults.sortedBy { it.methodName }.forEach {
                         val icon = when {
-                            it.zScore == null -> Image.INFO_ICON
-                            it.failsZScore(testResults.maxAbsoluteZScore) -> Image.ERROR_ICON
+                            it.exceedsAllocationBudget || it.exceedsPerformanceBudget -> Image.ERROR_ICON
+                            it.zScore == null && it.verdict == null -> Image.INFO_ICON
+                            it.regressed(testResults.maxAbsoluteZScore) -> Image.ERROR_ICON
                             else -> Image.SUCCESS_ICON
                         }
                         val test = "${className}.${it.key}"
                         val zScore = "%.4f".format(it.zScore)
-                        builder.addRow(if (hasZScore) mapOf(
+                        val row = if (hasZScore) mutableMapOf<String, Any?>(
                                 iconTitle to icon,
                                 modeTitle to mode,
                                 testTitle to test,
                                 zScoreTitle to zScore,
                                 maxZScoreTitle to "± %.4f".format(testResults.maxAbsoluteZScore)
-                        ) else mapOf(
+                        ) else mutableMapOf<String, Any?>(
                                 iconTitle to icon,
                                 modeTitle to mode,
                                 testTitle to test
-                        ))
+                        )
+                        if (hasVerdict)
+                            row[verdictTitle] = it.verdict?.describe()
+                        builder.addRow(row)
                     }
                 }
             }
             return builder.build()
         }
 
+        private fun createPerformanceBudgets(testResults: BenchmarkResults, bundle: Messages): ReportContent? {
+            if (!testResults.hasPerformanceBudgets)
+                return null
+            val iconTitle = bundle.text(ICON_TITLE)
+            val testTitle = bundle.text(TEST_TITLE)
+            val limitTitle = bundle.text(BUDGET_LIMIT_TITLE)
+            val actualTitle = bundle.text(BUDGET_ACTUAL_TITLE)
+            val unavailable = bundle.text(BUDGET_UNAVAILABLE)
+            val builder = Table.builder().headings(listOf(iconTitle, testTitle, limitTitle, actualTitle))
+            groupByMode(testResults.results) { _, results ->
+                groupByClass(results) { className, classResults ->
+                    classResults.sortedBy { it.methodName }.forEach { result ->
+                        result.budgetChecks.forEach {
+                            builder.addRow(mapOf(
+                                    iconTitle to if (it.passed) Image.SUCCESS_ICON else Image.ERROR_ICON,
+                                    testTitle to "${className}.${result.key}",
+                                    limitTitle to it.describe(),
+                                    actualTitle to if (it.actual.isNaN()) unavailable else "%.4f %s".format(it.actual, it.units)
+                            ))
+                        }
+                    }
+                }
+            }
+            return Section.builder(bundle.text(BUDGET_SECTION_TITLE)).appendContent(builder.build()).build()
+        }
+
+        private fun createAllocationBudgets(testResults: BenchmarkResults, bundle: Messages): ReportContent? {
+            val violations = testResults.allocationBudgetViolations
+            if (violations.isEmpty())
+                return null
+            val testTitle = bundle.text(TEST_TITLE)
+            val allocatedTitle = bundle.text(ALLOCATION_ALLOCATED_TITLE)
+            val budgetTitle = bundle.text(ALLOCATION_BUDGET_TITLE)
+            return Section.builder(bundle.text(ALLOCATION_SECTION_TITLE))
+                    .appendContent(Table.builder()
+                            .headings(listOf(testTitle, allocatedTitle, budgetTitle))
+                            .addRows(violations.map {
+                                mapOf(
+                                        testTitle to "${it.className}.${it.key}",
+                                        allocatedTitle to "%.1f B/op".format(it.allocationPerOperation),
+                                        budgetTitle to "%.1f B/op".format(it.allocationBudget)
+                                )
+                            })
+                            .build())
+                    .build()
+        }
+
+        private fun createSecondaryResults(testResults: BenchmarkResults, bundle: Messages): ReportContent? {
+            if (testResults.results.orEmpty().all { it.secondaryResults.isEmpty() })
+                return null
+            val testTitle = bundle.text(TEST_TITLE)
+            val metricTitle = bundle.text(SECONDARY_METRIC_TITLE)
+            val scoreTitle = bundle.text(SECONDARY_SCORE_TITLE)
+            val baselineTitle = bundle.text(SECONDARY_BASELINE_TITLE)
+            val changeTitle = bundle.text(SECONDARY_CHANGE_TITLE)
+            val zScoreTitle = bundle.text(ZSCORE_TITLE)
+            val hasBaseline = testResults.results.orEmpty().any { result -> result.secondaryResults.values.any { it.baselineScore != null } }
+
+            val builder = Table.builder().headings(if (hasBaseline) listOf(testTitle, metricTitle, scoreTitle, baselineTitle, changeTitle, zScoreTitle)
+            else listOf(testTitle, metricTitle, scoreTitle))
+            groupByMode(testResults.results) { _, results ->
+                groupByClass(results) { className, classResults ->
+                    classResults.sortedBy { it.methodName }.forEach { result ->
+                        result.secondaryResults.entries.sortedBy { it.key }.forEach { (label, secondary) ->
+                            val row = mutableMapOf<String, Any?>(
+                                    testTitle to "${className}.${result.key}",
+                                    metricTitle to label,
+                                    scoreTitle to if (secondary.score.isNaN()) secondary.description
+                                    else "%.4f %s".format(secondary.score, secondary.scoreUnits)
+                            )
+                            if (hasBaseline) {
+                                row[baselineTitle] = secondary.baselineScore?.let { "%.4f %s".format(it, secondary.scoreUnits) }
+                                row[changeTitle] = secondary.ratio?.let { "× %.3f".format(it) }
+                                row[zScoreTitle] = secondary.zScore?.let { "%.4f".format(it) }
+                            }
+                            builder.addRow(row)
+                        }
+                    }
+                }
+            }
+            return Section.builder(bundle.text(SECONDARY_SECTION_TITLE)).appendContent(builder.build()).build()
+        }
+
         private fun groupByMode(results: Collection<BenchmarkTestResult>?, modeConsumer: (mode: String, results: Collection<BenchmarkTestResult>) -> Unit) =
                 results?.groupBy { it.mode }?.entries?.sortedBy { it.key }?.forEach { modeConsumer.invoke(it.key, it.value) }
 
@@ -150,7 +273,8 @@ class BenchmarkReport {
                 results?.groupBy { "${it.packageName}.${it.className}" }?.entries?.sortedBy { it.key }?.forEach { classConsumer.invoke(it.key, it.value) }
 
 
-        private fun createEvaluations(testResults: BenchmarkResults, bundle: Messages): ReportContent {
+        private fun createEvaluations(testResults: BenchmarkResults, bundle: Messages, chartFormat: ImageFormat,
+                                      trends: Map<String, BenchmarkTrend>): ReportContent {
             val builder = Section.builder(bundle.text(SUMMARY_SECTION_TITLE))
 
             val testHeading = bundle.text(MESSAGE_TEST)
@@ -158,21 +282,30 @@ class BenchmarkReport {
             val distHeading = bundle.text(MESSAGE_CHART_DISTRIBUTION)
             val ecdfHeading = bundle.text(MESSAGE_CHART_ECDF)
             val rawHeading = bundle.text(MESSAGE_CHART_RAW)
+            val trendHeading = bundle.text(MESSAGE_CHART_TREND)
+            val headings = if (trends.isEmpty()) listOf(testHeading, perfHeading, distHeading, ecdfHeading, rawHeading)
+            else listOf(testHeading, perfHeading, distHeading, ecdfHeading, rawHeading, trendHeading)
 
+            // the charts are drawn in the background, a little ahead of the report writer, and released once written
+            val charts = ContentPrefetcher()
             groupByMode(testResults.results) { mode, modeValues ->
                 val sectionBuilder = Section.builder(bundle.text(SUMMARY_SECTION_MODE_HEADING, mode))
                 groupByClass(modeValues) { className, classValues ->
                     val tableBuilder = Table.builder()
                             .tableName(bundle.text(SUMMARY_SECTION_CLASS_HEADING, mode, className))
-                            .headings(listOf(testHeading, perfHeading, distHeading, ecdfHeading, rawHeading))
+                            .headings(headings)
                     classValues.sortedBy { it.methodName }.forEach { result ->
-                        tableBuilder.addRow(mapOf(
-                                testHeading to result.methodName,
+                        val row = mutableMapOf<String, Any?>(
+                                testHeading to result.methodName + (result.jvmProfile?.let { " [$it]" } ?: ""),
                                 perfHeading to "%.3f %s ± %.3f".format(result.mean, result.scoreUnits, result.meanErrorAt999),
-                                distHeading to normalDistributionChart(result, bundle),
-                                ecdfHeading to ecdfChart(result, bundle),
-                                rawHeading to rawChart(result, bundle)
-                        ))
+                                distHeading to charts.submit { normalDistributionChart(result, bundle, chartFormat) },
+                                ecdfHeading to charts.submit { ecdfChart(result, bundle, chartFormat) },
+                                rawHeading to charts.submit { rawChart(result, bundle, chartFormat) }
+                        )
+                        val trend = trends[result.key]
+                        if (trend != null && trend.records.size > 1)
+                            row[trendHeading] = charts.submit { trendChart(result, trend, bundle, chartFormat) }
+                        tableBuilder.addRow(row)
                     }
                     sectionBuilder.appendContent(tableBuilder.build())
                 }
@@ -181,36 +314,112 @@ class BenchmarkReport {
             return builder.build()
         }
 
-        private fun ecdfChart(result: BenchmarkTestResult, bundle: Messages): Image {
+        /**
+         * Compares the results of each benchmark across the JVM profiles it was run with, side by side, along with the
+         * ratio of each profile's mean to the first profile's (such as a newer JDK's to the current one's).
+         */
+        private fun createJvmProfiles(testResults: BenchmarkResults, bundle: Messages, chartFormat: ImageFormat): ReportContent? {
+            val profiles = testResults.jvmProfiles
+            if (profiles.size < 2)
+                return null
+            val testHeading = bundle.text(MESSAGE_TEST)
+            val distHeading = bundle.text(MESSAGE_CHART_DISTRIBUTION)
+            val nameTitle = bundle.text(PROFILE_NAME_TITLE)
+            val jvmTitle = bundle.text(PROFILE_JVM_TITLE)
+            val jvms = testResults.results.orEmpty().filter { it.jvm != null }.associate { it.jvmProfile to it.jvm }
+            val builder = Section.builder(bundle.text(PROFILE_SECTION_TITLE))
+                    .appendContent(Table.builder()
+                            .headings(listOf(nameTitle, jvmTitle))
+                            .addRows(profiles.map { mapOf(nameTitle to it, jvmTitle to jvms[it]) })
+                            .build())
+            val charts = ContentPrefetcher()
+            groupByMode(testResults.results) { mode, modeValues ->
+                groupByClass(modeValues) { className, classValues ->
+                    val tableBuilder = Table.builder()
+                            .tableName(bundle.text(SUMMARY_SECTION_CLASS_HEADING, mode, className))
+                            .headings(listOf(testHeading) + profiles + distHeading)
+                    classValues.groupBy { it.methodName }.entries.sortedBy { it.key }.forEach { (methodName, results) ->
+                        val byProfile = results.filter { it.jvmProfile != null }.associateBy { it.jvmProfile!! }
+                        val row = mutableMapOf<String, Any?>(testHeading to methodName)
+                        val reference = byProfile[profiles.first()]?.mean
+                        profiles.forEach { profile ->
+                            row[profile] = byProfile[profile]?.let {
+                                val score = "%.3f %s ± %.3f".format(it.mean, it.scoreUnits, it.meanErrorAt999)
+                                if (profile == profiles.first() || reference == null || reference == 0.0) score
+                                else "$score (× %.3f)".format(it.mean / reference)
+                            }
+                        }
+                        row[distHeading] = charts.submit { profileChart(profiles, byProfile, bundle, chartFormat) }
+                        tableBuilder.addRow(row)
+                    }
+                    builder.appendContent(tableBuilder.build())
+                }
+            }
+            return builder.build()
+        }
+
+        private fun profileChart(profiles: List<String>, results: Map<String, BenchmarkTestResult>, bundle: Messages,
+                                 format: ImageFormat): Image {
+            // the boxes follow the order of the table's columns, and each profile keeps its colour across charts
+            val chart = BoxPlotChartImageMaker(bundle.text(MESSAGE_CHART_EXECUTION),
+                    profiles.mapNotNull { results[it] }.first().scoreUnits)
+            profiles.forEachIndexed { i, profile ->
+                val result = results[profile] ?: return@forEachIndexed
+                chart.addDataset(profile, PROFILE_COLORS[i % PROFILE_COLORS.size], i + 1, toBoxAndWhiskerItem(
+                        result.mean,
+                        result.median,
+                        result.firstQuarter,
+                        result.thirdQuarter,
+                        result.min,
+                        result.max,
+                        result.stripOutliers
+                ))
+            }
+            return chart.toImageBuilder(500, 300, format)
+                    .title(bundle.text(MESSAGE_CHART_DISTRIBUTION))
+                    .thumbnail(true)
+                    .build()
+        }
+
+        private fun ecdfChart(result: BenchmarkTestResult, bundle: Messages, format: ImageFormat): Image {
             val chart = ECDFChartMaker(result.scoreUnits, bundle.text(MESSAGE_CHART_ECDF_AXIS))
-                    .addDataset(bundle.text(MESSAGE_CHART_NAME), Color.blue, 2, result.stripOutliers.toDoubleArray())
+                    .addDataset(bundle.text(MESSAGE_CHART_NAME), Color.blue, 2, result.stripOutliers)
 
-            if (result.baselineMeasurements != null)
-                chart.addDataset(bundle.text(MESSAGE_CHART_BASELINE_NAME), Color.red, 1, result.baselineStripOutliers?.toDoubleArray()!!)
+            if (result.hasBaselineComparison)
+                chart.addDataset(bundle.text(MESSAGE_CHART_BASELINE_NAME), Color.red, 1, result.baselineStripOutliers!!)
 
-            return chart.toImageBuilder(500, 300)
+            return chart.toImageBuilder(500, 300, format)
                     .title(bundle.text(MESSAGE_CHART_ECDF))
                     .thumbnail(true).build()
         }
 
-        private fun rawChart(result: BenchmarkTestResult, bundle: Messages): Image {
+        private fun rawChart(result: BenchmarkTestResult, bundle: Messages, format: ImageFormat): Image {
 
             val chart = RawDataLineChartImageMaker(
                     bundle.text(MESSAGE_CHART_RAW_AXIS),
                     result.scoreUnits,
                     max(result.distributionStatistics.count.toInt(), result.baselineDistributionStatistics?.count?.toInt()
                             ?: -1)
-            ).addDataset(bundle.text(MESSAGE_CHART_NAME), Color.blue, 2, result.aggregatedMeasurements)
+            ).addDataset(bundle.text(MESSAGE_CHART_NAME), Color.blue, 2, result.rawMeasurements.toDoubleArray())
 
-            if (result.baselineMeasurements != null)
-                chart.addDataset(bundle.text(MESSAGE_CHART_BASELINE_NAME), Color.red, 1, result.baselineAggregatedMeasurements.orEmpty())
+            if (result.hasBaselineComparison)
+                chart.addDataset(bundle.text(MESSAGE_CHART_BASELINE_NAME), Color.red, 1, result.baselineMeasurements!!.toDoubleArray())
 
-            return chart.toImageBuilder(600, 300)
+            return chart.toImageBuilder(600, 300, format)
                     .title(bundle.text(MESSAGE_CHART_RAW))
                     .thumbnail(true).build()
         }
 
-        private fun normalDistributionChart(result: BenchmarkTestResult, bundle: Messages): Image {
+        private fun trendChart(result: BenchmarkTestResult, trend: BenchmarkTrend, bundle: Messages, format: ImageFormat): Image =
+                RawDataLineChartImageMaker(bundle.text(MESSAGE_CHART_TREND_AXIS), result.scoreUnits, trend.records.size)
+                        .addDataset(bundle.text(MESSAGE_CHART_NAME), Color.blue, 2, trend.means)
+                        .addDataset(bundle.text(MESSAGE_CHART_TREND_LEVEL), Color.red, 1,
+                                ChangePoints.segmentMeans(trend.means, trend.changePoints))
+                        .toImageBuilder(600, 300, format)
+                        .title(bundle.text(MESSAGE_CHART_TREND))
+                        .thumbnail(true).build()
+
+        private fun normalDistributionChart(result: BenchmarkTestResult, bundle: Messages, format: ImageFormat): Image {
             val distHeading = bundle.text(MESSAGE_CHART_DISTRIBUTION)
             val chartName = bundle.text(MESSAGE_CHART_NAME)
             val baselineName = bundle.text(MESSAGE_CHART_BASELINE_NAME)
@@ -234,16 +443,16 @@ class BenchmarkReport {
                         result.baselineThirdQuarter ?: 0.0,
                         result.baselineMin ?: 0.0,
                         result.baselineMax ?: 0.0,
-                        result.stripOutliers.orEmpty()
+                        result.stripOutliers
                 ))
 
-            return chart.toImageBuilder(500, 300)
+            return chart.toImageBuilder(500, 300, format)
                     .title(distHeading)
                     .thumbnail(true)
                     .build()
         }
 
-        private fun toBoxAndWhiskerItem(mean: Double, median: Double, q1: Double, q3: Double, min: Double, max: Double, values: List<Double>): BoxAndWhiskerItem {
+        private fun toBoxAndWhiskerItem(mean: Double, median: Double, q1: Double, q3: Double, min: Double, max: Double, values: DoubleArray): BoxAndWhiskerItem {
             val qdiff = abs(q3 - q1)
             val m = qdiff * 1.5
             val rmin = max(q1 - m, min)
@@ -0,0 +1,42 @@
+package com.github.rchargel.build.benchmark.results
+
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+
+/**
+ * The results of a baseline run, indexed by [BenchmarkTestResult.key]. When opened from a binary results file, the
+ * file is memory mapped and only the statistics used to compare against the baseline are read up front; the raw
+ * baseline measurements are decoded when something (such as a chart) first reads them. Closing the store decodes those
+ * which haven't been read yet, and releases the file; results compared against the baseline remain usable.
+ *
+ * @property results The baseline results
+ */
+class BaselineStore private constructor(val results: BenchmarkResults, private val file: Closeable? = null) : Closeable {
+    private val index = results.results.orEmpty().associateBy { it.key }
+
+    /**
+     * @return Returns the baseline result of the test with the given key, or null if the baseline didn't run it.
+     */
+    operator fun get(key: String): BenchmarkTestResult? = index[key]
+
+    @Throws(IOException::class)
+    override fun close() {
+        file?.close()
+    }
+
+    companion object {
+        /**
+         * Opens a results file, in either format, as a baseline.
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun open(file: File) = ResultsFiles.open(file).let { (results, handle) -> BaselineStore(results, handle) }
+
+        /**
+         * Uses results which have already been read as a baseline.
+         */
+        @JvmStatic
+        fun of(results: BenchmarkResults) = BaselineStore(results)
+    }
+}
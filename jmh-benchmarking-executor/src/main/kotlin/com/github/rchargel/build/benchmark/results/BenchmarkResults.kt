@@ -1,7 +1,9 @@
 package com.github.rchargel.build.benchmark.results
 
 import com.fasterxml.jackson.annotation.JsonIgnore
+import com.github.rchargel.build.benchmark.regression.RegressionDetector
 import oshi.SystemInfo
+import java.security.MessageDigest
 
 data class BenchmarkResults(
         val results: Collection<BenchmarkTestResult>? = null,
@@ -30,18 +32,69 @@ data class BenchmarkResults(
     val failsMaxAbsZScore: Boolean
         get() = (results?.filter { it.failsZScore(maxAbsoluteZScore) }?.count() ?: 0) > 0
 
-    fun compareToBaseline(baseline: BenchmarkResults, validateSystemSpec: Boolean): BenchmarkResults {
+    /**
+     * Whether any result has changed from its baseline, according to its verdict (or its z-score, if it has none).
+     */
+    @get:JsonIgnore
+    val hasRegressions: Boolean
+        get() = results?.any { it.regressed(maxAbsoluteZScore) } ?: false
+
+    @get:JsonIgnore
+    val hasVerdict: Boolean
+        get() = results?.any { it.verdict != null } ?: false
+
+    /**
+     * The results which allocated more per operation than their allocation budget.
+     */
+    @get:JsonIgnore
+    val allocationBudgetViolations: List<BenchmarkTestResult>
+        get() = results?.filter { it.exceedsAllocationBudget }?.sortedBy { it.key } ?: emptyList()
+
+    /**
+     * The results which failed any limit of their performance budget.
+     */
+    @get:JsonIgnore
+    val performanceBudgetViolations: List<BenchmarkTestResult>
+        get() = results?.filter { it.exceedsPerformanceBudget }?.sortedBy { it.key } ?: emptyList()
+
+    /**
+     * The names of the JVM profiles the results were run with, if any, in the order they were run.
+     */
+    @get:JsonIgnore
+    val jvmProfiles: List<String>
+        get() = results?.mapNotNull { it.jvmProfile }?.distinct() ?: emptyList()
+
+    @get:JsonIgnore
+    val hasPerformanceBudgets: Boolean
+        get() = results?.any { it.budgetChecks.isNotEmpty() } ?: false
+
+    /**
+     * A hash of the hardware specifications which must match for runs to be compared (see [compareToBaseline]).
+     */
+    @get:JsonIgnore
+    val hardwareFingerprint: String
+        get() = MessageDigest.getInstance("SHA-256")
+                .digest(listOf(architecture, cpuSpeedInHertz, logicalProcessors, totalMemoryInBytes, swapTotalInBytes)
+                        .joinToString("|").toByteArray(Charsets.UTF_8))
+                .take(8)
+                .joinToString("") { "%02x".format(it) }
+
+    fun compareToBaseline(baseline: BenchmarkResults, validateSystemSpec: Boolean) =
+            compareToBaseline(BaselineStore.of(baseline), validateSystemSpec)
+
+    fun compareToBaseline(baseline: BaselineStore, validateSystemSpec: Boolean): BenchmarkResults {
+        val system = baseline.results
         if (!validateSystemSpec &&
-                (architecture != baseline.architecture ||
-                        cpuSpeedInHertz != baseline.cpuSpeedInHertz ||
-                        logicalProcessors != baseline.logicalProcessors ||
-                        totalMemoryInBytes != baseline.totalMemoryInBytes ||
-                        swapTotalInBytes != baseline.swapTotalInBytes)) {
+                (architecture != system.architecture ||
+                        cpuSpeedInHertz != system.cpuSpeedInHertz ||
+                        logicalProcessors != system.logicalProcessors ||
+                        totalMemoryInBytes != system.totalMemoryInBytes ||
+                        swapTotalInBytes != system.swapTotalInBytes)) {
             throw RuntimeException("System specifications have deviated from baseline")
         }
-        val baselineMap = baseline.results?.map { it.key to it }?.toMap().orEmpty().toMutableMap()
+        val matched = HashSet<String>()
         return BenchmarkResults(
-                results?.map { it.compareWithBaseline(baselineMap.remove(it.key)) }.orEmpty(),
+                results?.map { it.compareWithBaseline(if (matched.add(it.key)) baseline[it.key] else null) }.orEmpty(),
                 systemModel,
                 operatingSystem,
                 cpu,
@@ -57,6 +110,11 @@ data class BenchmarkResults(
         )
     }
 
+    /**
+     * @return Returns a copy of the results, with the verdict of the detector on each.
+     */
+    fun detectRegressions(detector: RegressionDetector) = copy(results = results?.map { it.copy(verdict = detector.evaluate(it)) })
+
     companion object {
         private fun architecture(is64: Boolean?): String? {
             if (is64 == null)
@@ -1,14 +1,17 @@
 package com.github.rchargel.build.benchmark.results
 
 import com.fasterxml.jackson.annotation.JsonIgnore
+import com.github.rchargel.build.benchmark.regression.RegressionVerdict
 import com.github.rchargel.build.common.DistributionStatistics
+import com.github.rchargel.build.common.QuantileSketch
+import org.apache.commons.math3.distribution.TDistribution
 import org.apache.commons.lang3.StringUtils
 import org.apache.commons.lang3.StringUtils.EMPTY
 import org.openjdk.jmh.results.RunResult
-import org.openjdk.jmh.util.ListStatistics
 import java.util.concurrent.TimeUnit
 import java.util.stream.Collectors.toMap
 import kotlin.math.abs
+import kotlin.math.sqrt
 
 data class BenchmarkTestResult(
         val packageName: String = EMPTY,
@@ -30,7 +33,7 @@ data class BenchmarkTestResult(
         val max: Double = 0.0,
         val firstQuarter: Double = 0.0,
         val thirdQuarter: Double = 0.0,
-        val rawMeasurements: List<List<Double>> = emptyList(),
+        val rawMeasurements: MeasurementStore = MeasurementStore.EMPTY,
         val baselineDistributionStatistics: DistributionStatistics? = null,
         val baselineMedian: Double? = null,
         val baselineMean: Double? = null,
@@ -38,12 +41,44 @@ data class BenchmarkTestResult(
         val baselineMax: Double? = null,
         val baselineFirstQuarter: Double? = null,
         val baselineThirdQuarter: Double? = null,
-        val baselineMeasurements: List<List<Double>>? = null
+        val baselineMeasurements: MeasurementStore? = null,
+        val cpuSet: String? = null,
+        val quantiles: QuantileSketch = QuantileSketch(),
+        val baselineQuantiles: QuantileSketch? = null,
+        val verdict: RegressionVerdict? = null,
+        val secondaryResults: Map<String, SecondaryResult> = emptyMap(),
+        val allocationBudget: Double? = null,
+        val budgetChecks: List<BudgetCheck> = emptyList(),
+        val jvmProfile: String? = null,
+        val vmName: String? = null,
+        val vmVersion: String? = null,
+        val jdkVersion: String? = null
 ) {
     @get:JsonIgnore
     val key: String
+        get() = if (jvmProfile == null) keyAcrossProfiles else "$keyAcrossProfiles [$jvmProfile]"
+
+    /**
+     * The JVM which ran the benchmark, such as `OpenJDK 64-Bit Server VM 17.0.9+9`, if known.
+     */
+    @get:JsonIgnore
+    val jvm: String?
+        get() = vmName?.let { "$it ${vmVersion ?: jdkVersion.orEmpty()}".trim() }
+
+    /**
+     * The key of the result without its JVM profile, which is the same for the results of each profile.
+     */
+    @get:JsonIgnore
+    val keyAcrossProfiles: String
         get() = "$packageName.$className.$methodName - $mode"
 
+    /**
+     * The full name of the benchmark method, without its parameters, as JMH names it.
+     */
+    @get:JsonIgnore
+    val benchmark: String
+        get() = "$packageName.$className.${methodName.substringBefore("[")}"
+
     @get:JsonIgnore
     val outlierMinimum: Double
         get() = firstQuarter - abs(thirdQuarter - firstQuarter) * 1.5
@@ -52,13 +87,36 @@ data class BenchmarkTestResult(
     val outlierMaximum: Double
         get() = thirdQuarter + abs(thirdQuarter - firstQuarter) * 1.5
 
+    @get:JsonIgnore
+    val p90: Double
+        get() = quantile(0.90)
+
+    @get:JsonIgnore
+    val p99: Double
+        get() = quantile(0.99)
+
+    @get:JsonIgnore
+    val p999: Double
+        get() = quantile(0.999)
+
+    /**
+     * Estimates a quantile of the measurements from the [quantiles] sketch, or if the result has none (as results
+     * read from JSON written before the sketch was kept don't), from a sketch of its raw measurements.
+     *
+     * @return Returns the estimated value, or NaN if the result has neither.
+     */
+    fun quantile(quantile: Double) = sketch().quantile(quantile)
+
+    private fun sketch() = if (quantiles.count > 0 || rawMeasurements.sampleCount == 0) quantiles
+    else QuantileSketch.of(rawMeasurements.toDoubleArray())
+
     @get:JsonIgnore
     val aggregatedMeasurements: List<Double>
-        get() = rawMeasurements.flatten()
+        get() = rawMeasurements.samples()
 
     @get:JsonIgnore
-    val stripOutliers: List<Double>
-        get() = aggregatedMeasurements.filter { it in outlierMinimum..outlierMaximum }
+    val stripOutliers: DoubleArray
+        get() = rawMeasurements.filter(outlierMinimum, outlierMaximum)
 
     @get:JsonIgnore
     val baselineOutlierMinimum: Double
@@ -74,11 +132,11 @@ data class BenchmarkTestResult(
 
     @get:JsonIgnore
     val baselineAggregatedMeasurements: List<Double>?
-        get() = baselineMeasurements?.flatten()
+        get() = baselineMeasurements?.samples()
 
     @get:JsonIgnore
-    val baselineStripOutliers: List<Double>?
-        get() = baselineAggregatedMeasurements?.filter { it in baselineOutlierMinimum..baselineOutlierMaximum }
+    val baselineStripOutliers: DoubleArray?
+        get() = baselineMeasurements?.filter(baselineOutlierMinimum, baselineOutlierMaximum)
 
     @get:JsonIgnore
     val zScore: Double?
@@ -90,6 +148,42 @@ data class BenchmarkTestResult(
     val hasBaselineComparison: Boolean
         get() = baselineMeasurements?.isEmpty() == false
 
+    /**
+     * The bytes allocated per operation, if the GC profiler was run.
+     */
+    @get:JsonIgnore
+    val allocationPerOperation: Double?
+        get() = secondaryResults.entries.firstOrNull { it.key.endsWith(ALLOCATION_RATE_NORM) }?.value?.score?.takeUnless { it.isNaN() }
+
+    /**
+     * Whether the benchmark allocated more per operation than its [allocationBudget] (allowing for
+     * [ALLOCATION_TOLERANCE] of noise).
+     */
+    @get:JsonIgnore
+    val exceedsAllocationBudget: Boolean
+        get() {
+            val budget = allocationBudget ?: return false
+            val allocation = allocationPerOperation ?: return false
+            return allocation > budget + ALLOCATION_TOLERANCE
+        }
+
+    fun withAllocationBudget(allocationBudget: Double?) = copy(allocationBudget = allocationBudget)
+
+    fun withJvmProfile(jvmProfile: String?) = copy(jvmProfile = jvmProfile)
+
+    /**
+     * Whether the result failed any of the limits of its performance budget (see [budgetChecks]).
+     */
+    @get:JsonIgnore
+    val exceedsPerformanceBudget: Boolean
+        get() = budgetChecks.any { !it.passed }
+
+    /**
+     * Checks the result against absolute limits, replacing any earlier checks. See [BudgetCheck.check].
+     */
+    fun withPerformanceBudget(maxMean: Double, maxP99: Double, minThroughput: Double, timeUnit: TimeUnit) =
+            copy(budgetChecks = BudgetCheck.check(this, maxMean, maxP99, minThroughput, timeUnit))
+
     fun shortString() = mapOf(
             "min" to min,
             "out-min" to outlierMinimum,
@@ -102,9 +196,16 @@ data class BenchmarkTestResult(
 
     fun failsZScore(maxAbsoluteZScore: Double) = if (zScore != null) abs(zScore ?: 0.0) > maxAbsoluteZScore else false
 
+    /**
+     * @return Returns whether the [verdict] reports a change, or if there is no verdict, whether it fails the z-score.
+     */
+    fun regressed(maxAbsoluteZScore: Double) = verdict?.changed ?: failsZScore(maxAbsoluteZScore)
+
     fun merge(other: BenchmarkTestResult): BenchmarkTestResult {
-        val rawData = this.rawMeasurements + other.rawMeasurements
-        val stats = ListStatistics(rawData.flatten().toDoubleArray())
+        val stats = DistributionStatistics.merge(distributionStatistics, other.distributionStatistics)
+        val sketch = QuantileSketch.merge(sketch(), other.sketch())
+        // without a sketch or raw measurements on either side, the quartiles are those of this result
+        val hasSketch = sketch.count > 0
         return builder("$packageName.$className.$methodName")
                 .packageName(packageName)
                 .className(className)
@@ -117,14 +218,22 @@ data class BenchmarkTestResult(
                 .measurementTimeInMilliseconds(measurementTimeInMilliseconds)
                 .mode(mode)
                 .scoreUnits(scoreUnits)
-                .medianMeasurement(stats.getPercentile(50.0))
-                .minimum(stats.min)
-                .maximum(stats.max)
-                .firstQuarterMeasurement(stats.getPercentile(25.0))
-                .thirdQuarterMeasurement(stats.getPercentile(75.0))
+                .medianMeasurement(if (hasSketch) sketch.quantile(0.50) else median)
+                .minimum(stats.minimum)
+                .maximum(stats.maximum)
+                .firstQuarterMeasurement(if (hasSketch) sketch.quantile(0.25) else firstQuarter)
+                .thirdQuarterMeasurement(if (hasSketch) sketch.quantile(0.75) else thirdQuarter)
                 .mean(stats.mean)
-                .meanErrorAt999(stats.getMeanErrorAt(0.999))
-                .rawMeasurements(rawData)
+                .meanErrorAt999(meanErrorAt(stats, 0.999))
+                .rawMeasurements(rawMeasurements + other.rawMeasurements)
+                .distributionStatistics(stats)
+                .quantiles(sketch)
+                .cpuSet(mergeCpuSets(cpuSet, other.cpuSet))
+                .secondaryResults(SecondaryResult.merge(secondaryResults, other.secondaryResults))
+                .allocationBudget(allocationBudget ?: other.allocationBudget)
+                .jvmProfile(jvmProfile)
+                .vm(vmName, vmVersion, jdkVersion)
+                // budget checks no longer hold for the merged result, so are left to be checked again
                 .build()
     }
 
@@ -157,19 +266,55 @@ data class BenchmarkTestResult(
                 baselineMax = baseline?.max,
                 baselineFirstQuarter = baseline?.firstQuarter,
                 baselineThirdQuarter = baseline?.thirdQuarter,
-                baselineMeasurements = baseline?.rawMeasurements.orEmpty()
+                baselineMeasurements = baseline?.rawMeasurements ?: MeasurementStore.EMPTY,
+                cpuSet = cpuSet,
+                quantiles = quantiles,
+                baselineQuantiles = baseline?.quantiles ?: QuantileSketch(),
+                secondaryResults = secondaryResults.mapValues { (label, result) -> result.compareWithBaseline(baseline?.secondaryResults?.get(label)) },
+                allocationBudget = allocationBudget,
+                budgetChecks = budgetChecks,
+                jvmProfile = jvmProfile,
+                vmName = vmName,
+                vmVersion = vmVersion,
+                jdkVersion = jdkVersion
         )
     else throw RuntimeException("Measurements don't belong to same test: $key != ${baseline.key}")
 
     companion object {
+        /** The label of the bytes allocated per operation, reported by JMH's GC profiler */
+        const val ALLOCATION_RATE_NORM = "gc.alloc.rate.norm"
+
+        /** The bytes per operation a benchmark may allocate beyond its budget, allowing for measurement noise */
+        const val ALLOCATION_TOLERANCE = 0.5
+
         internal fun stringifyParams(paramEntries: Set<Map.Entry<String, String>>?) =
                 paramEntries?.sortedBy { entry -> entry.key }?.joinToString(", ", "[ ", " ]") { entry -> "${entry.key}=${entry.value}" }.orEmpty()
 
+        private fun mergeCpuSets(first: String?, second: String?) = listOfNotNull(first, second)
+                .flatMap { it.split(",") }
+                .distinct()
+                .sortedBy { it.substringBefore("-").toIntOrNull() ?: Int.MAX_VALUE }
+                .joinToString(",")
+                .ifEmpty { null }
+
+        /**
+         * Computes the same error margin as JMH, from the merged statistics rather than the raw samples.
+         */
+        private fun meanErrorAt(stats: DistributionStatistics, confidence: Double) = if (stats.count <= 2) Double.NaN
+        else TDistribution(stats.count - 1.0).inverseCumulativeProbability(1 - (1 - confidence) / 2) *
+                stats.standardDeviation / sqrt(stats.count.toDouble())
+
         @JvmStatic
         fun builder(name: String) = Builder(name)
 
         @JvmStatic
-        fun fromRunResult(runResult: RunResult) = builder(runResult.params.benchmark)
+        fun fromRunResult(runResult: RunResult) = fromRunResult(runResult, null)
+
+        @JvmStatic
+        fun fromRunResult(runResult: RunResult, cpuSet: String?) = fromRunResult(runResult, cpuSet, null)
+
+        @JvmStatic
+        fun fromRunResult(runResult: RunResult, cpuSet: String?, jvmProfile: String?) = builder(runResult.params.benchmark)
                 .params(runResult.params.paramsKeys.stream().collect(toMap({ s -> s }, { s -> runResult.params.getParam(s) })))
                 .numberOfTestThreads(runResult.params.threads)
                 .numberOfTestRepititions(1)
@@ -186,7 +331,15 @@ data class BenchmarkTestResult(
                 .minimum(runResult.aggregatedResult.primaryResult.getStatistics().min)
                 .maximum(runResult.aggregatedResult.primaryResult.getStatistics().max)
                 .meanErrorAt999(runResult.aggregatedResult.primaryResult.getStatistics().getMeanErrorAt(0.999))
-                .rawMeasurements(runResult.benchmarkResults.map { run -> run.iterationResults.map { it.primaryResult.getScore() } })
+                .rawMeasurements(runResult.benchmarkResults.fold(MeasurementStore.builder()) { store, run ->
+                    store.add(run.iterationResults.map { it.primaryResult.getScore() })
+                }.build())
+                .cpuSet(cpuSet)
+                .jvmProfile(jvmProfile)
+                .vm(runResult.params.vmName, runResult.params.vmVersion, runResult.params.jdkVersion)
+                .secondaryResults(SecondaryResult.of(runResult.secondaryResults, runResult.benchmarkResults.flatMap { run ->
+                    run.iterationResults.map { it.secondaryResults }
+                }))
                 .build()
 
         class Builder internal constructor(
@@ -209,8 +362,18 @@ data class BenchmarkTestResult(
                 private var meanErrorAt999: Double = 0.0,
                 private var minimum: Double = 0.0,
                 private var maximum: Double = 0.0,
-                private var rawMeasurements: ArrayList<List<Double>> = ArrayList(),
-                private var params: HashMap<String, String> = HashMap()
+                private var rawMeasurements: MeasurementStore = MeasurementStore.EMPTY,
+                private var addedMeasurements: MeasurementStore.Companion.Builder = MeasurementStore.builder(),
+                private var params: HashMap<String, String> = HashMap(),
+                private var cpuSet: String? = null,
+                private var distributionStatistics: DistributionStatistics? = null,
+                private var quantiles: QuantileSketch? = null,
+                private var secondaryResults: Map<String, SecondaryResult> = emptyMap(),
+                private var allocationBudget: Double? = null,
+                private var jvmProfile: String? = null,
+                private var vmName: String? = null,
+                private var vmVersion: String? = null,
+                private var jdkVersion: String? = null
         ) {
             fun methodName(methodName: String) = apply { this.internalMethodName = methodName }
             fun className(className: String) = apply { this.internalClassName = className }
@@ -230,10 +393,26 @@ data class BenchmarkTestResult(
             fun maximum(maximum: Double) = apply { this.maximum = maximum }
             fun minimum(minimum: Double) = apply { this.minimum = minimum }
             fun meanErrorAt999(meanErrorAt999: Double) = apply { this.meanErrorAt999 = meanErrorAt999 }
-            fun addRawMeasurement(rawMeasurement: List<Double>) = apply { this.rawMeasurements.add(rawMeasurement) }
-            fun rawMeasurements(rawMeasurements: List<List<Double>>) = apply { this.rawMeasurements = ArrayList(rawMeasurements) }
+            fun addRawMeasurement(rawMeasurement: List<Double>) = apply { this.addedMeasurements.add(rawMeasurement) }
+            fun addRawMeasurement(rawMeasurement: DoubleArray) = apply { this.addedMeasurements.add(rawMeasurement) }
+            fun rawMeasurements(rawMeasurements: List<List<Double>>) = rawMeasurements(MeasurementStore.of(rawMeasurements))
+            fun rawMeasurements(rawMeasurements: MeasurementStore) = apply {
+                this.rawMeasurements = rawMeasurements
+                this.addedMeasurements = MeasurementStore.builder()
+            }
             fun addParam(name: String, value: String) = apply { this.params[name] = value }
             fun params(params: Map<String, String>) = apply { this.params = HashMap(params) }
+            fun cpuSet(cpuSet: String?) = apply { this.cpuSet = cpuSet }
+            fun distributionStatistics(distributionStatistics: DistributionStatistics) = apply { this.distributionStatistics = distributionStatistics }
+            fun quantiles(quantiles: QuantileSketch) = apply { this.quantiles = quantiles }
+            fun secondaryResults(secondaryResults: Map<String, SecondaryResult>) = apply { this.secondaryResults = secondaryResults }
+            fun allocationBudget(allocationBudget: Double?) = apply { this.allocationBudget = allocationBudget }
+            fun jvmProfile(jvmProfile: String?) = apply { this.jvmProfile = jvmProfile }
+            fun vm(vmName: String?, vmVersion: String?, jdkVersion: String?) = apply {
+                this.vmName = vmName
+                this.vmVersion = vmVersion
+                this.jdkVersion = jdkVersion
+            }
 
             fun build(): BenchmarkTestResult {
                 val nameParts = name.split(".")
@@ -241,9 +420,7 @@ data class BenchmarkTestResult(
                 val className = internalClassName ?: nameParts[nameParts.size - 2]
                 val methodName = internalMethodName
                         ?: "${nameParts[nameParts.size - 1]}${stringifyParams(params.entries)}"
-                val stats = rawMeasurements.flatten().stream().reduce(DistributionStatistics(),
-                        { r, x -> DistributionStatistics.aggregate(r, x) },
-                        { a, b -> DistributionStatistics.merge(a, b) })
+                val measurements = rawMeasurements + addedMeasurements.build()
                 return BenchmarkTestResult(
                         packageName = packageName,
                         className = className,
@@ -263,8 +440,16 @@ data class BenchmarkTestResult(
                         firstQuarter = firstQuarterMeasurement,
                         thirdQuarter = thirdQuarterMeasurement,
                         meanErrorAt999 = meanErrorAt999,
-                        distributionStatistics = stats,
-                        rawMeasurements = rawMeasurements
+                        distributionStatistics = distributionStatistics ?: measurements.statistics(),
+                        rawMeasurements = measurements,
+                        cpuSet = cpuSet,
+                        quantiles = quantiles ?: QuantileSketch.of(measurements.toDoubleArray()),
+                        secondaryResults = secondaryResults,
+                        allocationBudget = allocationBudget,
+                        jvmProfile = jvmProfile,
+                        vmName = vmName,
+                        vmVersion = vmVersion,
+                        jdkVersion = jdkVersion
                 )
             }
         }
@@ -0,0 +1,102 @@
+package com.github.rchargel.build.benchmark.results
+
+import org.apache.commons.lang3.StringUtils.EMPTY
+import java.util.concurrent.TimeUnit
+
+/**
+ * The check of a result against one of the absolute limits of its benchmark's performance budget.
+ *
+ * @property metric The measure of the result which was checked
+ * @property limit The limit, in the units it was given in
+ * @property actual The measure of the result, converted to the units of the limit, or NaN if the units of the
+ * result's score are not a time per operation or operations per time
+ * @property units The units of the limit, such as `ms/op` or `ops/s`
+ * @property passed Whether the result was within the limit
+ */
+data class BudgetCheck(
+        val metric: Metric = Metric.MEAN,
+        val limit: Double = Double.NaN,
+        val actual: Double = Double.NaN,
+        val units: String = EMPTY,
+        val passed: Boolean = true
+) {
+    enum class Metric(val label: String, val maximum: Boolean) {
+        MEAN("mean", true),
+        P99("p99", true),
+        THROUGHPUT("throughput", false)
+    }
+
+    /**
+     * @return Returns a short description of the limit, such as `mean ≤ 2.0000 ms/op`.
+     */
+    fun describe() = "%s %s %.4f %s".format(metric.label, if (metric.maximum) "≤" else "≥", limit, units)
+
+    companion object {
+        private val TIME_UNITS = mapOf(
+                "ns" to TimeUnit.NANOSECONDS,
+                "us" to TimeUnit.MICROSECONDS,
+                "μs" to TimeUnit.MICROSECONDS,
+                "ms" to TimeUnit.MILLISECONDS,
+                "s" to TimeUnit.SECONDS,
+                "min" to TimeUnit.MINUTES,
+                "hr" to TimeUnit.HOURS,
+                "day" to TimeUnit.DAYS
+        )
+
+        /**
+         * Checks a result against the limits of a performance budget.
+         *
+         * @param result The result
+         * @param maxMean The maximum mean time per operation (the reciprocal of the mean throughput of a throughput
+         * benchmark), or zero or less for none
+         * @param maxP99 The maximum 99th percentile of the iteration scores, as a time per operation, or zero or less
+         * for none
+         * @param minThroughput The minimum operations per time unit (the reciprocal of the mean time per operation of
+         * a time per operation benchmark), or zero or less for none
+         * @param timeUnit The time unit of the limits
+         * @return Returns a check of each of the limits.
+         */
+        @JvmStatic
+        fun check(result: BenchmarkTestResult, maxMean: Double, maxP99: Double, minThroughput: Double, timeUnit: TimeUnit): List<BudgetCheck> {
+            val unit = TIME_UNITS.entries.first { it.value == timeUnit }.key
+            val checks = ArrayList<BudgetCheck>()
+            if (maxMean > 0)
+                checks.add(check(Metric.MEAN, maxMean, timePerOperation(result, null, timeUnit), "$unit/op"))
+            if (maxP99 > 0)
+                checks.add(check(Metric.P99, maxP99, timePerOperation(result, 0.99, timeUnit), "$unit/op"))
+            if (minThroughput > 0)
+                checks.add(check(Metric.THROUGHPUT, minThroughput, 1.0 / timePerOperation(result, null, timeUnit), "ops/$unit"))
+            return checks
+        }
+
+        private fun check(metric: Metric, limit: Double, actual: Double, units: String) = BudgetCheck(metric, limit, actual, units,
+                !actual.isNaN() && if (metric.maximum) actual <= limit else actual >= limit)
+
+        /**
+         * Reads the mean (if the quantile is null) or a quantile of the time per operation from a result, whether its
+         * score is a time per operation (such as `us/op`) or a throughput (such as `ops/ms`).
+         *
+         * The quantiles are those of the iteration scores, each of which averages the operations of one iteration, so
+         * they bound the iterations rather than single operations. For a throughput benchmark, the time per operation
+         * is the reciprocal of the mean throughput (not the mean of the reciprocals), and as the slowest iterations
+         * have the lowest scores, its quantiles are the reciprocals of the quantiles from the other end.
+         */
+        private fun timePerOperation(result: BenchmarkTestResult, quantile: Double?, timeUnit: TimeUnit): Double {
+            val parts = result.scoreUnits.split("/")
+            if (parts.size != 2)
+                return Double.NaN
+            val (numerator, denominator) = parts.map { it.trim() }
+            return when {
+                denominator == "op" -> TIME_UNITS[numerator]?.let {
+                    convert(quantile?.let { q -> result.quantile(q) } ?: result.distributionStatistics.mean, it, timeUnit)
+                }
+                numerator == "ops" -> TIME_UNITS[denominator]?.let {
+                    convert(1.0 / (quantile?.let { q -> result.quantile(1 - q) } ?: result.distributionStatistics.mean), it, timeUnit)
+                }
+                else -> null
+            } ?: Double.NaN
+        }
+
+        private fun convert(value: Double, from: TimeUnit, to: TimeUnit) = value * from.toNanos(1) / to.toNanos(1)
+    }
+}
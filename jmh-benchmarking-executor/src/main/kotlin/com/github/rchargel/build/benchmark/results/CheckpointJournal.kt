@@ -0,0 +1,159 @@
+package com.github.rchargel.build.benchmark.results
+
+import com.fasterxml.jackson.core.JsonProcessingException
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+
+/**
+ * An append-only journal of the results of a benchmark run, written as each benchmark finishes, so a run which dies
+ * part way through can be resumed without repeating the benchmarks it had already completed.
+ *
+ * Each line of the file is a JSON [Entry]. Each execution of a JMH runner (identified by the classes it runs and the
+ * repetition) journals each result as soon as it completes, marks each benchmark method complete once all of its
+ * parameter combinations have run, and marks itself complete at its end. A line cut short by the process dying is
+ * dropped when the journal is resumed.
+ *
+ * The journal is safe for use by several runners in the same process.
+ */
+class CheckpointJournal private constructor(val file: File, entries: List<Entry>) {
+    private val entries = entries.groupBy { it.run to it.repetition }
+    private val channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND)
+
+    /**
+     * The number of results journaled by earlier attempts at the run.
+     */
+    val resumedResultCount: Int
+        get() = entries.values.sumBy { run -> run.count { it.type == EntryType.RESULT } }
+
+    /**
+     * Finds what an earlier attempt completed of a runner execution. Results of benchmarks which weren't completed are
+     * left out, as their remaining parameter combinations will be run again; if a benchmark was run by several
+     * attempts, the last result of each parameter combination is used.
+     *
+     * @param run Identifies the classes run by the runner.
+     * @param repetition The repetition.
+     * @return Returns the progress of the runner execution.
+     */
+    fun progress(run: String, repetition: Int): Progress {
+        val entries = entries[run to repetition] ?: return Progress()
+        val complete = entries.any { it.type == EntryType.RUN }
+        val completed = entries.filter { it.type != EntryType.RESULT }.mapNotNull { it.benchmark }.toSet()
+        val results = LinkedHashMap<String, BenchmarkTestResult>()
+        entries.mapNotNull { it.result }
+                .filter { complete || it.benchmark in completed }
+                .forEach { results[it.key] = it }
+        return Progress(complete, completed, results.values.toList())
+    }
+
+    /**
+     * Journals a completed result.
+     */
+    @Throws(IOException::class)
+    fun appendResult(run: String, repetition: Int, result: BenchmarkTestResult) =
+            append(Entry(EntryType.RESULT, run, repetition, result.benchmark, result))
+
+    /**
+     * Marks a benchmark method, with all of its parameter combinations, complete.
+     */
+    @Throws(IOException::class)
+    fun completeBenchmark(run: String, repetition: Int, benchmark: String) =
+            append(Entry(EntryType.BENCHMARK, run, repetition, benchmark))
+
+    /**
+     * Marks a runner execution complete, along with the last benchmark it ran.
+     */
+    @Throws(IOException::class)
+    fun completeRun(run: String, repetition: Int, lastBenchmark: String?) =
+            append(Entry(EntryType.RUN, run, repetition, lastBenchmark))
+
+    /**
+     * Closes and deletes the journal, once its results are safely written elsewhere.
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun delete() {
+        channel.close()
+        Files.deleteIfExists(file.toPath())
+    }
+
+    @Synchronized
+    private fun append(entry: Entry) {
+        val buffer = ByteBuffer.wrap((mapper.writeValueAsString(entry) + "\n").toByteArray(StandardCharsets.UTF_8))
+        while (buffer.hasRemaining())
+            channel.write(buffer)
+    }
+
+    /**
+     * What an earlier attempt completed of a runner execution.
+     *
+     * @property complete Whether the whole execution completed
+     * @property completedBenchmarks The full names of the benchmark methods it completed
+     * @property results The results of the completed benchmarks
+     */
+    data class Progress(
+            val complete: Boolean = false,
+            val completedBenchmarks: Set<String> = emptySet(),
+            val results: List<BenchmarkTestResult> = emptyList()
+    )
+
+    enum class EntryType { RESULT, BENCHMARK, RUN }
+
+    internal data class Entry(
+            val type: EntryType = EntryType.RESULT,
+            val run: String = "",
+            val repetition: Int = 0,
+            val benchmark: String? = null,
+            val result: BenchmarkTestResult? = null
+    )
+
+    companion object {
+        private val mapper = ObjectMapper()
+
+        /**
+         * Starts a new journal, discarding any existing one.
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun create(file: File): CheckpointJournal {
+            file.parentFile?.let { Files.createDirectories(it.toPath()) }
+            Files.deleteIfExists(file.toPath())
+            return CheckpointJournal(file, emptyList())
+        }
+
+        /**
+         * Opens an existing journal (if there is one) to resume the run it belongs to. Any incomplete last line is
+         * removed, so new entries start on a line of their own.
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun resume(file: File): CheckpointJournal {
+            if (!file.isFile)
+                return create(file)
+            val bytes = Files.readAllBytes(file.toPath())
+            val entries = ArrayList<Entry>()
+            var start = 0
+            for (i in bytes.indices) {
+                if (bytes[i] == '\n'.toByte()) {
+                    readEntry(String(bytes, start, i - start, StandardCharsets.UTF_8))?.let { entries.add(it) }
+                    start = i + 1
+                }
+            }
+            if (start < bytes.size)
+                FileChannel.open(file.toPath(), StandardOpenOption.WRITE).use { it.truncate(start.toLong()) }
+            return CheckpointJournal(file, entries)
+        }
+
+        private fun readEntry(line: String) = try {
+            if (line.isBlank()) null else mapper.readValue(line, Entry::class.java)
+        } catch (e: JsonProcessingException) {
+            null
+        }
+    }
+}
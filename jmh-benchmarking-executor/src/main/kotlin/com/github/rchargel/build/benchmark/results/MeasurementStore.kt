@@ -0,0 +1,299 @@
+package com.github.rchargel.build.benchmark.results
+
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.DeserializationContext
+import com.fasterxml.jackson.databind.JsonDeserializer
+import com.fasterxml.jackson.databind.JsonSerializer
+import com.fasterxml.jackson.databind.SerializerProvider
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize
+import com.fasterxml.jackson.databind.annotation.JsonSerialize
+import com.github.rchargel.build.common.DistributionStatistics
+import com.github.rchargel.build.common.DistributionStatisticsAccumulator
+import java.io.DataInput
+import java.io.DataOutput
+import java.util.Arrays
+
+/**
+ * Column oriented storage of raw measurements. All of the samples are held in a single primitive array, with the
+ * offset at which each fork's samples start, so they can be read without boxing. The store still presents itself as a
+ * list of forks (each being a list of samples) and is serialized in that shape.
+ *
+ * The samples of a store read from a mapped results file are only decoded the first time they are used; the number of
+ * forks and samples is known up front. Likewise, adding stores together only keeps track of the stores being added, and
+ * copies their samples into a single array once, the first time the samples of the sum are used.
+ */
+@JsonSerialize(using = MeasurementStore.Companion.MeasurementSerializer::class)
+@JsonDeserialize(using = MeasurementStore.Companion.MeasurementDeserializer::class)
+class MeasurementStore private constructor(
+        override val size: Int,
+        /**
+         * The total number of samples across all forks.
+         */
+        val sampleCount: Int,
+        private val columns: Lazy<Columns>,
+        /**
+         * The stores making up a sum whose samples have not been copied yet.
+         */
+        @Volatile private var parts: List<MeasurementStore>? = null
+) : AbstractList<List<Double>>() {
+    private constructor(values: DoubleArray, offsets: IntArray) :
+            this(offsets.size - 1, values.size, lazyOf(Columns(values, offsets)))
+
+    private val values: DoubleArray
+        get() = columns.value.values
+
+    private val offsets: IntArray
+        get() = columns.value.offsets
+
+    /**
+     * Whether the samples have been decoded, which is always the case unless the store was read from a mapped file.
+     */
+    val isLoaded: Boolean
+        get() = columns.isInitialized()
+
+    /**
+     * Decodes the samples, if they haven't been already.
+     */
+    internal fun load() = apply { columns.value }
+
+    override fun get(index: Int): List<Double> {
+        val (values, offsets) = columns.value
+        return values.asList().subList(offsets[index], offsets[index + 1])
+    }
+
+    /**
+     * @return Returns a view of all samples, in fork order.
+     */
+    fun samples(): List<Double> = values.asList()
+
+    /**
+     * @return Returns a copy of all samples, in fork order.
+     */
+    fun toDoubleArray(): DoubleArray = values.copyOf()
+
+    /**
+     * @return Returns the samples which fall within the given (inclusive) range.
+     */
+    fun filter(minimum: Double, maximum: Double): DoubleArray {
+        val values = columns.value.values
+        var count = 0
+        val filtered = DoubleArray(values.size)
+        for (value in values)
+            if (value in minimum..maximum)
+                filtered[count++] = value
+        return if (count == filtered.size) filtered else filtered.copyOf(count)
+    }
+
+    /**
+     * @return Returns the statistics of all samples, computed in parallel once there are enough of them.
+     */
+    fun statistics(): DistributionStatistics = if (sampleCount < PARALLEL_THRESHOLD) DistributionStatisticsAccumulator.of(values)
+    else DistributionStatisticsAccumulator.collect(Arrays.stream(values).parallel())
+
+    operator fun plus(other: MeasurementStore): MeasurementStore = when {
+        other.isEmpty() -> this
+        isEmpty() -> other
+        else -> concat(segments() + other.segments())
+    }
+
+    private fun segments(): List<MeasurementStore> {
+        val parts = parts
+        return if (parts == null || isLoaded) listOf(this) else parts
+    }
+
+    override fun equals(other: Any?) = when (other) {
+        is MeasurementStore -> values.contentEquals(other.values) && offsets.contentEquals(other.offsets)
+        else -> super.equals(other)
+    }
+
+    override fun hashCode() = super.hashCode()
+
+    /**
+     * Writes the store in the block format described by [ResultsFiles].
+     */
+    internal fun writeTo(output: DataOutput) {
+        val (values, offsets) = columns.value
+        output.writeInt(size)
+        for (fork in 1..size)
+            writeVarLong(output, (offsets[fork] - offsets[fork - 1]).toLong())
+        var previous = 0L
+        for (value in values) {
+            val bits = value.toRawBits()
+            writeVarLong(output, bits xor previous)
+            previous = bits
+        }
+    }
+
+    private data class Columns(val values: DoubleArray, val offsets: IntArray)
+
+    companion object {
+        private const val PARALLEL_THRESHOLD = 1 shl 16
+
+        @JvmField
+        val EMPTY = MeasurementStore(DoubleArray(0), IntArray(1))
+
+        @JvmStatic
+        fun builder() = Builder()
+
+        @JvmStatic
+        fun of(forks: List<List<Double>>): MeasurementStore = if (forks is MeasurementStore) forks
+        else forks.fold(builder()) { b, fork -> b.add(fork) }.build()
+
+        /**
+         * Creates a store whose samples are only loaded when they are first used.
+         *
+         * @param size The number of forks
+         * @param sampleCount The total number of samples
+         * @param loader Loads the samples; called at most once
+         */
+        internal fun lazy(size: Int, sampleCount: Int, loader: () -> MeasurementStore): MeasurementStore =
+                if (size == 0) EMPTY else MeasurementStore(size, sampleCount, kotlin.lazy { loader().columns.value })
+
+        private fun concat(parts: List<MeasurementStore>): MeasurementStore {
+            val size = parts.sumBy { it.size }
+            val sampleCount = parts.sumBy { it.sampleCount }
+            lateinit var store: MeasurementStore
+            store = MeasurementStore(size, sampleCount, kotlin.lazy {
+                val columns = parts.fold(Builder(DoubleArray(sampleCount), IntArray(size + 1))) { builder, part ->
+                    builder.addAll(part)
+                }.build().columns.value
+                store.parts = null
+                columns
+            }, parts)
+            return store
+        }
+
+        /**
+         * Reads a store written by [writeTo].
+         */
+        internal fun readFrom(input: DataInput): MeasurementStore {
+            val offsets = IntArray(input.readInt() + 1)
+            for (fork in 1 until offsets.size)
+                offsets[fork] = offsets[fork - 1] + readVarLong(input).toInt()
+            val values = DoubleArray(offsets.last())
+            var previous = 0L
+            for (i in values.indices) {
+                previous = previous xor readVarLong(input)
+                values[i] = Double.fromBits(previous)
+            }
+            return if (values.isEmpty() && offsets.size == 1) EMPTY else MeasurementStore(values, offsets)
+        }
+
+        private fun writeVarLong(output: DataOutput, value: Long) {
+            var remaining = value
+            while (remaining and 0x7FL.inv() != 0L) {
+                output.writeByte(((remaining and 0x7F) or 0x80).toInt())
+                remaining = remaining ushr 7
+            }
+            output.writeByte(remaining.toInt())
+        }
+
+        private fun readVarLong(input: DataInput): Long {
+            var value = 0L
+            var shift = 0
+            while (true) {
+                val b = input.readUnsignedByte()
+                value = value or ((b and 0x7F).toLong() shl shift)
+                if (b and 0x80 == 0)
+                    return value
+                shift += 7
+            }
+        }
+
+        class Builder internal constructor(
+                private var values: DoubleArray = DoubleArray(16),
+                private var offsets: IntArray = IntArray(4),
+                private var forks: Int = 0
+        ) {
+            private val sampleCount: Int
+                get() = offsets[forks]
+
+            fun add(fork: DoubleArray) = add(fork, fork.size)
+
+            fun add(fork: DoubleArray, length: Int) = apply { addRange(fork, 0, length) }
+
+            fun add(fork: List<Double>) = apply {
+                ensureCapacity(fork.size)
+                var offset = sampleCount
+                for (value in fork)
+                    values[offset++] = value
+                endFork(offset)
+            }
+
+            fun addAll(store: MeasurementStore) = apply {
+                val (values, offsets) = store.columns.value
+                for (fork in 0 until store.size)
+                    addRange(values, offsets[fork], offsets[fork + 1])
+            }
+
+            /**
+             * Builds the store, without copying the samples if the builder was sized for exactly the samples added. As
+             * a builder only ever appends, it is still safe to keep adding to it afterwards.
+             */
+            fun build() = MeasurementStore(
+                    if (values.size == sampleCount) values else values.copyOf(sampleCount),
+                    if (offsets.size == forks + 1) offsets else offsets.copyOf(forks + 1))
+
+            private fun addRange(source: DoubleArray, from: Int, to: Int) {
+                ensureCapacity(to - from)
+                source.copyInto(values, sampleCount, from, to)
+                endFork(sampleCount + to - from)
+            }
+
+            private fun endFork(offset: Int) {
+                if (forks + 2 > offsets.size)
+                    offsets = offsets.copyOf(offsets.size * 2)
+                offsets[++forks] = offset
+            }
+
+            private fun ensureCapacity(additional: Int) {
+                val required = sampleCount + additional
+                if (required > values.size)
+                    values = values.copyOf(maxOf(required, values.size * 2))
+            }
+        }
+
+        class MeasurementSerializer : JsonSerializer<MeasurementStore>() {
+            override fun serialize(value: MeasurementStore, gen: JsonGenerator, serializers: SerializerProvider) {
+                // in a binary results file the measurements are written separately, and only referenced here
+                @Suppress("UNCHECKED_CAST")
+                val blocks = serializers.getAttribute(ResultsFiles.MEASUREMENT_BLOCKS) as MutableList<MeasurementStore>?
+                if (blocks != null) {
+                    gen.writeNumber(blocks.size)
+                    blocks.add(value)
+                    return
+                }
+                val (values, offsets) = value.columns.value
+                gen.writeStartArray()
+                for (fork in 0 until value.size)
+                    gen.writeArray(values, offsets[fork], offsets[fork + 1] - offsets[fork])
+                gen.writeEndArray()
+            }
+        }
+
+        class MeasurementDeserializer : JsonDeserializer<MeasurementStore>() {
+            override fun deserialize(p: JsonParser, ctxt: DeserializationContext): MeasurementStore {
+                val blocks = ctxt.getAttribute(ResultsFiles.MEASUREMENT_BLOCKS) as List<*>?
+                if (blocks != null && p.currentToken == JsonToken.VALUE_NUMBER_INT)
+                    return blocks[p.intValue] as MeasurementStore
+                if (!p.isExpectedStartArrayToken)
+                    return ctxt.handleUnexpectedToken(MeasurementStore::class.java, p) as MeasurementStore
+
+                val builder = builder()
+                var fork = DoubleArray(16)
+                while (p.nextToken() == JsonToken.START_ARRAY) {
+                    var count = 0
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        if (count == fork.size)
+                            fork = fork.copyOf(fork.size * 2)
+                        fork[count++] = p.valueAsDouble
+                    }
+                    builder.add(fork, count)
+                }
+                return builder.build()
+            }
+        }
+    }
+}
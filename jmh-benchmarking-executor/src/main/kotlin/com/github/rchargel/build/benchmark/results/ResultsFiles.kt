@@ -0,0 +1,244 @@
+package com.github.rchargel.build.benchmark.results
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.io.BufferedInputStream
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.InflaterInputStream
+
+/**
+ * The formats benchmark results can be stored in.
+ *
+ * @property extension The file extension of the format
+ */
+enum class ResultsFormat(val extension: String) {
+    /** Pretty printed JSON, with every measurement written as text */
+    JSON("json"),
+
+    /** A compact, compressed binary format (see [ResultsFiles]) */
+    BINARY("bin")
+}
+
+/**
+ * Reads and writes benchmark results files.
+ *
+ * A binary file starts with a magic number and version, followed by the deflate compressed results as JSON in which
+ * each set of measurements is replaced by the index of its block, a table of the blocks (their compressed length and
+ * number of forks and samples), and finally the blocks themselves, each compressed separately so it can be read
+ * without the others. Each double is stored as the XOR of its bits with those of the previous value, written as a
+ * variable length integer: consecutive measurements usually share their sign, exponent and leading bits, so they take
+ * fewer bytes, and repeated values take a single byte.
+ */
+object ResultsFiles {
+    private const val MAGIC = 0x424D5253 // "BMRS"
+    private const val VERSION = 2
+
+    /** The attribute used to pass measurement blocks to and from the [MeasurementStore] serializers */
+    internal const val MEASUREMENT_BLOCKS = "measurementBlocks"
+
+    private val mapper = ObjectMapper()
+
+    /**
+     * Writes the results in the given format. The stream is not closed.
+     *
+     * @param results The results to write.
+     * @param format  The format to write them in.
+     * @param output  The stream to write to.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun write(results: BenchmarkResults, format: ResultsFormat, output: OutputStream) {
+        when (format) {
+            ResultsFormat.JSON -> mapper.writerWithDefaultPrettyPrinter().writeValue(NonClosingOutputStream(output), results)
+            ResultsFormat.BINARY -> writeBinary(results, output)
+        }
+    }
+
+    /**
+     * Reads results written in either format.
+     *
+     * @param input The stream to read from.
+     * @return Returns the results.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun read(input: InputStream): BenchmarkResults {
+        val buffered = if (input.markSupported()) input else BufferedInputStream(input)
+        buffered.mark(Int.SIZE_BYTES)
+        val data = DataInputStream(buffered)
+        if (!hasMagic(data)) {
+            buffered.reset()
+            return mapper.readValue(buffered, BenchmarkResults::class.java)
+        }
+
+        val header = readHeader(data)
+        val blocks = header.blocks.map { block ->
+            val content = ByteArray(block.length)
+            data.readFully(content)
+            MeasurementStore.readFrom(inflate(ByteArrayInputStream(content)))
+        }
+        return header.readResults(blocks)
+    }
+
+    /**
+     * Reads results written in either format from a file. A binary file is memory mapped, and the raw measurements
+     * are only decoded when they are first used, so the statistics of a large file can be read cheaply. A JSON file
+     * is read in full.
+     *
+     * @param file The file to read.
+     * @return Returns the results.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun read(file: File): BenchmarkResults = open(file).first
+
+    /**
+     * Reads results from a file like [read], along with a handle which releases the file. Closing it decodes the raw
+     * measurements which haven't been used yet and unmaps the file, rather than leaving it mapped (and, on Windows,
+     * locked) until the mapping is garbage collected.
+     *
+     * @param file The file to read.
+     * @return Returns the results, and the handle releasing the file.
+     */
+    @Throws(IOException::class)
+    internal fun open(file: File): Pair<BenchmarkResults, Closeable> {
+        val buffer = FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+        }
+        val data = DataInputStream(ByteBufferInputStream(buffer.duplicate()))
+        if (!hasMagic(data)) {
+            unmap(buffer)
+            return file.inputStream().use { read(it) } to Closeable {}
+        }
+
+        val header = readHeader(data)
+        var position = buffer.capacity() - data.available()
+        val blocks = header.blocks.map { block ->
+            val start = position
+            position += block.length
+            MeasurementStore.lazy(block.forks, block.samples) {
+                val content = buffer.duplicate()
+                (content as Buffer).limit(start + block.length).position(start)
+                MeasurementStore.readFrom(inflate(ByteBufferInputStream(content)))
+            }
+        }
+        return header.readResults(blocks) to Closeable {
+            blocks.forEach { it.load() }
+            unmap(buffer)
+        }
+    }
+
+    /**
+     * Releases a mapping straight away. This relies on an internal API available since Java 9; where it can't be used,
+     * the mapping is released once the buffer is garbage collected. The buffer must not be used afterwards.
+     */
+    private fun unmap(buffer: MappedByteBuffer) {
+        try {
+            val unsafeClass = Class.forName("sun.misc.Unsafe")
+            val unsafe = unsafeClass.getDeclaredField("theUnsafe").apply { isAccessible = true }.get(null)
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer::class.java).invoke(unsafe, buffer)
+        } catch (e: ReflectiveOperationException) {
+            // left to the garbage collector
+        }
+    }
+
+    private fun hasMagic(data: DataInputStream) = try {
+        data.readInt() == MAGIC
+    } catch (e: IOException) {
+        false
+    }
+
+    private fun readHeader(data: DataInputStream): Header {
+        val version = data.readInt()
+        if (version != VERSION)
+            throw IOException("Unsupported results file version $version")
+
+        val json = ByteArray(data.readInt())
+        data.readFully(json)
+        val blocks = List(data.readInt()) { Block(data.readInt(), data.readInt(), data.readInt()) }
+        return Header(json, blocks)
+    }
+
+    private fun writeBinary(results: BenchmarkResults, output: OutputStream) {
+        val blocks = ArrayList<MeasurementStore>()
+        val json = mapper.writer()
+                .withAttribute(MEASUREMENT_BLOCKS, blocks)
+                .writeValueAsBytes(results)
+
+        val deflater = Deflater(Deflater.BEST_SPEED)
+        try {
+            val metadata = deflate(deflater) { it.write(json) }
+            val content = blocks.map { block -> deflate(deflater) { block.writeTo(it) } }
+
+            val data = DataOutputStream(NonClosingOutputStream(output))
+            data.writeInt(MAGIC)
+            data.writeInt(VERSION)
+            data.writeInt(metadata.size)
+            data.write(metadata)
+            data.writeInt(blocks.size)
+            blocks.forEachIndexed { i, block ->
+                data.writeInt(content[i].size)
+                data.writeInt(block.size)
+                data.writeInt(block.sampleCount)
+            }
+            content.forEach { data.write(it) }
+            data.flush()
+        } finally {
+            deflater.end()
+        }
+    }
+
+    private fun deflate(deflater: Deflater, writer: (DataOutputStream) -> Unit): ByteArray {
+        deflater.reset()
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(DeflaterOutputStream(bytes, deflater, 1 shl 16)).use(writer)
+        return bytes.toByteArray()
+    }
+
+    private fun inflate(input: InputStream) = DataInputStream(BufferedInputStream(InflaterInputStream(input)))
+
+    private class Block(val length: Int, val forks: Int, val samples: Int)
+
+    private class Header(private val json: ByteArray, val blocks: List<Block>) {
+        fun readResults(measurements: List<MeasurementStore>): BenchmarkResults = mapper.readerFor(BenchmarkResults::class.java)
+                .withAttribute(MEASUREMENT_BLOCKS, measurements)
+                .readValue<BenchmarkResults>(inflate(ByteArrayInputStream(json)) as InputStream)
+    }
+
+    private class ByteBufferInputStream(private val buffer: ByteBuffer) : InputStream() {
+        override fun read() = if (buffer.hasRemaining()) buffer.get().toInt() and 0xFF else -1
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (len == 0)
+                return 0
+            if (!buffer.hasRemaining())
+                return -1
+            val count = minOf(len, buffer.remaining())
+            buffer.get(b, off, count)
+            return count
+        }
+
+        override fun available() = buffer.remaining()
+    }
+
+    private class NonClosingOutputStream(private val output: OutputStream) : OutputStream() {
+        override fun write(b: Int) = output.write(b)
+        override fun write(b: ByteArray, off: Int, len: Int) = output.write(b, off, len)
+        override fun flush() = output.flush()
+        override fun close() = output.flush()
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.rchargel.build.benchmark.results
+
+import com.fasterxml.jackson.annotation.JsonIgnore
+import com.github.rchargel.build.common.DistributionStatistics
+import org.apache.commons.lang3.StringUtils.EMPTY
+import org.openjdk.jmh.results.Result
+
+/**
+ * A secondary result of a benchmark, such as the allocation rate per operation measured by JMH's GC profiler.
+ *
+ * @property scoreUnits The units of the score
+ * @property score The score JMH reports for the metric, averaged over the repetitions merged into the result
+ * @property distributionStatistics The statistics of the metric's score in each measurement iteration, if the profiler
+ * reports it per iteration
+ * @property repetitions The number of repetitions merged into the result
+ * @property description The textual output of a profiler which reports no score, such as the stack profiler
+ * @property baselineScore The score of the baseline
+ * @property baselineDistributionStatistics The statistics of the baseline
+ */
+data class SecondaryResult(
+        val scoreUnits: String = EMPTY,
+        val score: Double = Double.NaN,
+        val distributionStatistics: DistributionStatistics = DistributionStatistics(),
+        val repetitions: Int = 1,
+        val description: String? = null,
+        val baselineScore: Double? = null,
+        val baselineDistributionStatistics: DistributionStatistics? = null
+) {
+    /**
+     * The ratio of the score to the baseline's, if there is a baseline with a non zero score.
+     */
+    @get:JsonIgnore
+    val ratio: Double?
+        get() = baselineScore?.let { if (it == 0.0 || it.isNaN() || score.isNaN()) null else score / it }
+
+    /**
+     * The difference of the means, in baseline standard deviations, if the baseline has a spread.
+     */
+    @get:JsonIgnore
+    val zScore: Double?
+        get() = baselineDistributionStatistics?.let {
+            if (it.count < 2 || distributionStatistics.count == 0L || it.standardDeviation == 0.0) null
+            else (distributionStatistics.mean - it.mean) / it.standardDeviation
+        }
+
+    fun merge(other: SecondaryResult) = SecondaryResult(
+            scoreUnits = scoreUnits,
+            score = when {
+                score.isNaN() -> other.score
+                other.score.isNaN() -> score
+                else -> (score * repetitions + other.score * other.repetitions) / (repetitions + other.repetitions)
+            },
+            distributionStatistics = DistributionStatistics.merge(distributionStatistics, other.distributionStatistics),
+            repetitions = repetitions + other.repetitions,
+            description = other.description ?: description
+    )
+
+    fun compareWithBaseline(baseline: SecondaryResult?) = copy(
+            baselineScore = baseline?.score,
+            baselineDistributionStatistics = baseline?.distributionStatistics
+    )
+
+    /**
+     * @return Returns a short description of the score and its change from the baseline.
+     */
+    fun describe(): String {
+        if (score.isNaN())
+            return description.orEmpty()
+        val value = "%.4f %s".format(score, scoreUnits).trim()
+        return ratio?.let { "$value (× %.3f)".format(it) } ?: value
+    }
+
+    companion object {
+        /**
+         * Creates the secondary results of a benchmark.
+         *
+         * @param aggregated The secondary results JMH aggregated over every iteration, by label
+         * @param iterations The secondary results of each measurement iteration, by label
+         * @return Returns the secondary results, by label.
+         */
+        @JvmStatic
+        fun of(aggregated: Map<String, Result<*>>, iterations: List<Map<String, Result<*>>>): Map<String, SecondaryResult> =
+                aggregated.entries.associate { (label, result) ->
+                    val stats = iterations.mapNotNull { it[label]?.getScore() }
+                            .filterNot { it.isNaN() }
+                            .fold(DistributionStatistics()) { s, x -> DistributionStatistics.aggregate(s, x) }
+                    label to SecondaryResult(
+                            scoreUnits = result.getScoreUnit().orEmpty(),
+                            score = result.getScore(),
+                            distributionStatistics = stats,
+                            description = if (result.getScore().isNaN()) result.extendedInfo()?.trim() else null
+                    )
+                }
+
+        /**
+         * Merges two sets of secondary results, by label.
+         */
+        @JvmStatic
+        fun merge(first: Map<String, SecondaryResult>, second: Map<String, SecondaryResult>): Map<String, SecondaryResult> =
+                (first.keys + second.keys).associateWith { label ->
+                    val a = first[label]
+                    val b = second[label]
+                    if (a != null && b != null) a.merge(b) else a ?: b!!
+                }
+    }
+}
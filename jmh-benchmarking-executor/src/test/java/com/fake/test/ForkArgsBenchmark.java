@@ -0,0 +1,43 @@
+package com.fake.test;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@Fork(value = 1, jvmArgsAppend = "-Dfake.fork.argument=fork")
+@Threads(1)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 1, time = 50, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 3, time = 50, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ForkArgsBenchmark {
+    @Benchmark
+    public int benchmarkLength(final Data data) {
+        return data.argument.length();
+    }
+
+    @State(Scope.Thread)
+    public static class Data {
+        String argument;
+
+        /**
+         * Fails the benchmark unless the forked JVM was started with the annotated arguments.
+         */
+        @Setup
+        public void setup() {
+            argument = System.getProperty("fake.fork.argument");
+            if (argument == null)
+                throw new IllegalStateException("The @Fork(jvmArgsAppend) arguments were not passed to the fork");
+        }
+    }
+}
@@ -1,15 +1,39 @@
 package com.github.rchargel.build.benchmark;
 
 import com.github.rchargel.build.benchmark.results.BenchmarkResults;
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult;
+import com.github.rchargel.build.benchmark.results.CheckpointJournal;
+import com.github.rchargel.build.benchmark.results.SecondaryResult;
 
+import com.fake.test.BudgetedBenchmark;
+import com.fake.test.ForkArgsBenchmark;
 import com.fake.test.SimpleBenchmark;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.util.Utils;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class CanExecuteBenchmarkTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void canExecuteBenchmark() throws Exception {
         final BenchmarkResults benchmarkResults = new BenchmarkExecutor()
@@ -22,5 +46,137 @@ public class CanExecuteBenchmarkTest {
 
         assertEquals(1, compare.getResults().size());
         assertEquals(10, compare.getResults().iterator().next().getBaselineAggregatedMeasurements().size());
+        assertNull(compare.getResults().iterator().next().getCpuSet());
+    }
+
+    @Test
+    public void canExecuteBenchmarksConcurrently() throws Exception {
+        final BenchmarkResults benchmarkResults = new BenchmarkExecutor()
+                .maxConcurrentRunners(2)
+                .executeBenchmarks(0.2, 2, Stream.of(SimpleBenchmark.class));
+        assertEquals(1, benchmarkResults.getResults().size());
+        assertEquals(2, benchmarkResults.getResults().iterator().next().getRawMeasurements().size());
+        assertEquals(10, benchmarkResults.getResults().iterator().next().getAggregatedMeasurements().size());
+        assertNotNull(benchmarkResults.getResults().iterator().next().getCpuSet());
+    }
+
+    @Test
+    public void canStopRepeatingOnceConverged() throws Exception {
+        final BenchmarkResults converged = new BenchmarkExecutor()
+                .executeBenchmarks(0.2, RepetitionPolicy.adaptive(3, 1000, RepetitionPolicy.Statistic.MEAN, 0.99), Stream.of(SimpleBenchmark.class));
+        assertEquals(1, converged.getResults().iterator().next().getNumberOfTestRepetitions());
+
+        final BenchmarkResults unconverged = new BenchmarkExecutor()
+                .maxConcurrentRunners(2)
+                .executeBenchmarks(0.2, RepetitionPolicy.adaptive(2, 1e-12, RepetitionPolicy.Statistic.MEDIAN, 0.99), Stream.of(SimpleBenchmark.class));
+        assertEquals(2, unconverged.getResults().iterator().next().getNumberOfTestRepetitions());
+        assertEquals(10, unconverged.getResults().iterator().next().getAggregatedMeasurements().size());
+    }
+
+    @Test
+    public void canBatchClassesWithTheSameSettings() throws Exception {
+        final BenchmarkExecutor executor = new BenchmarkExecutor().batchClasses(true);
+        final List<List<Class<?>>> batches = executor.batch(Stream.of(SimpleBenchmark.class, BatchedBenchmark.class, CpuSetTest.class));
+        assertEquals(Arrays.asList(Arrays.asList(SimpleBenchmark.class, CpuSetTest.class), Collections.singletonList(BatchedBenchmark.class)), batches);
+        assertEquals(3, new BenchmarkExecutor().batch(Stream.of(SimpleBenchmark.class, BatchedBenchmark.class, CpuSetTest.class)).size());
+
+        final Pattern include = Pattern.compile(BenchmarkExecutor.include(batches.get(0)));
+        assertTrue(include.matcher("com.fake.test.SimpleBenchmark.benchmarkSum").find());
+        assertTrue(include.matcher(CpuSetTest.class.getName() + ".canCalculateSize").find());
+        assertFalse(include.matcher("com.fake.test.SimpleBenchmarkTwo.benchmarkSum").find());
+
+        final BenchmarkResults benchmarkResults = executor.executeBenchmarks(0.2, 1, Stream.of(SimpleBenchmark.class, CpuSetTest.class));
+        assertEquals(1, benchmarkResults.getResults().size());
+        assertEquals("SimpleBenchmark", benchmarkResults.getResults().iterator().next().getClassName());
+    }
+
+    @Test
+    public void canResumeFromCheckpointJournal() throws Exception {
+        final File file = folder.newFile("benchmark.journal");
+        final BenchmarkResults benchmarkResults = new BenchmarkExecutor()
+                .checkpointJournal(CheckpointJournal.create(file))
+                .executeBenchmarks(0.2, 2, Stream.of(SimpleBenchmark.class));
+
+        final CheckpointJournal journal = CheckpointJournal.resume(file);
+        assertEquals(2, journal.getResumedResultCount());
+        final String run = BenchmarkExecutor.include(Collections.singletonList(SimpleBenchmark.class));
+        assertTrue(journal.progress(run, 0).getComplete());
+        assertEquals(5, journal.progress(run, 1).getResults().get(0).getRawMeasurements().get(0).size());
+
+        final BenchmarkResults resumed = new BenchmarkExecutor()
+                .checkpointJournal(journal)
+                .executeBenchmarks(0.2, 2, Stream.of(SimpleBenchmark.class));
+        assertEquals(benchmarkResults.getResults().iterator().next().getRawMeasurements(),
+                resumed.getResults().iterator().next().getRawMeasurements());
+        assertEquals(2, resumed.getResults().iterator().next().getNumberOfTestRepetitions());
+    }
+
+    @Fork(2)
+    private static class BatchedBenchmark {
+    }
+
+    @Test
+    public void canCaptureProfilerResults() throws Exception {
+        final BenchmarkResults benchmarkResults = new BenchmarkExecutor()
+                .profilers(Collections.singletonList("gc"))
+                .executeBenchmarks(0.2, 1, Stream.of(SimpleBenchmark.class));
+        final Map<String, SecondaryResult> secondaryResults = benchmarkResults.getResults().iterator().next().getSecondaryResults();
+        final SecondaryResult allocation = secondaryResults.entrySet().stream()
+                .filter(e -> e.getKey().endsWith("gc.alloc.rate.norm"))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertEquals("B/op", allocation.getScoreUnits());
+        assertEquals(5, allocation.getDistributionStatistics().getCount());
+    }
+
+    @Test
+    public void canCheckBudgets() throws Exception {
+        assertEquals(Collections.singletonMap("com.fake.test.BudgetedBenchmark.benchmarkProduct", 0.0),
+                BenchmarkExecutor.allocationBudgets(Collections.singletonList(BudgetedBenchmark.class)));
+        assertTrue(BenchmarkExecutor.allocationBudgets(Collections.singletonList(SimpleBenchmark.class)).isEmpty());
+        final BenchmarkTestResult result = new BenchmarkExecutor()
+                .executeBenchmarks(0.2, 1, Stream.of(BudgetedBenchmark.class))
+                .getResults().iterator().next();
+        assertEquals(0.0, result.getAllocationBudget(), 0.0);
+        assertNotNull(result.getAllocationPerOperation());
+        assertFalse(result.getExceedsAllocationBudget());
+        assertEquals(1, result.getBudgetChecks().size());
+        assertFalse(result.getExceedsPerformanceBudget());
+    }
+
+    @Test
+    public void canRunEachJvmProfile() throws Exception {
+        final BenchmarkResults benchmarkResults = new BenchmarkExecutor()
+                .jvmProfiles(Arrays.asList(new JvmProfile("serial", Collections.singletonList("-XX:+UseSerialGC"), Utils.getCurrentJvm()), JvmProfile.parse("parallel", " -XX:+UseParallelGC  -Xmx256m")))
+                .executeBenchmarks(0.2, 1, Stream.of(SimpleBenchmark.class));
+        assertEquals(Arrays.asList("serial", "parallel"), benchmarkResults.getJvmProfiles());
+        assertEquals(System.getProperty("java.version"), benchmarkResults.getResults().iterator().next().getJdkVersion());
+        assertEquals(2, benchmarkResults.getResults().stream().map(BenchmarkTestResult::getKey).distinct().count());
+        assertEquals(1, benchmarkResults.getResults().stream().map(BenchmarkTestResult::getKeyAcrossProfiles).distinct().count());
+        assertEquals(Arrays.asList("-XX:+UseParallelGC", "-Xmx256m"), JvmProfile.parse("parallel", " -XX:+UseParallelGC  -Xmx256m").getJvmArgs());
+    }
+
+    @Test
+    public void keepsForkArgumentsWithJvmProfile() throws Exception {
+        final JvmProfile profile = JvmProfile.parse("profiled", "-Dfake.profile.argument=profile");
+        assertEquals(Arrays.asList("-Dfake.fork.argument=fork", "-Dfake.profile.argument=profile"),
+                BenchmarkExecutor.jvmArgsAppend(ForkArgsBenchmark.class, profile));
+        assertEquals(Collections.singletonList("-Dfake.profile.argument=profile"), BenchmarkExecutor.jvmArgsAppend(SimpleBenchmark.class, profile));
+
+        final BenchmarkResults benchmarkResults = new BenchmarkExecutor()
+                .jvmProfiles(Collections.singletonList(profile))
+                .executeBenchmarks(0.2, 1, Stream.of(ForkArgsBenchmark.class));
+        // the fixture fails in setup, and so has no results, unless its own @Fork arguments reached the fork
+        assertEquals(Collections.singletonList("com.fake.test.ForkArgsBenchmark.benchmarkLength"),
+                benchmarkResults.getResults().stream().map(BenchmarkTestResult::getBenchmark).distinct().collect(Collectors.toList()));
+        assertEquals(Collections.singletonList("profiled"), benchmarkResults.getJvmProfiles());
+    }
+
+    @Test
+    public void canDiscoverBenchmarksFromBenchmarkList() {
+        assertEquals(new HashSet<>(Arrays.asList(BudgetedBenchmark.class, ForkArgsBenchmark.class, SimpleBenchmark.class)), new BenchmarkExecutor()
+                .findBenchmarkClasses()
+                .collect(Collectors.toSet()));
     }
 }
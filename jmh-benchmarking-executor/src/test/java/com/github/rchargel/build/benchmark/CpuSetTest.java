@@ -0,0 +1,59 @@
+package com.github.rchargel.build.benchmark;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CpuSetTest {
+    @Test
+    public void canPartitionProcessors() {
+        assertEquals(asList("0-7", "8-15", "16-23", "24-31"), toStrings(CpuSet.partition(32, 4)));
+        assertEquals(asList("0-3", "4-6"), toStrings(CpuSet.partition(7, 2)));
+        assertEquals(asList("0", "1"), toStrings(CpuSet.partition(2, 8)));
+        assertEquals(asList("0-3"), toStrings(CpuSet.partition(4, 0)));
+    }
+
+    @Test
+    public void canPartitionAllowedProcessors() {
+        assertEquals(asList("4-5", "6-7"), toStrings(CpuSet.partition(asList(4, 5, 6, 7), 2)));
+        assertEquals(asList("2-3,8", "9-10"), toStrings(CpuSet.partition(asList(2, 3, 8, 9, 10), 2)));
+        assertEquals(asList("12", "14", "16"), toStrings(CpuSet.partition(asList(12, 14, 16), 4)));
+    }
+
+    @Test
+    public void canParseCpuList() {
+        assertEquals(asList(0, 1, 2, 3, 8, 10, 11), CpuSet.parseCpuList("0-3,8,10-11\n"));
+        assertEquals(asList(5), CpuSet.parseCpuList("\t5"));
+    }
+
+    @Test
+    public void canFindAllowedProcessors() {
+        assertFalse(CpuSet.allowedCpus().isEmpty());
+    }
+
+    @Test
+    public void reusesPinnedJvmUntilDeleted() {
+        final CpuSet cpuSet = CpuSet.partition(1, 1).get(0);
+        final Optional<String> first = cpuSet.createPinnedJvm("/usr/bin/java");
+        assertEquals(first, cpuSet.createPinnedJvm("/usr/bin/java"));
+        cpuSet.deletePinnedJvms();
+        first.ifPresent(wrapper -> assertFalse(new File(wrapper).exists()));
+    }
+
+    @Test
+    public void canCalculateSize() {
+        assertEquals(8, CpuSet.partition(32, 4).get(0).getSize());
+        assertEquals(1, CpuSet.partition(1, 4).get(0).getSize());
+    }
+
+    private static List<String> toStrings(final List<CpuSet> cpuSets) {
+        return cpuSets.stream().map(CpuSet::toString).collect(Collectors.toList());
+    }
+}
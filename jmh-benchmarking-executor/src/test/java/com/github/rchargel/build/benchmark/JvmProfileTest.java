@@ -0,0 +1,43 @@
+package com.github.rchargel.build.benchmark;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class JvmProfileTest {
+    private static Map<String, String> jdks() {
+        final Map<String, String> jvmsByJdkVersion = new LinkedHashMap<>();
+        jvmsByJdkVersion.put("17", "/jdk-17/bin/java");
+        jvmsByJdkVersion.put("11", "/jdk-11/bin/java");
+        return jvmsByJdkVersion;
+    }
+
+    @Test
+    public void canCrossProfilesWithJdks() {
+        final List<JvmProfile> profiles = JvmProfile.forEachJdk(jdks(),
+                Arrays.asList(JvmProfile.parse("g1", "-XX:+UseG1GC"), JvmProfile.parse("parallel", "-XX:+UseParallelGC")));
+        assertEquals(Arrays.asList("jdk-17 g1", "jdk-17 parallel", "jdk-11 g1", "jdk-11 parallel"),
+                profiles.stream().map(JvmProfile::getName).collect(Collectors.toList()));
+        assertEquals(new JvmProfile("jdk-11 parallel", Collections.singletonList("-XX:+UseParallelGC"), "/jdk-11/bin/java"), profiles.get(3));
+    }
+
+    @Test
+    public void canRunEachJdkWithoutProfiles() {
+        assertEquals(Arrays.asList(new JvmProfile("jdk-17", Collections.emptyList(), "/jdk-17/bin/java"),
+                new JvmProfile("jdk-11", Collections.emptyList(), "/jdk-11/bin/java")),
+                JvmProfile.forEachJdk(jdks(), Collections.emptyList()));
+    }
+
+    @Test
+    public void keepsProfilesWithoutJdks() {
+        final List<JvmProfile> profiles = Collections.singletonList(JvmProfile.parse("g1", "-XX:+UseG1GC"));
+        assertEquals(profiles, JvmProfile.forEachJdk(Collections.emptyMap(), profiles));
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.rchargel.build.benchmark;
+
+import com.github.rchargel.build.benchmark.RepetitionPolicy.Statistic;
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RepetitionPolicyTest {
+    private static BenchmarkTestResult result(final double... measurements) {
+        return BenchmarkTestResult.builder("com.test.Benchmark.method").mode("thrpt").addRawMeasurement(measurements).build();
+    }
+
+    @Test
+    public void fixedPolicyNeverConverges() {
+        final RepetitionPolicy policy = RepetitionPolicy.fixed(3);
+        assertFalse(policy.isAdaptive());
+        assertEquals(3, policy.getMaxRepetitions());
+        assertFalse(policy.isConverged(result(10, 10, 10, 10)));
+    }
+
+    @Test
+    public void canDescribePolicy() {
+        assertEquals("a single repetition", RepetitionPolicy.fixed(1).toString());
+        assertEquals("3 repetitions", RepetitionPolicy.fixed(3).toString());
+    }
+
+    @Test
+    public void canConvergeOnTheMean() {
+        final RepetitionPolicy policy = RepetitionPolicy.adaptive(5, 0.05, Statistic.MEAN, 0.99);
+        assertTrue(policy.isAdaptive());
+        assertFalse(policy.isConverged(result(100, 101)));
+        assertFalse(policy.isConverged(result(50, 150, 80, 120)));
+        assertTrue(policy.isConverged(result(100, 101, 99, 100, 102, 98)));
+        assertEquals(0.0, policy.relativeError(result(10, 10, 10)), 0.0);
+    }
+
+    @Test
+    public void mergingNarrowsTheInterval() {
+        final RepetitionPolicy policy = RepetitionPolicy.adaptive(5, 0.08, Statistic.MEAN, 0.99);
+        final BenchmarkTestResult first = result(90, 110, 95, 105);
+        final BenchmarkTestResult merged = first.merge(result(92, 108, 97, 103)).merge(result(94, 106, 99, 101));
+        assertFalse(policy.isConverged(first));
+        assertTrue(policy.relativeError(merged) < policy.relativeError(first));
+        assertTrue(policy.isConverged(merged));
+    }
+
+    @Test
+    public void canConvergeOnTheMedian() {
+        final RepetitionPolicy policy = RepetitionPolicy.adaptive(5, 0.05, Statistic.MEDIAN, 0.99);
+        final double[] measurements = new double[101];
+        for (int i = 0; i < measurements.length; i++)
+            measurements[i] = 100 + (i % 5);
+        measurements[0] = 10_000;
+        assertTrue(policy.isConverged(result(measurements)));
+        assertFalse(RepetitionPolicy.adaptive(5, 0.05, Statistic.MEAN, 0.99).isConverged(result(measurements)));
+    }
+}
@@ -2,8 +2,13 @@ package com.github.rchargel.build.benchmark
 
 import com.fake.test.SimpleBenchmark
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.rchargel.build.benchmark.results.BaselineStore
 import com.github.rchargel.build.benchmark.results.BenchmarkResults
+import com.github.rchargel.build.benchmark.results.ResultsFiles
+import com.github.rchargel.build.benchmark.results.ResultsFormat
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
 import org.junit.ClassRule
 import org.junit.Test
 import org.junit.rules.TemporaryFolder
@@ -15,13 +20,15 @@ class CanSerializeReportTest {
         @ClassRule
         @JvmField
         val temporaryFolder = TemporaryFolder()
+
+        private val result by lazy {
+            BenchmarkExecutor().executeBenchmarks(2.0, 1,
+                    listOf(SimpleBenchmark::class.java).stream() as Stream<Class<*>>)
+        }
     }
 
     @Test
     fun canSerializeReport() {
-        val result = BenchmarkExecutor().executeBenchmarks(2.0, 1,
-                listOf(SimpleBenchmark::class.java).stream() as Stream<Class<*>>)
-
         val file = temporaryFolder.newFile()
         val objMapper = ObjectMapper()
 
@@ -30,4 +37,45 @@ class CanSerializeReportTest {
         val deserialized = file.reader(Charsets.UTF_8).use { objMapper.readValue(it, BenchmarkResults::class.java) }
         assertEquals(result, deserialized)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun canSerializeBinaryReport() {
+        val jsonFile = temporaryFolder.newFile()
+        val binaryFile = temporaryFolder.newFile()
+
+        jsonFile.outputStream().use { ResultsFiles.write(result, ResultsFormat.JSON, it) }
+        binaryFile.outputStream().use { ResultsFiles.write(result, ResultsFormat.BINARY, it) }
+
+        assertEquals(result, binaryFile.inputStream().use { ResultsFiles.read(it) })
+        assertEquals(result, jsonFile.inputStream().use { ResultsFiles.read(it) })
+        assertTrue(binaryFile.length() < jsonFile.length())
+    }
+
+    @Test
+    fun canLazilyReadMappedBaseline() {
+        val file = temporaryFolder.newFile()
+        file.outputStream().use { ResultsFiles.write(result, ResultsFormat.BINARY, it) }
+
+        val baseline = BaselineStore.open(file)
+        val comparison = result.compareToBaseline(baseline, true)
+        val compared = comparison.results!!.first()
+        val baselineMeasurements = compared.baselineMeasurements!!
+        assertEquals(baseline[compared.key]?.distributionStatistics, compared.baselineDistributionStatistics)
+        assertTrue(compared.hasBaselineComparison)
+        assertFalse(baselineMeasurements.isLoaded)
+
+        assertEquals(result.results!!.first().rawMeasurements, baselineMeasurements)
+        assertTrue(baselineMeasurements.isLoaded)
+    }
+
+    @Test
+    fun canCloseMappedBaseline() {
+        val file = temporaryFolder.newFile()
+        file.outputStream().use { ResultsFiles.write(result, ResultsFormat.BINARY, it) }
+
+        val compared = BaselineStore.open(file).use { result.compareToBaseline(it, true) }.results!!.first()
+        assertTrue(compared.baselineMeasurements!!.isLoaded)
+        assertTrue(file.delete())
+        assertEquals(result.results!!.first().rawMeasurements, compared.baselineMeasurements)
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.rchargel.build.benchmark.history
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Test
+
+class ChangePointsTest {
+    private val noise = doubleArrayOf(0.1, -0.2, 0.15, -0.05, 0.2, -0.1, 0.05, -0.15, 0.1, 0.0)
+
+    @Test
+    fun findsShiftsInLevel() {
+        val values = DoubleArray(30) { noise[it % noise.size] + if (it < 10) 10.0 else if (it < 20) 12.0 else 9.0 }
+        assertArrayEquals(intArrayOf(10, 20), ChangePoints.detect(values))
+        assertArrayEquals(DoubleArray(10) { 9.0 }, ChangePoints.segmentMeans(values, intArrayOf(10, 20)).copyOfRange(20, 30), 0.01)
+    }
+
+    @Test
+    fun ignoresNoise() {
+        val values = DoubleArray(30) { 10.0 + noise[it % noise.size] }
+        assertArrayEquals(IntArray(0), ChangePoints.detect(values))
+        assertArrayEquals(IntArray(0), ChangePoints.detect(doubleArrayOf(1.0, 2.0)))
+    }
+}
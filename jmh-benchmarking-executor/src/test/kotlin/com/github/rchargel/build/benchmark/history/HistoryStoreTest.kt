@@ -0,0 +1,123 @@
+package com.github.rchargel.build.benchmark.history
+
+import com.github.rchargel.build.benchmark.results.BenchmarkResults
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class HistoryStoreTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private fun run(vararg means: Double, cpuSpeed: Long = 1000) = BenchmarkResults(
+            results = means.mapIndexed { i, mean ->
+                BenchmarkTestResult.builder("com.fake.package.MyTest.method$i")
+                        .mode("Average")
+                        .scoreUnits("ms")
+                        .addRawMeasurement(listOf(mean - 1, mean, mean + 1))
+                        .medianMeasurement(mean)
+                        .mean(mean)
+                        .build()
+            },
+            cpuSpeedInHertz = cpuSpeed
+    )
+
+    @Test
+    fun canReadLastRuns() {
+        val directory = temporaryFolder.newFolder()
+        val store = HistoryStore(directory, 4)
+        for (run in 1..5)
+            store.append(run(run.toDouble(), run * 10.0), run.toLong())
+        store.append(run(100.0, 100.0, cpuSpeed = 2000), 6)
+
+        val reopened = HistoryStore(directory, 4)
+        assertEquals(4, reopened.seriesCount)
+        assertEquals(12L, reopened.recordCount)
+
+        val key = run(0.0).results!!.first().key
+        val fingerprint = run(0.0).hardwareFingerprint
+        val lastRuns = reopened.lastRuns(fingerprint, key, 3)
+        assertEquals(listOf(3L, 4L, 5L), lastRuns.map { it.timestamp })
+        assertEquals(listOf(3.0, 4.0, 5.0), lastRuns.map { it.mean })
+        assertEquals(5, reopened.lastRuns(fingerprint, key).size)
+        assertEquals(1, reopened.lastRuns(run(0.0, cpuSpeed = 2000).hardwareFingerprint, key).size)
+        assertTrue(reopened.lastRuns(fingerprint, "unknown").isEmpty())
+    }
+
+    @Test
+    fun appendsToTheLatestIndex() {
+        val directory = temporaryFolder.newFolder()
+        val first = HistoryStore(directory, 4)
+        val second = HistoryStore(directory, 4)
+        first.append(run(1.0), 1)
+        second.append(run(2.0, 20.0), 2)
+        first.append(run(3.0, 30.0, cpuSpeed = 2000), 3)
+
+        val reopened = HistoryStore(directory, 4)
+        assertEquals(4, reopened.seriesCount)
+        assertEquals(5L, reopened.recordCount)
+        val results = run(0.0, 0.0)
+        assertEquals(listOf(1.0, 2.0), reopened.lastRuns(results.hardwareFingerprint, results.results!!.first().key).map { it.mean })
+        assertEquals(listOf(20.0), reopened.lastRuns(results.hardwareFingerprint, results.results!!.last().key).map { it.mean })
+    }
+
+    @Test
+    fun canReadLastRunsOfEachTest() {
+        val store = HistoryStore(temporaryFolder.newFolder(), 4)
+        for (run in 1..5)
+            store.append(run(run.toDouble(), run * 10.0), run.toLong())
+
+        val results = run(0.0, 0.0, 0.0)
+        val keys = results.results!!.map { it.key }
+        val lastRuns = store.lastRuns(results, 3)
+        assertEquals(setOf(keys[0], keys[1]), lastRuns.keys)
+        assertEquals(listOf(30.0, 40.0, 50.0), lastRuns.getValue(keys[1]).map { it.mean })
+        assertEquals(store.trends(results, 3).mapValues { it.value.means.toList() },
+                HistoryStore.trends(results, lastRuns).mapValues { it.value.means.toList() })
+
+        val withRun = HistoryStore.withRun(lastRuns, results, 6, 3)
+        assertEquals(listOf(4L, 5L, 6L), withRun.getValue(keys[0]).map { it.timestamp })
+        assertEquals(listOf(6L), withRun.getValue(keys[2]).map { it.timestamp })
+    }
+
+    @Test
+    fun canCompareToRollingBaseline() {
+        val store = HistoryStore(temporaryFolder.newFolder())
+        for (run in 1..3)
+            store.append(run(10.0), run.toLong())
+        for (run in 4..6)
+            store.append(run(20.0), run.toLong())
+
+        val results = run(20.0, 5.0)
+        val baseline = store.rollingBaseline(results, 10)
+        val compared = results.compareToBaseline(baseline, true).results!!.toList()
+
+        // only the runs since the change in level make up the baseline
+        assertEquals(20.0, compared[0].baselineMean!!, 1e-9)
+        assertEquals(0.0, compared[0].zScore!!, 1e-9)
+        assertEquals(null, baseline[compared[1].key])
+        assertArrayEquals(intArrayOf(3), store.trend(results.hardwareFingerprint, compared[0].key).changePoints)
+    }
+
+    @Test
+    fun canCompact() {
+        val directory = temporaryFolder.newFolder()
+        val store = HistoryStore(directory, 4)
+        for (run in 1..10)
+            store.append(run(run.toDouble(), run.toDouble()), run.toLong())
+
+        assertFalse(store.compact(9))
+        assertTrue(store.compact(3))
+        assertEquals(6L, store.recordCount)
+        assertEquals(2, directory.listFiles { _, name -> name.startsWith("segment-") }!!.size)
+
+        val results = run(0.0)
+        val lastRuns = HistoryStore(directory, 4).lastRuns(results.hardwareFingerprint, results.results!!.first().key)
+        assertEquals(listOf(8L, 9L, 10L), lastRuns.map { it.timestamp })
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.rchargel.build.benchmark.regression
+
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+import kotlin.math.abs
+
+class RegressionDetectorTest {
+    private val methods = listOf(RegressionMethod.MANN_WHITNEY, RegressionMethod.BOOTSTRAP, RegressionMethod.E_DIVISIVE)
+
+    /** Two modes, at 10 (most of the time) and 20, with a few large outliers */
+    private fun bimodal(seed: Long, scale: Double = 1.0): List<Double> {
+        val random = Random(seed)
+        return List(400) {
+            val mode = if (random.nextInt(10) < 7) 10.0 else 20.0
+            val outlier = if (random.nextInt(50) == 0) 100.0 else 0.0
+            (mode + random.nextGaussian() * 0.5 + outlier) * scale
+        }
+    }
+
+    private fun result(measurements: List<Double>) = BenchmarkTestResult.builder("com.fake.package.MyTest.method")
+            .mode("Average")
+            .addRawMeasurement(measurements)
+            .mean(measurements.average())
+            .medianMeasurement(measurements.sorted()[measurements.size / 2])
+            .build()
+
+    private fun compare(current: List<Double>, baseline: List<Double>) = result(current).compareWithBaseline(result(baseline))
+
+    @Test
+    fun acceptsUnchangedResults() {
+        val result = compare(bimodal(1), bimodal(2))
+        for (method in methods) {
+            val verdict = method.detector(1.5).evaluate(result)!!
+            assertEquals(method, verdict.method)
+            assertFalse(verdict.describe(), verdict.changed)
+        }
+    }
+
+    @Test
+    fun detectsChangedResults() {
+        val result = compare(bimodal(1, 1.2), bimodal(2))
+        for (method in methods) {
+            val verdict = method.detector(1.5).evaluate(result)!!
+            assertTrue(verdict.describe(), verdict.changed)
+            assertEquals(1.2, verdict.medianRatio!!, 0.1)
+        }
+        val bootstrap = RegressionMethod.BOOTSTRAP.detector(1.5).evaluate(result)!!
+        assertTrue(bootstrap.lowerBound!! > 1.0)
+        val eDivisive = RegressionMethod.E_DIVISIVE.detector(1.5).evaluate(result)!!
+        assertTrue(abs(eDivisive.changePoint!!) < 40)
+    }
+
+    @Test
+    fun eDivisiveIgnoresShiftsWithinTheBaseline() {
+        // the start of the baseline is much slower than the rest of it, which is the same as the result
+        val baseline = bimodal(3, 2.0).take(40) + bimodal(2).drop(40)
+        val verdict = RegressionMethod.E_DIVISIVE.detector(1.5).evaluate(compare(bimodal(1), baseline))!!
+        assertFalse(verdict.describe(), verdict.changed)
+        assertTrue(verdict.changePoint!! >= 0)
+    }
+
+    @Test
+    fun ignoresChangesSmallerThanTheMinimumEffect() {
+        val result = compare(bimodal(1, 1.02), bimodal(1))
+        assertFalse(RegressionMethod.MANN_WHITNEY.detector(1.5, 0.01, 0.05).evaluate(result)!!.changed)
+    }
+
+    @Test
+    fun fallsBackToZScoreWithoutBaselineMeasurements() {
+        val baseline = result(bimodal(2))
+        val result = result(bimodal(1, 1.2)).compareWithBaseline(baseline).copy(baselineMeasurements = null)
+        assertEquals(RegressionMethod.Z_SCORE, RegressionMethod.BOOTSTRAP.detector(1.5).evaluate(result)!!.method)
+        assertNull(RegressionMethod.BOOTSTRAP.detector(1.5).evaluate(result(bimodal(1))))
+        assertNotNull(RegressionMethod.Z_SCORE.detector(1.5).evaluate(result))
+    }
+
+    @Test
+    fun energyStatisticMatchesDirectComputation() {
+        val random = Random(3)
+        val values = DoubleArray(40) { random.nextGaussian() + if (it >= 25) 2 else 0 }
+        val (split, statistic) = EnergyStatistics.bestSplit(values, EnergyStatistics.ranks(values), 2)
+
+        fun direct(tau: Int): Double {
+            val left = values.copyOf(tau)
+            val right = values.copyOfRange(tau, values.size)
+            fun mean(a: DoubleArray, b: DoubleArray, same: Boolean) =
+                    a.indices.sumByDouble { i -> b.indices.sumByDouble { j -> if (same && j <= i) 0.0 else abs(a[i] - b[j]) } } /
+                            (if (same) a.size * (a.size - 1) / 2.0 else a.size.toDouble() * b.size)
+            val energy = 2 * mean(left, right, false) - mean(left, left, true) - mean(right, right, true)
+            return left.size.toDouble() * right.size / values.size * energy
+        }
+
+        val expected = (2..values.size - 2).maxByOrNull { direct(it) }!!
+        assertEquals(expected, split)
+        assertEquals(direct(expected), statistic, 1e-9)
+        assertEquals(25, split)
+    }
+}
@@ -2,10 +2,20 @@ package com.github.rchargel.build.benchmark.report
 
 import com.fake.test.SimpleBenchmark
 import com.github.rchargel.build.benchmark.BenchmarkExecutor
+import com.github.rchargel.build.benchmark.history.BenchmarkTrend
+import com.github.rchargel.build.benchmark.history.HistoryRecord
+import com.github.rchargel.build.benchmark.results.BenchmarkResults
+import com.github.rchargel.build.benchmark.results.BenchmarkTestResult
+import com.github.rchargel.build.benchmark.results.SecondaryResult
 import com.github.rchargel.build.report.Messages
+import com.github.rchargel.build.report.chart.ImageFormat
 import com.github.rchargel.build.test.ClassLoaderHelper
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertTrue
 import org.junit.Test
+import java.io.StringWriter
 import java.util.*
+import java.util.concurrent.TimeUnit
 
 
 class BenchmarkReportTest {
@@ -32,4 +42,66 @@ class BenchmarkReportTest {
         assert(comparisonReport.projectVersion == null) { "No project version should exist" }
         assert(comparisonReport.tableOfContentsTitle == "Table of Contents") { "TOC title was ${comparisonReport.tableOfContentsTitle}" }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun canBuildReportWithJvmProfiles() {
+        fun result(profile: String, vararg measurements: Double) = BenchmarkTestResult.builder("com.fake.package.MyTest.method")
+                .mode("Average")
+                .scoreUnits("ms/op")
+                .addRawMeasurement(measurements.toList())
+                .minimum(measurements.first())
+                .firstQuarterMeasurement(measurements[1] - 0.5)
+                .medianMeasurement(measurements[1])
+                .mean(measurements.average())
+                .thirdQuarterMeasurement(measurements[1] + 0.5)
+                .maximum(measurements.last())
+                .jvmProfile(profile)
+                .vm("OpenJDK 64-Bit Server VM", "$profile+1", profile)
+                .build()
+
+        val writer = StringWriter()
+        BenchmarkReport.buildReport(BenchmarkResults(listOf(result("11.0.21", 4.0, 5.0, 6.0), result("17.0.9", 1.0, 2.0, 3.0))),
+                Messages.loadMessages("messages", Locale.US), ImageFormat.SVG)
+                .build()
+                .writeReportTo(writer)
+
+        assertTrue(writer.toString().contains("JVM Profiles"))
+        assertTrue(writer.toString().contains("Average [17.0.9]"))
+        assertTrue(writer.toString().contains("OpenJDK 64-Bit Server VM 17.0.9+1"))
+        assertTrue(writer.toString().contains("2.000 ms/op ± 0.000 (× 0.400)"))
+    }
+
+    @Test
+    fun canBuildReportWithTrends() {
+        fun result(name: String) = BenchmarkTestResult.builder("com.fake.package.MyTest.$name")
+                .mode("Average")
+                .scoreUnits("ms")
+                .addRawMeasurement(listOf(1.0, 2.0, 3.0))
+                .minimum(1.0)
+                .firstQuarterMeasurement(1.5)
+                .medianMeasurement(2.0)
+                .mean(2.0)
+                .thirdQuarterMeasurement(2.5)
+                .maximum(3.0)
+                .build()
+        val result = result("method").withPerformanceBudget(2.5, 0.0, 0.0, TimeUnit.MILLISECONDS)
+        val other = result("other").copy(secondaryResults = mapOf("gc.alloc.rate.norm" to SecondaryResult("B/op", 24.0)),
+                allocationBudget = 16.0)
+        val trend = BenchmarkTrend((1..8).map { HistoryRecord(it.toLong(), 1, if (it < 5) 1.0 else 2.0) })
+
+        val writer = StringWriter()
+        BenchmarkReport.buildReport(BenchmarkResults(listOf(result, other)), Messages.loadMessages("messages", Locale.US),
+                ImageFormat.SVG, mapOf(result.key to trend))
+                .build()
+                .writeReportTo(writer)
+
+        assertTrue(writer.toString().contains("Trend"))
+        assertTrue(writer.toString().contains("Profiler Results"))
+        assertTrue(writer.toString().contains("24.0000 B/op"))
+        assertTrue(writer.toString().contains("Allocation Budgets"))
+        assertTrue(writer.toString().contains("Performance Budgets"))
+        assertTrue(writer.toString().contains("mean ≤ 2.5000 ms/op"))
+        assertTrue(writer.toString().contains("16.0 B/op"))
+        assertArrayEquals(intArrayOf(4), trend.changePoints)
+    }
+}
@@ -1,7 +1,12 @@
 package com.github.rchargel.build.benchmark.results
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.rchargel.build.common.DistributionStatistics
+import com.github.rchargel.build.common.QuantileSketch
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 import java.io.ByteArrayOutputStream
@@ -51,6 +56,81 @@ class BenchmarkTestResultTest {
         assertEquals(24.04, result.distributionStatistics.mean, 0.0001)
     }
 
+    @Test
+    fun validateMergedPercentiles() {
+        assertEquals(0.45, result.firstQuarter, 0.0001)
+        assertEquals(9.0, result.median, 0.0)
+        assertEquals(55.15, result.thirdQuarter, 0.0001)
+        assertEquals(100.2, result.p99, 0.0)
+        assertEquals(5, result.quantiles.count)
+    }
+
+    @Test
+    fun validateResultsWithoutSketch() {
+        val unsketched = result.copy(quantiles = QuantileSketch())
+        assertEquals(100.2, unsketched.p99, 0.0)
+        assertEquals(result.merge(result).median, unsketched.merge(unsketched).median, 0.0)
+
+        val bare = unsketched.copy(rawMeasurements = MeasurementStore.EMPTY)
+        assertTrue(bare.p99.isNaN())
+        assertEquals(result.firstQuarter, bare.merge(bare).firstQuarter, 0.0)
+        assertEquals(result.thirdQuarter, bare.merge(bare).thirdQuarter, 0.0)
+    }
+
+    @Test
+    fun validateMergeAfterJSONSerialize() {
+        val deserialized = ObjectMapper().let { it.readValue(it.writeValueAsBytes(result), BenchmarkTestResult::class.java) }
+        val expected = result.merge(result).distributionStatistics
+        val actual = deserialized.merge(deserialized).distributionStatistics
+        assertEquals(expected.variance, actual.variance, 1e-9)
+        assertEquals(expected.skewness, actual.skewness, 1e-9)
+        assertEquals(expected.kurtosis, actual.kurtosis, 1e-9)
+    }
+
+    @Test
+    fun validateSecondaryResults() {
+        fun secondary(vararg values: Double) = SecondaryResult(
+                scoreUnits = "B/op",
+                score = values.average(),
+                distributionStatistics = values.fold(DistributionStatistics()) { s, x -> DistributionStatistics.aggregate(s, x) })
+
+        val first = result.copy(secondaryResults = mapOf("gc.alloc.rate.norm" to secondary(24.0, 24.0, 24.0)))
+        val merged = first.merge(first.copy(secondaryResults = mapOf(
+                "gc.alloc.rate.norm" to secondary(48.0, 48.0, 48.0),
+                "gc.count" to secondary(2.0))))
+        assertEquals(36.0, merged.secondaryResults.getValue("gc.alloc.rate.norm").score, 0.0)
+        assertEquals(6L, merged.secondaryResults.getValue("gc.alloc.rate.norm").distributionStatistics.count)
+        assertEquals(2, merged.secondaryResults.getValue("gc.alloc.rate.norm").repetitions)
+        assertEquals(setOf("gc.alloc.rate.norm", "gc.count"), merged.secondaryResults.keys)
+
+        val compared = first.copy(secondaryResults = mapOf("gc.alloc.rate.norm" to secondary(47.0, 48.0, 49.0)))
+                .compareWithBaseline(first.copy(secondaryResults = mapOf("gc.alloc.rate.norm" to secondary(23.0, 24.0, 25.0))))
+        val allocation = compared.secondaryResults.getValue("gc.alloc.rate.norm")
+        assertEquals(24.0, allocation.baselineScore!!, 0.0)
+        assertEquals(2.0, allocation.ratio!!, 0.0)
+        assertEquals(24.0, allocation.zScore!!, 0.0001)
+        assertEquals("48.0000 B/op (× 2.000)", allocation.describe())
+        assertNull(first.secondaryResults.getValue("gc.alloc.rate.norm").zScore)
+
+        val mapper = ObjectMapper()
+        assertEquals(compared, mapper.readValue(mapper.writeValueAsBytes(compared), BenchmarkTestResult::class.java))
+    }
+
+    @Test
+    fun validateAllocationBudget() {
+        val allocating = result.copy(secondaryResults = mapOf("·gc.alloc.rate.norm" to SecondaryResult("B/op", 16.3)))
+        assertNull(allocating.allocationBudget)
+        assertFalse(allocating.exceedsAllocationBudget)
+        assertEquals(16.3, allocating.allocationPerOperation!!, 0.0)
+        assertFalse(allocating.withAllocationBudget(16.0).exceedsAllocationBudget)
+        assertTrue(allocating.withAllocationBudget(0.0).exceedsAllocationBudget)
+        assertFalse(result.withAllocationBudget(0.0).exceedsAllocationBudget)
+
+        val merged = allocating.withAllocationBudget(8.0).merge(allocating)
+        assertEquals(8.0, merged.allocationBudget!!, 0.0)
+        assertEquals(listOf(merged), BenchmarkResults(listOf(merged, result)).allocationBudgetViolations)
+    }
+
     @Test
     fun validateJSONSerialize() {
         ByteArrayOutputStream().use {
@@ -0,0 +1,60 @@
+package com.github.rchargel.build.benchmark.results
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class BudgetCheckTest {
+
+    private fun result(scoreUnits: String, vararg measurements: Double) = BenchmarkTestResult.builder("com.fake.package.MyTest.method")
+            .mode("Average")
+            .scoreUnits(scoreUnits)
+            .addRawMeasurement(measurements.toList())
+            .build()
+
+    @Test
+    fun canCheckTimePerOperation() {
+        val result = result("us/op", 1.0, 2.0, 3.0)
+        val checks = result.withPerformanceBudget(0.003, 0.0025, 0.0, TimeUnit.MILLISECONDS).budgetChecks
+        assertEquals(listOf(BudgetCheck.Metric.MEAN, BudgetCheck.Metric.P99), checks.map { it.metric })
+        assertEquals(0.002, checks[0].actual, 1e-9)
+        assertEquals("ms/op", checks[0].units)
+        assertTrue(checks[0].passed)
+        assertEquals(0.003, checks[1].actual, 1e-9)
+        assertFalse(checks[1].passed)
+        assertEquals("p99 ≤ 0.0025 ms/op", checks[1].describe())
+        assertTrue(result.withPerformanceBudget(0.003, 0.0025, 0.0, TimeUnit.MILLISECONDS).exceedsPerformanceBudget)
+        assertFalse(result.withPerformanceBudget(0.003, 0.0, 0.0, TimeUnit.MILLISECONDS).exceedsPerformanceBudget)
+    }
+
+    @Test
+    fun canCheckThroughput() {
+        val checks = result("ops/ms", 1000.0, 2000.0).withPerformanceBudget(0.001, 0.0, 1_000_000.0, TimeUnit.SECONDS).budgetChecks
+        assertEquals(1 / 1_500_000.0, checks[0].actual, 1e-12)
+        assertTrue(checks[0].passed)
+        assertEquals(1_500_000.0, checks[1].actual, 1e-6)
+        assertEquals("ops/s", checks[1].units)
+        assertTrue(checks[1].passed)
+
+        val slow = result("s/op", 2.0).withPerformanceBudget(0.0, 0.0, 1.0, TimeUnit.SECONDS).budgetChecks.single()
+        assertEquals(0.5, slow.actual, 0.0)
+        assertFalse(slow.passed)
+    }
+
+    @Test
+    fun failsUnknownUnits() {
+        val check = result("B/op", 1.0).withPerformanceBudget(1.0, 0.0, 0.0, TimeUnit.MILLISECONDS).budgetChecks.single()
+        assertTrue(check.actual.isNaN())
+        assertFalse(check.passed)
+    }
+
+    @Test
+    fun canSerializeChecks() {
+        val result = result("us/op", 1.0, 2.0, 3.0).withPerformanceBudget(0.003, 0.0025, 0.0, TimeUnit.MILLISECONDS)
+        val mapper = ObjectMapper()
+        assertEquals(result.budgetChecks, mapper.readValue(mapper.writeValueAsBytes(result), BenchmarkTestResult::class.java).budgetChecks)
+    }
+}
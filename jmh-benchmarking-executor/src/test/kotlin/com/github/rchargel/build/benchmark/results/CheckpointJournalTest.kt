@@ -0,0 +1,85 @@
+package com.github.rchargel.build.benchmark.results
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class CheckpointJournalTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun result(method: String, value: Double) = BenchmarkTestResult.builder("com.test.Benchmark.$method")
+            .mode("thrpt")
+            .addRawMeasurement(doubleArrayOf(value, value + 1))
+            .build()
+
+    private fun journal(): File {
+        val file = File(folder.root, "journal.jsonl")
+        CheckpointJournal.create(file).apply {
+            appendResult("a", 0, result("first", 1.0))
+            completeBenchmark("a", 0, "com.test.Benchmark.first")
+            appendResult("a", 0, result("second", 2.0))
+            completeRun("a", 0, "com.test.Benchmark.second")
+            appendResult("a", 1, result("first", 3.0))
+            completeBenchmark("a", 1, "com.test.Benchmark.first")
+            appendResult("a", 1, result("second", 4.0))
+        }
+        return file
+    }
+
+    @Test
+    fun canResumeCompletedRuns() {
+        val progress = CheckpointJournal.resume(journal()).progress("a", 0)
+        assertTrue(progress.complete)
+        assertEquals(setOf("com.test.Benchmark.first", "com.test.Benchmark.second"), progress.completedBenchmarks)
+        assertEquals(listOf(1.0, 2.0), progress.results.map { it.rawMeasurements.samples().first() })
+    }
+
+    @Test
+    fun leavesOutIncompleteBenchmarks() {
+        val journal = CheckpointJournal.resume(journal())
+        assertEquals(4, journal.resumedResultCount)
+        val progress = journal.progress("a", 1)
+        assertFalse(progress.complete)
+        assertEquals(setOf("com.test.Benchmark.first"), progress.completedBenchmarks)
+        assertEquals(listOf(3.0), progress.results.map { it.rawMeasurements.samples().first() })
+        assertEquals(CheckpointJournal.Progress(), journal.progress("b", 0))
+    }
+
+    @Test
+    fun dropsTruncatedEntries() {
+        val file = journal()
+        file.appendText("{\"type\":\"RUN\",\"run\":\"a\",\"repet")
+        val journal = CheckpointJournal.resume(file)
+        assertFalse(journal.progress("a", 1).complete)
+
+        journal.completeRun("a", 1, "com.test.Benchmark.second")
+        val progress = CheckpointJournal.resume(file).progress("a", 1)
+        assertTrue(progress.complete)
+        assertEquals(listOf(3.0, 4.0), progress.results.map { it.rawMeasurements.samples().first() })
+    }
+
+    @Test
+    fun laterAttemptsReplaceEarlierResults() {
+        val file = journal()
+        CheckpointJournal.resume(file).apply {
+            appendResult("a", 1, result("second", 5.0))
+            completeRun("a", 1, "com.test.Benchmark.second")
+        }
+        assertEquals(listOf(3.0, 5.0), CheckpointJournal.resume(file).progress("a", 1).results.map { it.rawMeasurements.samples().first() })
+    }
+
+    @Test
+    fun canCreateAndDeleteJournal() {
+        val file = journal()
+        val journal = CheckpointJournal.create(file)
+        assertEquals(0, journal.resumedResultCount)
+        assertEquals(0L, file.length())
+        journal.delete()
+        assertFalse(file.exists())
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.rchargel.build.benchmark.results
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class MeasurementStoreTest {
+    private val store = MeasurementStore.builder()
+            .add(doubleArrayOf(1.0, 2.0, 3.0))
+            .add(listOf(4.0))
+            .add(DoubleArray(0))
+            .build()
+
+    @Test
+    fun canReadForks() {
+        assertEquals(3, store.size)
+        assertEquals(4, store.sampleCount)
+        assertEquals(listOf(listOf(1.0, 2.0, 3.0), listOf(4.0), emptyList()), store)
+        assertEquals(listOf(1.0, 2.0, 3.0, 4.0), store.samples())
+        assertArrayEquals(doubleArrayOf(2.0, 3.0), store.filter(2.0, 3.0), 0.0)
+    }
+
+    @Test
+    fun canAppendStores() {
+        val appended = store + MeasurementStore.of(listOf(listOf(5.0, 6.0)))
+        assertEquals(listOf(listOf(1.0, 2.0, 3.0), listOf(4.0), emptyList(), listOf(5.0, 6.0)), appended)
+        assertEquals(6L, appended.statistics().count)
+        assertEquals(3.5, appended.statistics().mean, 0.0)
+    }
+
+    @Test
+    fun copiesAppendedStoresOnce() {
+        val appended = (1..4).fold(store) { sum, i -> sum + MeasurementStore.of(listOf(listOf(i * 10.0))) }
+        assertFalse(appended.isLoaded)
+        assertEquals(7, appended.size)
+        assertEquals(8, appended.sampleCount)
+        assertEquals(listOf(1.0, 2.0, 3.0, 4.0, 10.0, 20.0, 30.0, 40.0), appended.samples())
+        assertTrue(appended.isLoaded)
+        assertEquals(listOf(listOf(1.0, 2.0, 3.0), listOf(4.0), emptyList(), listOf(10.0), listOf(20.0), listOf(30.0),
+                listOf(40.0), listOf(50.0)), appended + MeasurementStore.of(listOf(listOf(50.0))))
+    }
+
+    @Test
+    fun serializesAsNestedLists() {
+        val mapper = ObjectMapper()
+        val json = mapper.writeValueAsString(store)
+        assertEquals("[[1.0,2.0,3.0],[4.0],[]]", json)
+        assertEquals(store, mapper.readValue(json, MeasurementStore::class.java))
+        assertEquals(json, mapper.writeValueAsString(listOf(listOf(1.0, 2.0, 3.0), listOf(4.0), emptyList())))
+    }
+}
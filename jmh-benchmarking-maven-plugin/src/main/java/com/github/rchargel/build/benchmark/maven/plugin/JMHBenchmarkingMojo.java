@@ -1,27 +1,49 @@
 package com.github.rchargel.build.benchmark.maven.plugin;
 
 import com.github.rchargel.build.benchmark.BenchmarkExecutor;
+import com.github.rchargel.build.benchmark.DiscoveryMode;
+import com.github.rchargel.build.benchmark.JvmProfile;
+import com.github.rchargel.build.benchmark.RepetitionPolicy;
+import com.github.rchargel.build.benchmark.history.BenchmarkTrend;
+import com.github.rchargel.build.benchmark.history.HistoryRecord;
+import com.github.rchargel.build.benchmark.history.HistoryStore;
+import com.github.rchargel.build.benchmark.regression.RegressionMethod;
 import com.github.rchargel.build.benchmark.report.BenchmarkReport;
+import com.github.rchargel.build.benchmark.results.BaselineStore;
 import com.github.rchargel.build.benchmark.results.BenchmarkResults;
+import com.github.rchargel.build.benchmark.results.CheckpointJournal;
+import com.github.rchargel.build.benchmark.results.ResultsFiles;
+import com.github.rchargel.build.benchmark.results.ResultsFormat;
 import com.github.rchargel.build.maven.AbstractMavenMojo;
+import com.github.rchargel.build.report.ExternalImageResolver;
+import com.github.rchargel.build.report.ImageResolver;
+import com.github.rchargel.build.report.chart.ImageFormat;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.toolchain.Toolchain;
+import org.apache.maven.toolchain.ToolchainManager;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Mojo(name = "run", defaultPhase = LifecyclePhase.TEST)
 public class JMHBenchmarkingMojo extends AbstractMavenMojo {
@@ -41,65 +63,247 @@ public class JMHBenchmarkingMojo extends AbstractMavenMojo {
     @Parameter(name = "numberOfTestRepetitions", defaultValue = "1")
     private int numberOfTestRepetitions;
 
+    @Parameter(name = "targetPrecision", defaultValue = "0")
+    private double targetPrecision;
+
+    @Parameter(name = "precisionStatistic", defaultValue = "MEAN")
+    private RepetitionPolicy.Statistic precisionStatistic;
+
+    @Parameter(name = "precisionConfidence", defaultValue = "0.99")
+    private double precisionConfidence;
+
     @Parameter(name = "failBuildOnErrors", defaultValue = "false")
     private boolean failBuildOnErrors;
 
-    private ObjectMapper mapper;
+    @Parameter(name = "failBuildOnAllocationBudget", defaultValue = "true")
+    private boolean failBuildOnAllocationBudget;
+
+    @Parameter(name = "failBuildOnPerformanceBudget", defaultValue = "true")
+    private boolean failBuildOnPerformanceBudget;
+
+    @Parameter(name = "maxConcurrentBenchmarks", defaultValue = "1")
+    private int maxConcurrentBenchmarks;
+
+    @Parameter(name = "discoveryMode", defaultValue = "BENCHMARK_LIST")
+    private DiscoveryMode discoveryMode;
+
+    @Parameter(name = "batchBenchmarkClasses", defaultValue = "false")
+    private boolean batchBenchmarkClasses;
+
+    @Parameter(name = "profilers", required = false)
+    private List<String> profilers;
+
+    @Parameter(name = "jvmProfiles", required = false)
+    private Map<String, String> jvmProfiles;
+
+    @Parameter(name = "jdkVersions", required = false)
+    private List<String> jdkVersions;
+
+    @Component
+    private ToolchainManager toolchainManager;
+
+    @Parameter(name = "chartFormat", defaultValue = "GIF")
+    private ImageFormat chartFormat;
+
+    @Parameter(name = "externalImages", defaultValue = "false")
+    private boolean externalImages;
+
+    @Parameter(name = "resultsFormat", defaultValue = "JSON")
+    private ResultsFormat resultsFormat;
+
+    @Parameter(name = "regressionMethod", defaultValue = "Z_SCORE")
+    private RegressionMethod regressionMethod;
+
+    @Parameter(name = "regressionSignificance", defaultValue = "0.01")
+    private double regressionSignificance;
+
+    @Parameter(name = "regressionMinimumEffect", defaultValue = "0.05")
+    private double regressionMinimumEffect;
+
+    @Parameter(name = "historyDirectory", required = false)
+    private String historyDirectory;
+
+    @Parameter(name = "historyRuns", defaultValue = "10")
+    private int historyRuns;
+
+    @Parameter(name = "recordHistory", defaultValue = "true")
+    private boolean recordHistory;
+
+    @Parameter(name = "historyRetainedRuns", defaultValue = "100")
+    private int historyRetainedRuns;
+
+    @Parameter(name = "checkpoint", defaultValue = "true")
+    private boolean checkpoint;
+
+    @Parameter(name = "resume", defaultValue = "false")
+    private boolean resume;
 
     @Override
     protected void executeMojo() throws MojoExecutionException, MojoFailureException {
         getLog().info("Running Benchmarks");
 
         final BenchmarkResults results;
-        final File file = new File(outputDirectory, JMHConstants.JSON_FILE_NAME);
+        final Map<String, List<HistoryRecord>> pastRuns;
+        final HistoryStore history = historyDirectory == null ? null : new HistoryStore(new File(historyDirectory));
+        final File file = JMHConstants.resultsFile(outputDirectory, resultsFormat);
         cleanFile(file);
-        try (final OutputStream outputStream = new FileOutputStream(file)) {
-            results = compareToBaseline(new BenchmarkExecutor().executeBenchmarks(maxAbsZScore, numberOfTestRepetitions));
-            getLog().info("Writing JSON to " + file.getAbsolutePath());
-            objectMapper().writerWithDefaultPrettyPrinter().writeValue(outputStream, results);
+        for (final ResultsFormat format : ResultsFormat.values()) {
+            final File otherFile = JMHConstants.resultsFile(outputDirectory, format);
+            if (format != resultsFormat && otherFile.exists() && !otherFile.delete())
+                throw new MojoExecutionException("Could not clean file: " + otherFile.getAbsolutePath());
+        }
+        final RepetitionPolicy repetitionPolicy = RepetitionPolicy.adaptive(numberOfTestRepetitions, targetPrecision,
+                precisionStatistic, precisionConfidence);
+        getLog().info("Running benchmarks with " + repetitionPolicy);
+        final List<JvmProfile> profiles = createJvmProfiles();
+        profiles.forEach(profile -> getLog().info("Running benchmarks with JVM profile " + profile));
+        CheckpointJournal journal = null;
+        try (final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+            journal = openJournal();
+            final BenchmarkResults executed = new BenchmarkExecutor()
+                    .maxConcurrentRunners(maxConcurrentBenchmarks)
+                    .discoveryMode(discoveryMode)
+                    .classpathIndexFile(getClasspathIndexFile())
+                    .batchClasses(batchBenchmarkClasses)
+                    .profilers(profilers)
+                    .jvmProfiles(profiles)
+                    .checkpointJournal(journal)
+                    .executeBenchmarks(maxAbsZScore, repetitionPolicy);
+            // the history is read once, for both the rolling baseline and the trends
+            pastRuns = history == null ? Collections.emptyMap() : history.lastRuns(executed, historyRuns);
+            results = compareToBaseline(executed, history, pastRuns)
+                    .detectRegressions(regressionMethod.detector(maxAbsZScore, regressionSignificance, regressionMinimumEffect));
+            getLog().info("Writing " + resultsFormat + " results to " + file.getAbsolutePath());
+            ResultsFiles.write(results, resultsFormat, outputStream);
         } catch (final Exception e) {
             getLog().error(e.getMessage(), e);
             throw new MojoExecutionException(e.getMessage(), e);
         }
+        deleteJournal(journal);
+
+        final Map<String, BenchmarkTrend> trends;
+        try {
+            trends = recordHistory(results, history, pastRuns);
+        } catch (final IOException e) {
+            getLog().error(e.getMessage(), e);
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
 
         final File htmlFile = new File(outputDirectory, JMHConstants.HTML_FILE_NAME);
         cleanFile(htmlFile);
         getLog().info("Writing HTML to " + htmlFile.getAbsolutePath());
 
-        try (final Writer writer = new OutputStreamWriter(new FileOutputStream(htmlFile), StandardCharsets.UTF_8)) {
-            BenchmarkReport.buildReport(results, getMessages(getLocale()))
+        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(htmlFile), StandardCharsets.UTF_8))) {
+            BenchmarkReport.buildReport(results, getMessages(getLocale()), chartFormat, trends)
                     .projectVersion(project.getVersion())
                     .publishDate(LocalDate.now())
+                    .imageResolver(externalImages
+                            ? new ExternalImageResolver(new File(outputDirectory, JMHConstants.IMAGE_DIR_NAME), JMHConstants.IMAGE_DIR_NAME)
+                            : ImageResolver.INLINE)
                     .build()
                     .writeReportTo(writer);
         } catch (final IOException e) {
             throw new MojoExecutionException(e.getMessage(), e);
         }
 
-        if (failBuildOnErrors && results.getFailsMaxAbsZScore()) {
+        if (failBuildOnErrors && results.getHasRegressions()) {
             throw new MojoFailureException("Some evaluations did not meet the minimum p-value requirement");
         }
+        if (failBuildOnPerformanceBudget && !results.getPerformanceBudgetViolations().isEmpty()) {
+            throw new MojoFailureException("Some benchmarks did not meet their performance budget: " +
+                    results.getPerformanceBudgetViolations().stream()
+                            .map(r -> r.getKey() + " (" + r.getBudgetChecks().stream()
+                                    .filter(c -> !c.getPassed())
+                                    .map(c -> String.format("%s, was %.4f %s", c.describe(), c.getActual(), c.getUnits()))
+                                    .collect(Collectors.joining("; ")) + ")")
+                            .collect(Collectors.joining(", ")));
+        }
+        if (failBuildOnAllocationBudget && !results.getAllocationBudgetViolations().isEmpty()) {
+            throw new MojoFailureException("Some benchmarks allocated more than their allocation budget: " +
+                    results.getAllocationBudgetViolations().stream()
+                            .map(r -> String.format("%s (%.1f B/op, budget %.1f B/op)", r.getKey(), r.getAllocationPerOperation(), r.getAllocationBudget()))
+                            .collect(Collectors.joining(", ")));
+        }
     }
 
-    private ObjectMapper objectMapper() {
-        if (mapper == null)
-            mapper = new ObjectMapper();
-        return mapper;
+    // profiles are run in name order, as the order of the configured map isn't kept, within each JDK in the order listed
+    private List<JvmProfile> createJvmProfiles() throws MojoExecutionException {
+        final List<JvmProfile> profiles = jvmProfiles == null ? Collections.emptyList() : new TreeMap<>(jvmProfiles).entrySet().stream()
+                .map(e -> JvmProfile.parse(e.getKey(), e.getValue()))
+                .collect(Collectors.toList());
+        final Map<String, String> jvmsByJdkVersion = new LinkedHashMap<>();
+        if (jdkVersions != null) {
+            for (final String jdkVersion : jdkVersions)
+                jvmsByJdkVersion.put(jdkVersion, findJdkToolchainJava(jdkVersion));
+        }
+        return JvmProfile.forEachJdk(jvmsByJdkVersion, profiles);
     }
 
-    private BenchmarkResults compareToBaseline(final BenchmarkResults results) throws IOException {
+    private String findJdkToolchainJava(final String jdkVersion) throws MojoExecutionException {
+        final List<Toolchain> toolchains = toolchainManager.getToolchains(session, "jdk", Collections.singletonMap("version", jdkVersion));
+        final String java = toolchains.stream()
+                .map(toolchain -> toolchain.findTool("java"))
+                .filter(tool -> tool != null)
+                .findFirst()
+                .orElse(null);
+        if (java == null)
+            throw new MojoExecutionException("No JDK toolchain with a java executable matches version " + jdkVersion +
+                    ", add one to the toolchains.xml file");
+        return java;
+    }
+
+    private CheckpointJournal openJournal() throws IOException {
+        if (!checkpoint)
+            return null;
+        final File journalFile = JMHConstants.journalFile(outputDirectory);
+        if (!resume)
+            return CheckpointJournal.create(journalFile);
+        final CheckpointJournal journal = CheckpointJournal.resume(journalFile);
+        getLog().info("Resuming from " + journal.getResumedResultCount() + " journaled results in " + journalFile.getAbsolutePath());
+        return journal;
+    }
+
+    private void deleteJournal(final CheckpointJournal journal) {
+        if (journal == null)
+            return;
+        try {
+            journal.delete();
+        } catch (final IOException e) {
+            getLog().warn("Could not delete the checkpoint journal: " + journal.getFile().getAbsolutePath(), e);
+        }
+    }
+
+    private BenchmarkResults compareToBaseline(final BenchmarkResults results, final HistoryStore history,
+                                               final Map<String, List<HistoryRecord>> pastRuns) throws IOException {
         if (baselineRun != null) {
             getLog().info("Looking for baseline run: " + baselineRun);
             final File baselineRunFile = new File(baselineRun);
             if (baselineRunFile.isFile()) {
-                try (final BufferedReader reader = new BufferedReader(new FileReader(baselineRunFile))) {
-                    getLog().info("Comparing to baseline results: " + baselineRunFile.getAbsolutePath());
-                    final BenchmarkResults baselineResults = objectMapper().readValue(reader, BenchmarkResults.class);
-                    return results.compareToBaseline(baselineResults, ignoreHardwareChanges);
+                getLog().info("Comparing to baseline results: " + baselineRunFile.getAbsolutePath());
+                try (final BaselineStore baseline = BaselineStore.open(baselineRunFile)) {
+                    return results.compareToBaseline(baseline, ignoreHardwareChanges);
                 }
             }
+        } else if (history != null) {
+            getLog().info("Comparing to the last " + historyRuns + " runs in " + historyDirectory);
+            return results.compareToBaseline(HistoryStore.rollingBaseline(results, pastRuns), ignoreHardwareChanges);
         }
         return results;
     }
 
+    private Map<String, BenchmarkTrend> recordHistory(final BenchmarkResults results, final HistoryStore history,
+                                                      final Map<String, List<HistoryRecord>> pastRuns) throws IOException {
+        if (history == null)
+            return Collections.emptyMap();
+        if (recordHistory) {
+            getLog().info("Recording results in " + historyDirectory);
+            final long timestamp = System.currentTimeMillis();
+            history.append(results, timestamp);
+            if (history.compact(historyRetainedRuns))
+                getLog().info("Compacted history to the last " + historyRetainedRuns + " runs");
+            return HistoryStore.trends(results, HistoryStore.withRun(pastRuns, results, timestamp, historyRuns));
+        }
+        return HistoryStore.trends(results, pastRuns);
+    }
+
 }
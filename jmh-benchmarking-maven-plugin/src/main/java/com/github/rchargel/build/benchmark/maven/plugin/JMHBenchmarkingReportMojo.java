@@ -1,21 +1,28 @@
 package com.github.rchargel.build.benchmark.maven.plugin;
 
+import com.github.rchargel.build.benchmark.history.BenchmarkTrend;
+import com.github.rchargel.build.benchmark.history.HistoryStore;
 import com.github.rchargel.build.benchmark.report.BenchmarkReport;
 import com.github.rchargel.build.benchmark.results.BenchmarkResults;
+import com.github.rchargel.build.benchmark.results.ResultsFiles;
+import com.github.rchargel.build.benchmark.results.ResultsFormat;
 import com.github.rchargel.build.maven.AbstractMavenReportMojo;
+import com.github.rchargel.build.report.ExternalImageResolver;
+import com.github.rchargel.build.report.ImageResolver;
 import com.github.rchargel.build.report.Messages;
 import com.github.rchargel.build.report.Report.ReportBuilder;
+import com.github.rchargel.build.report.chart.ImageFormat;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.reporting.MavenReportException;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
 
 @Mojo(name = "report", defaultPhase = LifecyclePhase.TEST)
 public class JMHBenchmarkingReportMojo extends AbstractMavenReportMojo {
@@ -24,28 +31,62 @@ public class JMHBenchmarkingReportMojo extends AbstractMavenReportMojo {
     @Parameter(name = "outputDirectory", defaultValue = "${project.build.directory}/" + JMHConstants.OUTPUT_DIR_NAME)
     private String outputDirectory;
 
+    @Parameter(name = "chartFormat", defaultValue = "GIF")
+    private ImageFormat chartFormat;
+
+    @Parameter(name = "externalImages", defaultValue = "false")
+    private boolean externalImages;
+
+    @Parameter(name = "historyDirectory", required = false)
+    private String historyDirectory;
+
+    @Parameter(name = "historyRuns", defaultValue = "10")
+    private int historyRuns;
+
     @Override
     protected ReportBuilder executeReportMojo(final Messages messages) throws MavenReportException {
         getLog().info("Generating Benchmark Report");
         final BenchmarkResults results = loadResults();
-        return BenchmarkReport.buildReport(results, messages);
+        return BenchmarkReport.buildReport(results, messages, chartFormat, loadTrends(results));
+    }
+
+    private Map<String, BenchmarkTrend> loadTrends(final BenchmarkResults results) throws MavenReportException {
+        if (historyDirectory == null)
+            return Collections.emptyMap();
+        try {
+            return new HistoryStore(new File(historyDirectory)).trends(results, historyRuns);
+        } catch (final IOException e) {
+            getLog().error(e.getMessage(), e);
+            throw new MavenReportException(e.getMessage(), e);
+        }
     }
 
     private BenchmarkResults loadResults() throws MavenReportException {
-        final File resultsFile = new File(outputDirectory, JMHConstants.JSON_FILE_NAME);
-        if (!resultsFile.exists()) {
+        final File resultsFile = Arrays.stream(ResultsFormat.values())
+                .map(format -> JMHConstants.resultsFile(outputDirectory, format))
+                .filter(File::exists)
+                .findFirst()
+                .orElse(null);
+        if (resultsFile == null) {
             getLog().error(RUN_GOAL_EXC);
             throw new MavenReportException(RUN_GOAL_EXC);
         }
 
-        try (final InputStream inputStream = new FileInputStream(resultsFile)) {
-            return new ObjectMapper().readValue(inputStream, BenchmarkResults.class);
+        try {
+            return ResultsFiles.read(resultsFile);
         } catch (final IOException e) {
             getLog().error(RUN_GOAL_EXC);
             throw new MavenReportException(RUN_GOAL_EXC, e);
         }
     }
 
+    @Override
+    protected ImageResolver getImageResolver() {
+        if (!externalImages)
+            return super.getImageResolver();
+        return new ExternalImageResolver(new File(getReportOutputDirectory(), JMHConstants.IMAGE_DIR_NAME), JMHConstants.IMAGE_DIR_NAME);
+    }
+
     @Override
     public String getOutputName() {
         return JMHConstants.OUTPUT_DIR_NAME;
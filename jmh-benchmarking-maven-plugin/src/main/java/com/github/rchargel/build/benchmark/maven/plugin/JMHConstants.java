@@ -1,7 +1,20 @@
 package com.github.rchargel.build.benchmark.maven.plugin;
 
+import com.github.rchargel.build.benchmark.results.ResultsFormat;
+
+import java.io.File;
+
 public class JMHConstants {
     public static final String OUTPUT_DIR_NAME = "benchmark-reports";
     public static final String HTML_FILE_NAME = OUTPUT_DIR_NAME + ".html";
     public static final String JSON_FILE_NAME = OUTPUT_DIR_NAME + ".json";
+    public static final String IMAGE_DIR_NAME = OUTPUT_DIR_NAME + "-images";
+
+    public static File resultsFile(final String outputDirectory, final ResultsFormat format) {
+        return new File(outputDirectory, OUTPUT_DIR_NAME + "." + format.getExtension());
+    }
+
+    public static File journalFile(final String outputDirectory) {
+        return new File(outputDirectory, OUTPUT_DIR_NAME + ".journal");
+    }
 }